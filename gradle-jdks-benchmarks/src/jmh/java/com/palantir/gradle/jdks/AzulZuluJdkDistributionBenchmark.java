@@ -0,0 +1,53 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.palantir.gradle.jdks.AzulZuluJdkDistribution.ZuluVersionSplit;
+import com.palantir.gradle.jdks.setup.common.Arch;
+import com.palantir.gradle.jdks.setup.common.Os;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AzulZuluJdkDistributionBenchmark {
+
+    private static final String ZULU_VERSION = "17.44.53-ca-jdk17.0.8.1";
+
+    private final AzulZuluJdkDistribution distribution = new AzulZuluJdkDistribution();
+    private final JdkRelease release = JdkRelease.builder()
+            .version(ZULU_VERSION)
+            .os(Os.LINUX_GLIBC)
+            .arch(Arch.X86_64)
+            .build();
+
+    @Benchmark
+    public ZuluVersionSplit splitCombinedVersion() {
+        return AzulZuluJdkDistribution.splitCombinedVersion(ZULU_VERSION);
+    }
+
+    @Benchmark
+    public JdkPath path() {
+        return distribution.path(release);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Real world CA certificates for the benchmarks, read from the truststore of the JDK running the benchmarks.
+ */
+public final class BenchmarkCertificates {
+
+    public static List<String> pems(int count) {
+        Path cacerts = Path.of(System.getProperty("java.home")).resolve("lib/security/cacerts");
+        try (InputStream inputStream = Files.newInputStream(cacerts)) {
+            KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+            keyStore.load(inputStream, "changeit".toCharArray());
+            List<String> aliases = Collections.list(keyStore.aliases());
+            Collections.sort(aliases);
+            List<String> pems = new ArrayList<>(count);
+            for (int i = 0; pems.size() < count; i++) {
+                Certificate certificate = keyStore.getCertificate(aliases.get(i % aliases.size()));
+                pems.add("-----BEGIN CERTIFICATE-----\n"
+                        + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.UTF_8))
+                                .encodeToString(certificate.getEncoded())
+                        + "\n-----END CERTIFICATE-----\n");
+            }
+            return pems;
+        } catch (IOException | GeneralSecurityException e) {
+            throw new RuntimeException(String.format("Failed to read the certificates from %s", cacerts), e);
+        }
+    }
+
+    private BenchmarkCertificates() {}
+}
@@ -0,0 +1,121 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.palantir.gradle.jdks.JdkPath.Extension;
+import com.palantir.gradle.jdks.setup.FileUtils;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Macro benchmark of the unpacking step of {@link JdkManager#jdk}, using a synthetic JDK archive with the file count
+ * and size distribution of a real one: a large {@code lib/modules} image and a few thousand small files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class JdkArchiveExtractionBenchmark {
+
+    private static final int DIRECTORIES = 40;
+    private static final int FILES_PER_DIRECTORY = 50;
+    private static final int SMALL_FILE_SIZE = 8 * 1024;
+    private static final int MODULES_SIZE = 32 * 1024 * 1024;
+
+    private Path workDirectory;
+    private Path archive;
+    private Path destination;
+
+    @Setup(Level.Trial)
+    public void createArchive() throws IOException {
+        workDirectory = Files.createTempDirectory("jdk-archive-extraction-benchmark");
+        archive = workDirectory.resolve("jdk.tar.gz");
+        Random random = new Random(0);
+        try (TarArchiveOutputStream tar =
+                new TarArchiveOutputStream(new GzipCompressorOutputStream(Files.newOutputStream(archive)))) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            addFile(tar, "jdk-17/bin/java", 0755, compressibleBytes(random, SMALL_FILE_SIZE));
+            addFile(tar, "jdk-17/lib/modules", 0644, compressibleBytes(random, MODULES_SIZE));
+            for (int directory = 0; directory < DIRECTORIES; directory++) {
+                for (int file = 0; file < FILES_PER_DIRECTORY; file++) {
+                    addFile(
+                            tar,
+                            String.format("jdk-17/legal/module%d/file%d", directory, file),
+                            0644,
+                            compressibleBytes(random, SMALL_FILE_SIZE));
+                }
+            }
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createDestination() {
+        destination = workDirectory.resolve("jdk.in-progress");
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDestination() {
+        FileUtils.delete(destination);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() {
+        FileUtils.delete(workDirectory);
+    }
+
+    @Benchmark
+    public Path extract() {
+        return JdkArchiveExtractor.extract(Extension.TARGZ, archive, destination);
+    }
+
+    private static void addFile(TarArchiveOutputStream tar, String name, int mode, byte[] content)
+            throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setMode(0100000 | mode);
+        entry.setSize(content.length);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+    }
+
+    /** Class files and native libraries compress roughly 2:1, which random bytes from a small alphabet mimic. */
+    private static byte[] compressibleBytes(Random random, int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) random.nextInt(16);
+        }
+        return bytes;
+    }
+}
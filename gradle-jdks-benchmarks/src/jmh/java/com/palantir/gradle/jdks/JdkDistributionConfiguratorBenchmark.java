@@ -0,0 +1,69 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.Project;
+import org.gradle.jvm.toolchain.JavaLanguageVersion;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JdkDistributionConfiguratorBenchmark {
+
+    private static final Map<Integer, String> JDK_VERSIONS = Map.of(
+            11, "11.54.25-ca-jdk11.0.14.1",
+            17, "17.44.53-ca-jdk17.0.8.1",
+            21, "21.30.15-ca-jdk21.0.1");
+
+    private Project project;
+    private JdkDistributions jdkDistributions;
+    private JdksExtension jdksExtension;
+
+    @Setup
+    public void setup() throws IOException {
+        project = ProjectBuilder.builder()
+                .withProjectDir(Files.createTempDirectory("jdk-distribution-configurator-benchmark")
+                        .toFile())
+                .build();
+        jdkDistributions = new JdkDistributions();
+        jdksExtension = JdksPlugin.extension(project, jdkDistributions);
+        JDK_VERSIONS.forEach((javaVersion, jdkVersion) -> {
+            jdksExtension.jdk(JavaLanguageVersion.of(javaVersion), jdkExtension -> {
+                jdkExtension.setDistribution(JdkDistributionName.AZUL_ZULU);
+                jdkExtension.getJdkVersion().set(jdkVersion);
+            });
+        });
+    }
+
+    @Benchmark
+    public Map<JavaLanguageVersion, List<JdkDistributionConfig>> getJavaVersionToJdkDistros() {
+        return JdkDistributionConfigurator.getJavaVersionToJdkDistros(project, jdkDistributions, jdksExtension);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.palantir.gradle.jdks.setup.common.Arch;
+import com.palantir.gradle.jdks.setup.common.Os;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JdkSpecBenchmark {
+
+    private Map<String, String> caCerts;
+    private JdkSpec jdkSpec;
+
+    @Setup
+    public void setup() {
+        caCerts = Map.of(
+                "FirstRootCa", BenchmarkCertificates.pems(2).get(0),
+                "SecondRootCa", BenchmarkCertificates.pems(2).get(1));
+        jdkSpec = jdkSpec();
+    }
+
+    @Benchmark
+    public String consistentShortHash() {
+        return jdkSpec.consistentShortHash();
+    }
+
+    /** Like every provider query of BaselineJavaJdksPlugin, which rebuilds the spec before hashing it. */
+    @Benchmark
+    public String rebuiltConsistentShortHash() {
+        return jdkSpec().consistentShortHash();
+    }
+
+    private JdkSpec jdkSpec() {
+        return JdkSpec.builder()
+                .distributionName(JdkDistributionName.AZUL_ZULU)
+                .release(JdkRelease.builder()
+                        .version("17.44.53-ca-jdk17.0.8.1")
+                        .os(Os.LINUX_GLIBC)
+                        .arch(Arch.X86_64)
+                        .build())
+                .caCerts(CaCerts.from(caCerts))
+                .build();
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import com.palantir.gradle.jdks.BenchmarkCertificates;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CaResourcesBenchmark {
+
+    // roughly the size of /etc/ssl/certs/ca-certificates.crt on a recent Linux distribution
+    private static final int BUNDLE_SIZE = 150;
+
+    private byte[] systemBundle;
+
+    @Setup
+    public void setup() {
+        systemBundle = String.join("\n", BenchmarkCertificates.pems(BUNDLE_SIZE)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<X509Certificate> parseCerts() {
+        return CaResources.parseCerts(systemBundle);
+    }
+}
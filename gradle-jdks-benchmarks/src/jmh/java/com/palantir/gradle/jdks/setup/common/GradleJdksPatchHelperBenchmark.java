@@ -0,0 +1,70 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup.common;
+
+import com.palantir.gradle.jdks.setup.common.GradleJdksPatchHelper.PatchLineNumbers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GradleJdksPatchHelperBenchmark {
+
+    // a generated ./gradlew script is about 250 lines long
+    private static final int SCRIPT_LINES = 250;
+    private static final int PATCH_INSERT_INDEX = 80;
+
+    private List<String> scriptLines;
+    private List<String> patchLines;
+    private List<String> patchedScriptLines;
+
+    @Setup
+    public void setup() {
+        scriptLines = new ArrayList<>();
+        for (int i = 0; i < SCRIPT_LINES; i++) {
+            scriptLines.add(String.format("    echo \"gradlew line %d\"", i));
+        }
+        patchLines = new ArrayList<>();
+        patchLines.add(GradleJdksPatchHelper.PATCH_HEADER);
+        for (int i = 0; i < 20; i++) {
+            patchLines.add(String.format("    echo \"patch line %d\"", i));
+        }
+        patchLines.add(GradleJdksPatchHelper.PATCH_FOOTER);
+        patchedScriptLines = new ArrayList<>(scriptLines);
+        patchedScriptLines.addAll(PATCH_INSERT_INDEX, patchLines);
+    }
+
+    @Benchmark
+    public Optional<PatchLineNumbers> getPatchLineNumbers() {
+        return GradleJdksPatchHelper.getPatchLineNumbers(patchedScriptLines);
+    }
+
+    @Benchmark
+    public byte[] getContentWithPatch() {
+        return GradleJdksPatchHelper.getContentWithPatch(scriptLines, patchLines, PATCH_INSERT_INDEX);
+    }
+}
@@ -18,35 +18,163 @@ package com.palantir.gradle.jdks.enablement;
 
 import com.palantir.gradle.jdks.setup.common.CurrentOs;
 import com.palantir.gradle.jdks.setup.common.Os;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public final class GradleJdksEnablement {
 
     public static final String MINIMUM_SUPPORTED_GRADLE_VERSION = "7.6";
 
+    private static final String ENABLEMENT_PROPERTY = "palantir.jdk.setup.enabled";
+
+    /**
+     * The settings plugin and every project plugin resolve the enablement of the same root directory, hence the
+     * results are cached per canonical root directory, and reused as long as its gradle.properties is unchanged.
+     */
+    private static final ConcurrentMap<Path, CachedEnablement> CACHE = new ConcurrentHashMap<>();
+
     public static boolean isGradleJdkSetupEnabled(Path projectDir) {
-        return !CurrentOs.get().equals(Os.WINDOWS) && isGradleJdkPropertyEnabled(projectDir);
+        return resolve(projectDir).enabled();
     }
 
-    private static boolean isGradleJdkPropertyEnabled(Path projectDir) {
-        File gradlePropsFile = projectDir.resolve("gradle.properties").toFile();
-        if (!gradlePropsFile.exists()) {
-            return false;
+    /**
+     * Resolves whether the Gradle JDK setup is enabled for {@code projectDir}, based on the OS and on the
+     * {@code palantir.jdk.setup.enabled} property of its gradle.properties file.
+     */
+    public static Enablement resolve(Path projectDir) {
+        if (CurrentOs.get().equals(Os.WINDOWS)) {
+            return new Enablement(false, "the Gradle JDK setup is not supported on Windows", Optional.empty());
         }
-        try {
-            Properties properties = new Properties();
-            properties.load(new FileInputStream(gradlePropsFile));
-            return Optional.ofNullable(properties.getProperty("palantir.jdk.setup.enabled"))
-                    .map(Boolean::parseBoolean)
-                    .orElse(false);
+        Path canonicalProjectDir = canonicalize(projectDir);
+        Path gradlePropsFile = canonicalProjectDir.resolve("gradle.properties");
+        Optional<FileStamp> fileStamp = FileStamp.of(gradlePropsFile);
+        CachedEnablement cached = CACHE.get(canonicalProjectDir);
+        if (cached != null && cached.fileStamp.equals(fileStamp)) {
+            return cached.enablement;
+        }
+        Enablement enablement = readEnablement(gradlePropsFile, fileStamp.isPresent());
+        CACHE.put(canonicalProjectDir, new CachedEnablement(fileStamp, enablement));
+        return enablement;
+    }
+
+    private static Enablement readEnablement(Path gradlePropsFile, boolean exists) {
+        if (!exists) {
+            return new Enablement(false, String.format("%s does not exist", gradlePropsFile), Optional.empty());
+        }
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(gradlePropsFile)) {
+            properties.load(inputStream);
         } catch (IOException e) {
             throw new RuntimeException("Failed to read gradle.properties file", e);
         }
+        String value = properties.getProperty(ENABLEMENT_PROPERTY);
+        if (value == null) {
+            return new Enablement(
+                    false,
+                    String.format("%s is not set in %s", ENABLEMENT_PROPERTY, gradlePropsFile),
+                    Optional.of(gradlePropsFile));
+        }
+        return new Enablement(
+                Boolean.parseBoolean(value),
+                String.format("%s=%s in %s", ENABLEMENT_PROPERTY, value, gradlePropsFile),
+                Optional.of(gradlePropsFile));
+    }
+
+    private static Path canonicalize(Path projectDir) {
+        try {
+            return projectDir.toRealPath();
+        } catch (IOException e) {
+            return projectDir.toAbsolutePath().normalize();
+        }
+    }
+
+    /**
+     * Whether the Gradle JDK setup is enabled, the reason for it and the gradle.properties file it was read from.
+     */
+    public static final class Enablement {
+        private final boolean enabled;
+        private final String reason;
+        private final Optional<Path> sourceFile;
+
+        Enablement(boolean enabled, String reason, Optional<Path> sourceFile) {
+            this.enabled = enabled;
+            this.reason = reason;
+            this.sourceFile = sourceFile;
+        }
+
+        public boolean enabled() {
+            return enabled;
+        }
+
+        public String reason() {
+            return reason;
+        }
+
+        public Optional<Path> sourceFile() {
+            return sourceFile;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Gradle JDK setup %s: %s", enabled ? "enabled" : "disabled", reason);
+        }
+    }
+
+    private static final class CachedEnablement {
+        private final Optional<FileStamp> fileStamp;
+        private final Enablement enablement;
+
+        CachedEnablement(Optional<FileStamp> fileStamp, Enablement enablement) {
+            this.fileStamp = fileStamp;
+            this.enablement = enablement;
+        }
+    }
+
+    private static final class FileStamp {
+        private final long lastModifiedMillis;
+        private final long size;
+
+        private FileStamp(long lastModifiedMillis, long size) {
+            this.lastModifiedMillis = lastModifiedMillis;
+            this.size = size;
+        }
+
+        static Optional<FileStamp> of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return Optional.of(new FileStamp(attributes.lastModifiedTime().toMillis(), attributes.size()));
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Failed to read the attributes of %s", file), e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof FileStamp)) {
+                return false;
+            }
+            FileStamp that = (FileStamp) other;
+            return lastModifiedMillis == that.lastModifiedMillis && size == that.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModifiedMillis, size);
+        }
     }
 
     private GradleJdksEnablement() {}
@@ -0,0 +1,70 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.enablement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.palantir.gradle.jdks.enablement.GradleJdksEnablement.Enablement;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisabledOnOs(OS.WINDOWS)
+public final class GradleJdksEnablementTest {
+
+    @TempDir
+    Path projectDir;
+
+    @Test
+    public void disabled_without_gradle_properties() {
+        Enablement enablement = GradleJdksEnablement.resolve(projectDir);
+        assertThat(enablement.enabled()).isFalse();
+        assertThat(enablement.sourceFile()).isEmpty();
+        assertThat(enablement.reason()).contains("does not exist");
+    }
+
+    @Test
+    public void enabled_by_gradle_properties() throws IOException {
+        Path gradleProperties = projectDir.resolve("gradle.properties");
+        Files.writeString(gradleProperties, "palantir.jdk.setup.enabled=true\n");
+        Enablement enablement = GradleJdksEnablement.resolve(projectDir);
+        assertThat(enablement.enabled()).isTrue();
+        assertThat(enablement.sourceFile()).contains(gradleProperties.toRealPath());
+        assertThat(enablement.reason()).contains("palantir.jdk.setup.enabled=true");
+        assertThat(GradleJdksEnablement.resolve(projectDir)).isSameAs(enablement);
+    }
+
+    @Test
+    public void re_reads_modified_gradle_properties() throws IOException {
+        Path gradleProperties = projectDir.resolve("gradle.properties");
+        Files.writeString(gradleProperties, "palantir.jdk.setup.enabled=true\n");
+        assertThat(GradleJdksEnablement.isGradleJdkSetupEnabled(projectDir)).isTrue();
+
+        FileTime lastModified = Files.getLastModifiedTime(gradleProperties);
+        Files.writeString(gradleProperties, "palantir.jdk.setup.enabled=false\n");
+        Files.setLastModifiedTime(gradleProperties, FileTime.fromMillis(lastModified.toMillis() + 1000));
+        assertThat(GradleJdksEnablement.isGradleJdkSetupEnabled(projectDir)).isFalse();
+
+        Files.delete(gradleProperties);
+        assertThat(GradleJdksEnablement.resolve(projectDir).sourceFile()).isEmpty();
+    }
+}
@@ -19,24 +19,18 @@ package com.palantir.gradle.jdks.settings;
 // CHECKSTYLE.OFF: IllegalImport
 
 import com.palantir.gradle.jdks.enablement.GradleJdksEnablement;
-import com.palantir.gradle.jdks.setup.common.Arch;
-import com.palantir.gradle.jdks.setup.common.CommandRunner;
-import com.palantir.gradle.jdks.setup.common.CurrentArch;
-import com.palantir.gradle.jdks.setup.common.CurrentOs;
-import com.palantir.gradle.jdks.setup.common.Os;
-import java.io.IOException;
-import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.gradle.api.Plugin;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.internal.properties.GradleProperties;
@@ -60,8 +54,9 @@ public final class ToolchainJdksSettingsPlugin implements Plugin<Settings> {
     @Override
     public void apply(Settings settings) {
         Path rootProjectDir = settings.getRootDir().toPath();
-        if (!GradleJdksEnablement.isGradleJdkSetupEnabled(rootProjectDir)) {
-            logger.debug("Skipping Gradle JDK gradle properties patching");
+        GradleJdksEnablement.Enablement enablement = GradleJdksEnablement.resolve(rootProjectDir);
+        if (!enablement.enabled()) {
+            logger.debug("Skipping Gradle JDK gradle properties patching: {}", enablement.reason());
             return;
         }
         if (!isGradleVersionSupported()) {
@@ -80,7 +75,7 @@ public final class ToolchainJdksSettingsPlugin implements Plugin<Settings> {
         }
         // Forces the installation of the configured jdks if they are not installed. Fixes the case when a user doesn't
         // have the Intellij plugin installed and some jdks are missing.
-        getOrInstallJdkPaths(rootProjectDir, gradleJdksLocalDirectory);
+        ToolchainPaths toolchainPaths = ToolchainPaths.resolve(rootProjectDir, gradleJdksLocalDirectory);
         ProviderFactory providerFactory =
                 ((DefaultSettings) settings).getServices().get(ProviderFactory.class);
         if (!(providerFactory instanceof DefaultProviderFactory)) {
@@ -104,7 +99,7 @@ public final class ToolchainJdksSettingsPlugin implements Plugin<Settings> {
                     GradleProperties.class.getClassLoader(),
                     new Class[] {GradleProperties.class},
                     new GradlePropertiesInvocationHandler(
-                            rootProjectDir, gradleJdksLocalDirectory, originalGradleProperties));
+                            rootProjectDir, gradleJdksLocalDirectory, originalGradleProperties, toolchainPaths));
             field.set(defaultValueSourceProviderFactory, ourGradleProperties);
         } catch (NoSuchFieldException | IllegalAccessException e) {
             throw new RuntimeException("Failed to update the Gradle JDK properties using reflection", e);
@@ -112,15 +107,25 @@ public final class ToolchainJdksSettingsPlugin implements Plugin<Settings> {
     }
 
     private static class GradlePropertiesInvocationHandler implements InvocationHandler {
+        private static final Set<String> DISABLED_TOOLCHAIN_PROPERTIES =
+                Set.of("org.gradle.java.installations.auto-detect", "org.gradle.java.installations.auto-download");
+        private static final String TOOLCHAIN_PATHS_PROPERTY = "org.gradle.java.installations.paths";
+
         private final GradleProperties originalGradleProperties;
         private final Path gradleJdksLocalDirectory;
         private final Path rootProjectDir;
+        private final ConcurrentMap<Method, MethodHandle> delegateMethods = new ConcurrentHashMap<>();
+        private volatile ToolchainPaths toolchainPaths;
 
         GradlePropertiesInvocationHandler(
-                Path rootProjectDir, Path gradleJdksLocalDirectory, GradleProperties originalGradleProperties) {
+                Path rootProjectDir,
+                Path gradleJdksLocalDirectory,
+                GradleProperties originalGradleProperties,
+                ToolchainPaths toolchainPaths) {
             this.rootProjectDir = rootProjectDir;
             this.gradleJdksLocalDirectory = gradleJdksLocalDirectory;
             this.originalGradleProperties = originalGradleProperties;
+            this.toolchainPaths = toolchainPaths;
         }
 
         @Override
@@ -128,107 +133,50 @@ public final class ToolchainJdksSettingsPlugin implements Plugin<Settings> {
             // see: https://github.com/gradle/gradle/blob/4bd1b3d3fc3f31db5a26eecb416a165b8cc36082/subprojects/core-api/
             // src/main/java/org/gradle/api/internal/properties/GradleProperties.java#L28
             if (method.getName().equals("find") && args.length == 1) {
-                List<Path> installedLocalToolchains = getOrInstallJdkPaths(rootProjectDir, gradleJdksLocalDirectory);
                 String onlyArg = (String) args[0];
-                if (onlyArg.equals("org.gradle.java.installations.auto-detect")
-                        || onlyArg.equals("org.gradle.java.installations.auto-download")) {
+                if (DISABLED_TOOLCHAIN_PROPERTIES.contains(onlyArg)) {
                     return "false";
                 }
-                if (onlyArg.equals("org.gradle.java.installations.paths")) {
-                    return installedLocalToolchains.stream()
-                            .map(Path::toAbsolutePath)
-                            .map(Path::toString)
-                            .collect(Collectors.joining(","));
+                if (onlyArg.equals(TOOLCHAIN_PATHS_PROPERTY)) {
+                    return currentToolchainPaths().joinedPaths();
                 }
             }
-            try {
-                return GradleProperties.class
-                        .getDeclaredMethod(method.getName(), method.getParameterTypes())
-                        .invoke(originalGradleProperties, args);
-            } catch (InvocationTargetException e) {
-                throw e.getCause();
-            }
+            Object[] arguments = args == null ? new Object[0] : args;
+            return (Object) delegateMethods
+                    .computeIfAbsent(method, this::delegateMethod)
+                    .invokeExact(arguments);
         }
-    }
-
-    private static List<Path> getOrInstallJdkPaths(Path rootProjectDir, Path gradleJdksLocalDirectory) {
-        List<Path> jdkPaths = getConfiguredJdkPaths(gradleJdksLocalDirectory);
-        List<Path> missingJdkPaths = getMissingPaths(jdkPaths);
-        if (!missingJdkPaths.isEmpty()) {
-            logger.error(
-                    "Gradle JDK setup is enabled (palantir.jdk.setup.enabled is true) but some jdks were not"
-                            + " installed: {}. If running from Intellij, please make sure the"
-                            + " `palantir-gradle-jdks` Intellij plugin is installed"
-                            + " https://plugins.jetbrains.com/plugin/24776-palantir-gradle-jdks/versions."
-                            + " To unblock the workflow, the jdks will be manually installed now ...",
-                    missingJdkPaths);
-            runGradleJdkSetup(rootProjectDir);
-        }
-        return jdkPaths;
-    }
 
-    private static List<Path> getConfiguredJdkPaths(Path gradleJdksLocalDirectory) {
-        Path installationDirectory = getToolchainInstallationDir();
-        Os os = CurrentOs.get();
-        Arch arch = CurrentArch.get();
-        try (Stream<Path> stream = Files.list(gradleJdksLocalDirectory).filter(Files::isDirectory)) {
-            return stream.map(path ->
-                            path.resolve(os.toString()).resolve(arch.toString()).resolve("local-path"))
-                    .map(path -> resolveJdkPath(path, installationDirectory))
-                    .collect(Collectors.toList());
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to list the local JDK installation paths", e);
+        private ToolchainPaths currentToolchainPaths() {
+            ToolchainPaths paths = toolchainPaths;
+            if (!paths.isUpToDate()) {
+                synchronized (this) {
+                    paths = toolchainPaths;
+                    if (!paths.isUpToDate()) {
+                        paths = ToolchainPaths.resolve(rootProjectDir, gradleJdksLocalDirectory);
+                        toolchainPaths = paths;
+                    }
+                }
+            }
+            return paths;
         }
-    }
 
-    private static Path resolveJdkPath(Path gradleJdkConfigurationPath, Path installationDirectory) {
-        try {
-            String localFilename = Files.readString(gradleJdkConfigurationPath).trim();
-            return installationDirectory.resolve(localFilename);
-        } catch (IOException e) {
-            throw new RuntimeException(
-                    String.format("Failed to read gradle jdk configuration file %s", gradleJdkConfigurationPath), e);
+        private MethodHandle delegateMethod(Method method) {
+            try {
+                return MethodHandles.lookup()
+                        .unreflect(method)
+                        .bindTo(originalGradleProperties)
+                        .asSpreader(Object[].class, method.getParameterCount())
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(String.format("Failed to access GradleProperties method %s", method), e);
+            }
         }
     }
 
-    private static Path getToolchainInstallationDir() {
-        return Path.of(Optional.ofNullable(System.getenv("GRADLE_USER_HOME"))
-                        .orElseGet(() -> System.getProperty("user.home") + "/.gradle"))
-                .resolve("gradle-jdks");
-    }
-
     private static boolean isGradleVersionSupported() {
         return GradleVersion.current()
                         .compareTo(GradleVersion.version(GradleJdksEnablement.MINIMUM_SUPPORTED_GRADLE_VERSION))
                 >= 0;
     }
-
-    private static void runGradleJdkSetup(Path rootProjectDir) {
-        Path buildDirectory = rootProjectDir.resolve("build");
-        createDirectories(buildDirectory);
-        CommandRunner.runWithLogger(
-                new ProcessBuilder().command("./gradle/gradle-jdks-setup.sh").directory(rootProjectDir.toFile()),
-                ToolchainJdksSettingsPlugin::writeStdOutput,
-                ToolchainJdksSettingsPlugin::writeStdErr);
-    }
-
-    private static void writeStdOutput(InputStream inputStream) {
-        CommandRunner.processStream(inputStream, logger::lifecycle);
-    }
-
-    private static void writeStdErr(InputStream inputStream) {
-        CommandRunner.processStream(inputStream, logger::error);
-    }
-
-    private static void createDirectories(Path path) {
-        try {
-            Files.createDirectories(path);
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to create directory", e);
-        }
-    }
-
-    private static List<Path> getMissingPaths(List<Path> paths) {
-        return paths.stream().filter(path -> !Files.exists(path)).collect(Collectors.toList());
-    }
 }
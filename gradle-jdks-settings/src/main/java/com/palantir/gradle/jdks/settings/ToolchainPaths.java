@@ -0,0 +1,199 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.jdks.settings;
+
+import com.palantir.gradle.jdks.setup.common.Arch;
+import com.palantir.gradle.jdks.setup.common.CommandRunner;
+import com.palantir.gradle.jdks.setup.common.CurrentArch;
+import com.palantir.gradle.jdks.setup.common.CurrentOs;
+import com.palantir.gradle.jdks.setup.common.JdkInstallationUsage;
+import com.palantir.gradle.jdks.setup.common.Os;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+/**
+ * The toolchain paths configured in {@code gradle/jdks} for the current os and arch, together with the modification
+ * times of the files they were read from, such that they are only re-read if {@code gradle/jdks} changes or one of the
+ * JDKs was pruned. As Gradle looks up the toolchain paths many times per build, they are checked at most once a
+ * second.
+ */
+final class ToolchainPaths {
+
+    private static final Logger logger = Logging.getLogger(ToolchainPaths.class);
+    private static final Duration RECHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private final String joinedPaths;
+    private final Map<Path, FileTime> inputModificationTimes;
+    private final List<Path> installations;
+    private final long recheckIntervalNanos;
+    private volatile long lastCheckNanos;
+    private volatile boolean stale;
+
+    private ToolchainPaths(
+            String joinedPaths,
+            Map<Path, FileTime> inputModificationTimes,
+            List<Path> installations,
+            Duration recheckInterval) {
+        this.joinedPaths = joinedPaths;
+        this.inputModificationTimes = inputModificationTimes;
+        this.installations = installations;
+        this.recheckIntervalNanos = recheckInterval.toNanos();
+        this.lastCheckNanos = System.nanoTime();
+    }
+
+    static ToolchainPaths resolve(Path rootProjectDir, Path gradleJdksLocalDirectory) {
+        return resolve(rootProjectDir, gradleJdksLocalDirectory, getToolchainInstallationDir(), RECHECK_INTERVAL);
+    }
+
+    static ToolchainPaths resolve(
+            Path rootProjectDir, Path gradleJdksLocalDirectory, Path installationDirectory, Duration recheckInterval) {
+        Map<Path, FileTime> inputModificationTimes = new HashMap<>();
+        inputModificationTimes.put(gradleJdksLocalDirectory, lastModifiedTime(gradleJdksLocalDirectory));
+        List<Path> localPathFiles = getConfiguredJdkLocalPathFiles(gradleJdksLocalDirectory);
+        localPathFiles.forEach(
+                localPathFile -> inputModificationTimes.put(localPathFile, lastModifiedTime(localPathFile)));
+        List<Path> installedLocalToolchains =
+                getOrInstallJdkPaths(rootProjectDir, localPathFiles, installationDirectory);
+        // such that the JDKs used by the recent builds are not pruned
+        installedLocalToolchains.forEach(JdkInstallationUsage::markUsed);
+        return new ToolchainPaths(
+                installedLocalToolchains.stream()
+                        .map(Path::toAbsolutePath)
+                        .map(Path::toString)
+                        .collect(Collectors.joining(",")),
+                inputModificationTimes,
+                installedLocalToolchains,
+                recheckInterval);
+    }
+
+    String joinedPaths() {
+        return joinedPaths;
+    }
+
+    /** Whether {@code gradle/jdks} is unchanged and the JDKs are still installed, e.g. not pruned in the meantime. */
+    boolean isUpToDate() {
+        long nowNanos = System.nanoTime();
+        if (stale || nowNanos - lastCheckNanos < recheckIntervalNanos) {
+            return !stale;
+        }
+        // once stale, they stay stale, such that the callers re-checking it under a lock do not see them up to date
+        stale = !inputModificationTimes.entrySet().stream()
+                        .allMatch(entry -> entry.getValue().equals(lastModifiedTime(entry.getKey())))
+                || !installations.stream().allMatch(Files::isDirectory);
+        lastCheckNanos = nowNanos;
+        return !stale;
+    }
+
+    private static FileTime lastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static List<Path> getOrInstallJdkPaths(
+            Path rootProjectDir, List<Path> localPathFiles, Path installationDirectory) {
+        List<Path> jdkPaths = getConfiguredJdkPaths(localPathFiles, installationDirectory);
+        List<Path> missingJdkPaths = getMissingPaths(jdkPaths);
+        if (!missingJdkPaths.isEmpty()) {
+            logger.error(
+                    "Gradle JDK setup is enabled (palantir.jdk.setup.enabled is true) but some jdks were not"
+                            + " installed: {}. If running from Intellij, please make sure the"
+                            + " `palantir-gradle-jdks` Intellij plugin is installed"
+                            + " https://plugins.jetbrains.com/plugin/24776-palantir-gradle-jdks/versions."
+                            + " To unblock the workflow, the jdks will be manually installed now ...",
+                    missingJdkPaths);
+            runGradleJdkSetup(rootProjectDir);
+        }
+        return jdkPaths;
+    }
+
+    private static List<Path> getConfiguredJdkPaths(List<Path> localPathFiles, Path installationDirectory) {
+        return localPathFiles.stream()
+                .map(path -> resolveJdkPath(path, installationDirectory))
+                .collect(Collectors.toList());
+    }
+
+    private static List<Path> getConfiguredJdkLocalPathFiles(Path gradleJdksLocalDirectory) {
+        Os os = CurrentOs.get();
+        Arch arch = CurrentArch.get();
+        try (Stream<Path> stream = Files.list(gradleJdksLocalDirectory).filter(Files::isDirectory)) {
+            return stream.map(path ->
+                            path.resolve(os.toString()).resolve(arch.toString()).resolve("local-path"))
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to list the local JDK installation paths", e);
+        }
+    }
+
+    private static Path resolveJdkPath(Path gradleJdkConfigurationPath, Path installationDirectory) {
+        try {
+            String localFilename = Files.readString(gradleJdkConfigurationPath).trim();
+            return installationDirectory.resolve(localFilename);
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    String.format("Failed to read gradle jdk configuration file %s", gradleJdkConfigurationPath), e);
+        }
+    }
+
+    private static Path getToolchainInstallationDir() {
+        return Path.of(Optional.ofNullable(System.getenv("GRADLE_USER_HOME"))
+                        .orElseGet(() -> System.getProperty("user.home") + "/.gradle"))
+                .resolve("gradle-jdks");
+    }
+
+    private static void runGradleJdkSetup(Path rootProjectDir) {
+        Path buildDirectory = rootProjectDir.resolve("build");
+        createDirectories(buildDirectory);
+        CommandRunner.runWithLogger(
+                new ProcessBuilder().command("./gradle/gradle-jdks-setup.sh").directory(rootProjectDir.toFile()),
+                ToolchainPaths::writeStdOutput,
+                ToolchainPaths::writeStdErr);
+    }
+
+    private static void writeStdOutput(InputStream inputStream) {
+        CommandRunner.processStream(inputStream, logger::lifecycle);
+    }
+
+    private static void writeStdErr(InputStream inputStream) {
+        CommandRunner.processStream(inputStream, logger::error);
+    }
+
+    private static void createDirectories(Path path) {
+        try {
+            Files.createDirectories(path);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create directory", e);
+        }
+    }
+
+    private static List<Path> getMissingPaths(List<Path> paths) {
+        return paths.stream().filter(path -> !Files.exists(path)).collect(Collectors.toList());
+    }
+}
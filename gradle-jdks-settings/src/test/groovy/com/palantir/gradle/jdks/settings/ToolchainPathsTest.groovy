@@ -0,0 +1,113 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.jdks.settings
+
+import com.palantir.gradle.jdks.setup.common.CurrentArch
+import com.palantir.gradle.jdks.setup.common.CurrentOs
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+import java.time.Duration
+
+class ToolchainPathsTest extends Specification {
+
+    @TempDir
+    Path projectDir
+
+    @TempDir
+    Path installationDir
+
+    Path localPathFile
+
+    def setup() {
+        localPathFile = projectDir.resolve("gradle/jdks/17/${CurrentOs.get().uiName()}/${CurrentArch.get().uiName()}/local-path")
+        Files.createDirectories(localPathFile.parent)
+        localPathFile.text = 'amazon-corretto-17\n'
+        Files.createDirectories(installationDir.resolve('amazon-corretto-17'))
+        // installs the missing JDKs, like the Gradle JDK setup would
+        Path setupScript = projectDir.resolve('gradle/gradle-jdks-setup.sh')
+        setupScript.text = """#!/bin/sh
+            echo installed >> '${projectDir.resolve('setup.log')}'
+            for local_path in gradle/jdks/*/*/*/local-path; do
+              mkdir -p '${installationDir}'/"\$(cat "\$local_path")"
+            done
+            """.stripIndent(true)
+        setupScript.toFile().setExecutable(true)
+    }
+
+    def 'are up to date until gradle/jdks changes'() {
+        when:
+        ToolchainPaths toolchainPaths = resolve(Duration.ZERO)
+
+        then:
+        toolchainPaths.joinedPaths() == installationDir.resolve('amazon-corretto-17').toAbsolutePath().toString()
+        toolchainPaths.isUpToDate()
+
+        when: 'the local-path file is regenerated'
+        localPathFile.text = 'amazon-corretto-17.0.1\n'
+        Files.setLastModifiedTime(localPathFile, FileTime.fromMillis(System.currentTimeMillis() + 1_000))
+
+        then:
+        !toolchainPaths.isUpToDate()
+        !toolchainPaths.isUpToDate()
+
+        when:
+        ToolchainPaths resolvedAgain = resolve(Duration.ZERO)
+
+        then: 'the newly configured JDK is installed'
+        resolvedAgain.joinedPaths() == installationDir.resolve('amazon-corretto-17.0.1').toAbsolutePath().toString()
+        Files.isDirectory(installationDir.resolve('amazon-corretto-17.0.1'))
+        resolvedAgain.isUpToDate()
+    }
+
+    def 'are not up to date once a JDK is pruned'() {
+        given:
+        ToolchainPaths toolchainPaths = resolve(Duration.ZERO)
+
+        when:
+        Files.delete(installationDir.resolve('amazon-corretto-17'))
+
+        then:
+        !toolchainPaths.isUpToDate()
+        !Files.exists(projectDir.resolve('setup.log'))
+
+        when:
+        ToolchainPaths resolvedAgain = resolve(Duration.ZERO)
+
+        then: 'the pruned JDK is installed again'
+        projectDir.resolve('setup.log').readLines() == ['installed']
+        Files.isDirectory(installationDir.resolve('amazon-corretto-17'))
+        resolvedAgain.isUpToDate()
+    }
+
+    def 'are checked at most once per recheck interval'() {
+        given:
+        ToolchainPaths toolchainPaths = resolve(Duration.ofHours(1))
+
+        when:
+        Files.delete(installationDir.resolve('amazon-corretto-17'))
+
+        then:
+        toolchainPaths.isUpToDate()
+    }
+
+    private ToolchainPaths resolve(Duration recheckInterval) {
+        return ToolchainPaths.resolve(projectDir, projectDir.resolve('gradle/jdks'), installationDir, recheckInterval)
+    }
+}
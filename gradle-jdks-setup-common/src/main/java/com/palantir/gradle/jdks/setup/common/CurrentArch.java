@@ -19,8 +19,31 @@ package com.palantir.gradle.jdks.setup.common;
 import java.util.Locale;
 import java.util.Set;
 
+/**
+ * Detects the current {@link Arch}, once per JVM. The result can be overridden using the
+ * {@value #ARCH_OVERRIDE_PROPERTY} system property.
+ */
 public final class CurrentArch {
+
+    public static final String ARCH_OVERRIDE_PROPERTY = "palantir.jdk.setup.arch";
+
+    private static volatile Arch detectedArch;
+
     public static Arch get() {
+        String archOverride = System.getProperty(ARCH_OVERRIDE_PROPERTY);
+        if (archOverride != null) {
+            return Arch.fromStringThrowing(archOverride.trim());
+        }
+        Arch arch = detectedArch;
+        if (arch == null) {
+            // detection is cheap and deterministic, so a race only means computing the same value twice
+            arch = detect();
+            detectedArch = arch;
+        }
+        return arch;
+    }
+
+    private static Arch detect() {
         String osArch = System.getProperty("os.arch").toLowerCase(Locale.ROOT);
 
         if (Set.of("x86_64", "x64", "amd64").contains(osArch)) {
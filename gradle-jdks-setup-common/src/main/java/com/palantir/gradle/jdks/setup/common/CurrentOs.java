@@ -17,14 +17,46 @@
 package com.palantir.gradle.jdks.setup.common;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Locale;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.function.UnaryOperator;
 
+/**
+ * Detects the current {@link Os}. The detection is done once per JVM, as telling apart glibc and musl based Linux
+ * distributions might require forking {@code ldd}. The result can be overridden using the
+ * {@value #OS_OVERRIDE_PROPERTY} system property, e.g. in containers with an unusual libc setup.
+ */
 public final class CurrentOs {
+
+    public static final String OS_OVERRIDE_PROPERTY = "palantir.jdk.setup.os";
+
+    private static final Path ELF_PROBE_BINARY = Path.of("/bin/sh");
+    private static final Object DETECTION_LOCK = new Object();
+    private static volatile Os detectedOs;
+
     public static Os get() {
+        String osOverride = System.getProperty(OS_OVERRIDE_PROPERTY);
+        if (osOverride != null) {
+            return Os.fromStringThrowing(osOverride.trim());
+        }
+        Os os = detectedOs;
+        if (os == null) {
+            synchronized (DETECTION_LOCK) {
+                os = detectedOs;
+                if (os == null) {
+                    os = detect();
+                    detectedOs = os;
+                }
+            }
+        }
+        return os;
+    }
+
+    private static Os detect() {
         String osName = System.getProperty("os.name").toLowerCase(Locale.ROOT);
 
         if (osName.startsWith("mac")) {
@@ -36,12 +68,27 @@ public final class CurrentOs {
         }
 
         if (osName.startsWith("linux")) {
-            return linuxLibcFromLdd();
+            return linuxLibcFromElfInterpreter(ELF_PROBE_BINARY).orElseGet(CurrentOs::linuxLibcFromLdd);
         }
 
         throw new UnsupportedOperationException("Cannot get platform for operating system " + osName);
     }
 
+    // Visible for testing
+    static Optional<Os> linuxLibcFromElfInterpreter(Path elfBinary) {
+        return ElfInterpreter.of(elfBinary).flatMap(interpreter -> {
+            String lowercaseInterpreter = interpreter.toLowerCase(Locale.ROOT);
+            if (lowercaseInterpreter.contains("musl")) {
+                return Optional.of(Os.LINUX_MUSL);
+            }
+            // glibc loaders are called ld-linux*.so.* (x86, arm) or ld64.so.* (ppc64, s390x)
+            if (lowercaseInterpreter.contains("ld-linux") || lowercaseInterpreter.contains("ld64.so")) {
+                return Optional.of(Os.LINUX_GLIBC);
+            }
+            return Optional.empty();
+        });
+    }
+
     private static Os linuxLibcFromLdd() {
         return linuxLibcFromLdd(UnaryOperator.identity());
     }
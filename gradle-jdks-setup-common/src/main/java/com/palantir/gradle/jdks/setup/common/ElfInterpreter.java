@@ -0,0 +1,103 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup.common;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Reads the program interpreter (the {@code PT_INTERP} segment) of an ELF binary, e.g. {@code /lib/ld-musl-x86_64.so.1}
+ * or {@code /lib64/ld-linux-x86-64.so.2}, without starting any process.
+ */
+final class ElfInterpreter {
+
+    private static final int ELF_MAGIC = 0x7F454C46;
+    private static final int PT_INTERP = 3;
+    private static final int MAX_PROGRAM_HEADERS_SIZE = 64 * 1024;
+    private static final int MAX_INTERPRETER_SIZE = 4 * 1024;
+
+    static Optional<String> of(Path elfFile) {
+        try (FileChannel channel = FileChannel.open(elfFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(64);
+            if (!readFully(channel, header, 0) || header.getInt(0) != ELF_MAGIC) {
+                return Optional.empty();
+            }
+            boolean is64Bit = header.get(4) == 2;
+            ByteOrder byteOrder = header.get(5) == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            header.order(byteOrder);
+            long programHeadersOffset = is64Bit ? header.getLong(32) : Integer.toUnsignedLong(header.getInt(28));
+            int programHeaderSize = Short.toUnsignedInt(header.getShort(is64Bit ? 54 : 42));
+            int programHeadersCount = Short.toUnsignedInt(header.getShort(is64Bit ? 56 : 44));
+            int programHeadersSize = programHeaderSize * programHeadersCount;
+            if (programHeadersSize == 0 || programHeadersSize > MAX_PROGRAM_HEADERS_SIZE) {
+                return Optional.empty();
+            }
+            ByteBuffer programHeaders = ByteBuffer.allocate(programHeadersSize).order(byteOrder);
+            if (!readFully(channel, programHeaders, programHeadersOffset)) {
+                return Optional.empty();
+            }
+            for (int i = 0; i < programHeadersCount; i++) {
+                int base = i * programHeaderSize;
+                if (programHeaders.getInt(base) != PT_INTERP) {
+                    continue;
+                }
+                long offset = is64Bit
+                        ? programHeaders.getLong(base + 8)
+                        : Integer.toUnsignedLong(programHeaders.getInt(base + 4));
+                long size = is64Bit
+                        ? programHeaders.getLong(base + 32)
+                        : Integer.toUnsignedLong(programHeaders.getInt(base + 16));
+                if (size <= 0 || size > MAX_INTERPRETER_SIZE) {
+                    return Optional.empty();
+                }
+                ByteBuffer interpreter = ByteBuffer.allocate((int) size);
+                if (!readFully(channel, interpreter, offset)) {
+                    return Optional.empty();
+                }
+                // the interpreter path is NUL terminated
+                int length = (int) size;
+                while (length > 0 && interpreter.get(length - 1) == 0) {
+                    length--;
+                }
+                return Optional.of(new String(interpreter.array(), 0, length, StandardCharsets.UTF_8));
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long currentPosition = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, currentPosition);
+            if (read < 0) {
+                return false;
+            }
+            currentPosition += read;
+        }
+        return true;
+    }
+
+    private ElfInterpreter() {}
+}
@@ -0,0 +1,77 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup.common;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Optional;
+
+/**
+ * Tracks when a JDK installation was last used, using the modification time of a {@code <installation>.last-used}
+ * file next to it, such that the unused installations can be pruned.
+ */
+public final class JdkInstallationUsage {
+
+    public static final String LAST_USED_SUFFIX = ".last-used";
+
+    /**
+     * Records that {@code installation} is used now. This is best effort, as the JDK installation directory might be
+     * read-only.
+     */
+    public static void markUsed(Path installation) {
+        Path marker = markerPath(installation);
+        FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+        try {
+            Files.setLastModifiedTime(marker, now);
+        } catch (NoSuchFileException e) {
+            try {
+                Files.createFile(marker);
+            } catch (FileAlreadyExistsException ignored) {
+                // created concurrently
+            } catch (IOException ignored) {
+                // best effort
+            }
+        } catch (IOException ignored) {
+            // best effort
+        }
+    }
+
+    /**
+     * When {@code installation} was last used, falling back to its modification time if it was never marked as used.
+     */
+    public static Optional<FileTime> lastUsed(Path installation) {
+        try {
+            return Optional.of(Files.getLastModifiedTime(markerPath(installation)));
+        } catch (IOException e) {
+            try {
+                return Optional.of(Files.getLastModifiedTime(installation));
+            } catch (IOException ignored) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    public static Path markerPath(Path installation) {
+        return installation.resolveSibling(installation.getFileName() + LAST_USED_SUFFIX);
+    }
+
+    private JdkInstallationUsage() {}
+}
@@ -0,0 +1,118 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup.common;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+/**
+ * Exclusive locks on {@code .lock} files, which their holder may delete, e.g. when pruning the JDK installation they
+ * guard. A process waiting for such a lock would otherwise end up holding the lock of a deleted file, while another
+ * process locks the new file created at the same path.
+ */
+public final class LockFiles {
+
+    // the file systems without file keys, e.g. on Windows, do not delete the files that are open
+    private static final Object NO_FILE_KEY = new Object();
+
+    /**
+     * Locks {@code lockFile}, creating it if needed, and retries until the locked file is still the one at that path.
+     * The lock is released by closing its {@link FileLock#channel() channel}. The file locks are held on behalf of the
+     * whole JVM, hence its threads must be serialized by the callers.
+     */
+    public static FileLock lock(Path lockFile) throws IOException {
+        return lock(lockFile, FileChannel::lock).orElseThrow();
+    }
+
+    /** Locks {@code lockFile} like {@link #lock}, unless it is held by another process or by this JVM. */
+    public static Optional<FileLock> tryLock(Path lockFile) throws IOException {
+        return lock(lockFile, channel -> {
+            try {
+                return channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                return null;
+            }
+        });
+    }
+
+    private static Optional<FileLock> lock(Path lockFile, ChannelLocker locker) throws IOException {
+        while (true) {
+            try {
+                Files.createFile(lockFile);
+            } catch (FileAlreadyExistsException ignored) {
+                // created by another locker
+            }
+            Optional<Object> fileKey = fileKey(lockFile);
+            if (fileKey.isEmpty()) {
+                // deleted by the lock holder in the meantime
+                continue;
+            }
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(lockFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            try {
+                // the opened file is the one of the key if the key did not change while opening it
+                if (fileKey.equals(fileKey(lockFile))) {
+                    FileLock fileLock = locker.lock(channel);
+                    if (fileLock == null) {
+                        channel.close();
+                        return Optional.empty();
+                    }
+                    // only the lock holder deletes the lock file, hence it is still the one at the path unless it was
+                    // deleted while this process waited for the lock
+                    if (fileKey.equals(fileKey(lockFile))) {
+                        return Optional.of(fileLock);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            channel.close();
+        }
+    }
+
+    /** The identity of the file, or empty if it does not exist. */
+    private static Optional<Object> fileKey(Path path) throws IOException {
+        try {
+            Object fileKey =
+                    Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            return Optional.of(fileKey != null ? fileKey : NO_FILE_KEY);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    private interface ChannelLocker {
+        /** Locks {@code channel}, or returns null if it is held by another process. */
+        FileLock lock(FileChannel channel) throws IOException;
+    }
+
+    private LockFiles() {}
+}
@@ -0,0 +1,70 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+class CurrentOsTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    void is_memoized_per_jvm() {
+        assertThat(CurrentOs.get()).isSameAs(CurrentOs.get());
+        assertThat(CurrentArch.get()).isSameAs(CurrentArch.get());
+    }
+
+    @Test
+    void can_override_the_detected_platform() {
+        System.setProperty(CurrentOs.OS_OVERRIDE_PROPERTY, "linux-musl");
+        System.setProperty(CurrentArch.ARCH_OVERRIDE_PROPERTY, "aarch64");
+        try {
+            assertThat(CurrentOs.get()).isEqualTo(Os.LINUX_MUSL);
+            assertThat(CurrentArch.get()).isEqualTo(Arch.AARCH64);
+        } finally {
+            System.clearProperty(CurrentOs.OS_OVERRIDE_PROPERTY);
+            System.clearProperty(CurrentArch.ARCH_OVERRIDE_PROPERTY);
+        }
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void elf_interpreter_probe_agrees_with_ldd() {
+        assertThat(CurrentOs.linuxLibcFromElfInterpreter(Path.of("/bin/sh")))
+                .contains(CurrentOs.linuxLibcFromLdd(UnaryOperator.identity()));
+    }
+
+    @Test
+    void elf_interpreter_probe_ignores_non_elf_files() throws IOException {
+        Path script = Files.write(
+                tmpDir.resolve("script.sh"), List.of("#!/bin/sh", "echo musl"), StandardCharsets.UTF_8);
+        assertThat(CurrentOs.linuxLibcFromElfInterpreter(script)).isEmpty();
+        assertThat(CurrentOs.linuxLibcFromElfInterpreter(tmpDir.resolve("missing"))).isEmpty();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup.common;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+class LockFilesTest {
+
+    @TempDir
+    Path tmpDir;
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void locks_the_new_lock_file_if_the_holder_deleted_it() throws Exception {
+        Path lockFile = tmpDir.resolve("azul-zulu-17.lock");
+        // file locks are held per process, hence the lock is held and deleted by another process
+        Process holder = new ProcessBuilder(
+                        Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                        "-cp",
+                        System.getProperty("java.class.path"),
+                        LockFilesTest.class.getName(),
+                        lockFile.toString())
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try (BufferedReader holderOutput =
+                        new BufferedReader(new InputStreamReader(holder.getInputStream(), StandardCharsets.UTF_8));
+                OutputStream holderInput = holder.getOutputStream()) {
+            assertThat(holderOutput.readLine()).isEqualTo("locked");
+
+            CompletableFuture<FileLock> waiting = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return LockFiles.lock(lockFile);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            // wait for the lock attempt to block on the lock held by the other process
+            Thread.sleep(500);
+            assertThat(waiting).isNotDone();
+
+            holderInput.write('\n');
+            holderInput.flush();
+            FileLock fileLock = waiting.get(10, TimeUnit.SECONDS);
+            try {
+                fileLock.channel().write(ByteBuffer.wrap(new byte[] {1}));
+                assertThat(lockFile).hasSize(1);
+            } finally {
+                fileLock.channel().close();
+            }
+        } finally {
+            assertThat(holder.waitFor(10, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+    @Test
+    void creates_the_lock_file() throws IOException {
+        Path lockFile = tmpDir.resolve("azul-zulu-17.lock");
+        FileLock fileLock = LockFiles.lock(lockFile);
+        try {
+            assertThat(fileLock.isValid()).isTrue();
+            assertThat(lockFile).exists();
+        } finally {
+            fileLock.channel().close();
+        }
+        assertThat(fileLock.isValid()).isFalse();
+    }
+
+    @Test
+    void does_not_try_to_lock_a_held_lock_file() throws IOException {
+        Path lockFile = tmpDir.resolve("azul-zulu-17.lock");
+        FileLock fileLock = LockFiles.lock(lockFile);
+        try {
+            assertThat(LockFiles.tryLock(lockFile)).isEmpty();
+        } finally {
+            fileLock.channel().close();
+        }
+        FileLock triedLock = LockFiles.tryLock(lockFile).orElseThrow();
+        triedLock.channel().close();
+    }
+
+    /** Locks the lock file, then deletes it while still holding the lock once a line is read from stdin. */
+    public static void main(String[] args) throws IOException {
+        Path lockFile = Path.of(args[0]);
+        FileLock fileLock = LockFiles.lock(lockFile);
+        System.out.println("locked");
+        System.out.flush();
+        System.in.read();
+        Files.delete(lockFile);
+        fileLock.channel().close();
+    }
+}
@@ -25,6 +25,7 @@ import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -44,6 +45,7 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -58,6 +60,14 @@ public final class CaResources {
 
     private static final BigInteger PALANTIR_3RD_GEN_SERIAL = new BigInteger("18126334688741185161");
     private static final String PALANTIR_3RD_GEN_CERTIFICATE = "Palantir3rdGenRootCa";
+    private static final String CACERTS = "lib/security/cacerts";
+    private static final String CACERTS_INDEX = "lib/security/cacerts.gradle-jdks-index";
+    private static final List<Path> MACOS_KEYCHAINS = List.of(Paths.get("/Library/Keychains/System.keychain"));
+    private static final List<Path> LINUX_CA_BUNDLES = List.of(
+            // Ubuntu/debian
+            Paths.get("/etc/ssl/certs/ca-certificates.crt"),
+            // Red hat/centos
+            Paths.get("/etc/ssl/certs/ca-bundle.crt"));
 
     private final ILogger logger;
 
@@ -69,19 +79,54 @@ public final class CaResources {
         return systemCertificates().flatMap(CaResources::selectPalantirCertificate);
     }
 
+    /**
+     * Imports the valid TLS CA certificates of the system truststore into the JDK's truststore. The imported
+     * certificates are recorded in an index next to the JDK's {@code cacerts}, such that the system certificates are
+     * only parsed again when the system bundles changed, and only the certificates that were not imported yet are
+     * considered.
+     */
     public void importAllSystemCerts(Path jdkInstallationDirectory) {
-        systemCertificates().ifPresent(certs -> importCertificates(jdkInstallationDirectory, parseCerts(certs)));
+        systemCertificateBundles().ifPresent(bundles -> importSystemCerts(jdkInstallationDirectory, bundles));
     }
 
-    private void importCertificates(Path jdkInstallationDirectory, List<X509Certificate> certificates) {
+    void importSystemCerts(Path jdkInstallationDirectory, List<Path> bundles) {
+        Path jksPath = jdkInstallationDirectory.resolve(CACERTS);
+        Path indexPath = jdkInstallationDirectory.resolve(CACERTS_INDEX);
+        String bundlesStamp = CertificateIndex.stamp(bundles);
+        // the index is only trusted as long as the truststore was not modified since it was written
+        Optional<CertificateIndex> index = CertificateIndex.read(indexPath)
+                .filter(existingIndex ->
+                        existingIndex.truststoreStamp().equals(CertificateIndex.stamp(List.of(jksPath))));
+        if (index.isPresent() && index.get().bundlesStamp().equals(bundlesStamp)) {
+            return;
+        }
+        Set<String> importedFingerprints =
+                new HashSet<>(index.map(CertificateIndex::importedFingerprints).orElseGet(Set::of));
+        List<X509Certificate> certificates = parseCerts(readSystemCertificates(bundles)).stream()
+                .filter(certificate -> !importedFingerprints.contains(CertificateIndex.fingerprint(certificate)))
+                .collect(Collectors.toList());
+        importedFingerprints.addAll(importCertificates(jksPath, certificates));
+        new CertificateIndex(bundlesStamp, CertificateIndex.stamp(List.of(jksPath)), importedFingerprints)
+                .write(indexPath);
+    }
+
+    /**
+     * Returns the fingerprints of the valid TLS CA {@code certificates}, which are all in the truststore once this
+     * method returns. The truststore is neither loaded nor stored when there is nothing to import.
+     */
+    private Set<String> importCertificates(Path jksPath, List<X509Certificate> certificates) {
+        List<X509Certificate> tlsCertificates = certificates.stream()
+                .filter(CaResources::isValid)
+                .filter(CaResources::isCertUsedForTls)
+                .collect(Collectors.toList());
+        if (tlsCertificates.isEmpty()) {
+            return Set.of();
+        }
         try {
             char[] passwd = "changeit".toCharArray();
-            Path jksPath = jdkInstallationDirectory.resolve("lib/security/cacerts");
             KeyStore jks = loadKeystore(passwd, jksPath);
             Set<X509Certificate> existingCertificates = getExistingCertificates(jks);
-            List<X509Certificate> newCertificates = certificates.stream()
-                    .filter(CaResources::isValid)
-                    .filter(CaResources::isCertUsedForTls)
+            List<X509Certificate> newCertificates = tlsCertificates.stream()
                     .filter(certificate -> !existingCertificates.contains(certificate))
                     .collect(Collectors.toList());
             for (X509Certificate certificate : newCertificates) {
@@ -91,7 +136,12 @@ public final class CaResources {
                         alias));
                 jks.setCertificateEntry(alias, certificate);
             }
-            jks.store(new BufferedOutputStream(new FileOutputStream(jksPath.toFile())), passwd);
+            if (!newCertificates.isEmpty()) {
+                try (OutputStream output = new BufferedOutputStream(new FileOutputStream(jksPath.toFile()))) {
+                    jks.store(output, passwd);
+                }
+            }
+            return tlsCertificates.stream().map(CertificateIndex::fingerprint).collect(Collectors.toSet());
         } catch (KeyStoreException | CertificateException | IOException | NoSuchAlgorithmException e) {
             throw new RuntimeException("Failed to import certificates", e);
         }
@@ -188,13 +238,17 @@ public final class CaResources {
     }
 
     private Optional<byte[]> systemCertificates() {
+        return systemCertificateBundles().map(CaResources::readSystemCertificates);
+    }
+
+    private Optional<List<Path>> systemCertificateBundles() {
         Os os = CurrentOs.get();
         switch (os) {
             case MACOS:
-                return Optional.of(macosSystemCertificates());
+                return Optional.of(existingPaths(MACOS_KEYCHAINS));
             case LINUX_MUSL:
             case LINUX_GLIBC:
-                return Optional.of(linuxSystemCertificates());
+                return Optional.of(existingPaths(LINUX_CA_BUNDLES));
             case WINDOWS:
                 logger.logError(String.format(
                         "Not attempting to read Palantir CA from system truststore "
@@ -205,10 +259,19 @@ public final class CaResources {
         throw new IllegalStateException("Unreachable code; all Os enum values should be handled");
     }
 
-    private static byte[] macosSystemCertificates() {
-        return Stream.of("/Library/Keychains/System.keychain")
-                .map(Paths::get)
-                .filter(Files::exists)
+    private static List<Path> existingPaths(List<Path> paths) {
+        return paths.stream().filter(Files::exists).collect(Collectors.toList());
+    }
+
+    private static byte[] readSystemCertificates(List<Path> bundles) {
+        if (CurrentOs.get() == Os.MACOS) {
+            return macosSystemCertificates(bundles);
+        }
+        return linuxSystemCertificates(bundles);
+    }
+
+    private static byte[] macosSystemCertificates(List<Path> keyChainPaths) {
+        return keyChainPaths.stream()
                 .map(CaResources::macosSystemCertificates)
                 .collect(Collectors.joining("\n"))
                 .getBytes(StandardCharsets.UTF_8);
@@ -227,15 +290,8 @@ public final class CaResources {
                         keyChainPath.toAbsolutePath().toString()));
     }
 
-    private static byte[] linuxSystemCertificates() {
-        List<Path> possibleCaCertificatePaths = List.of(
-                // Ubuntu/debian
-                Paths.get("/etc/ssl/certs/ca-certificates.crt"),
-                // Red hat/centos
-                Paths.get("/etc/ssl/certs/ca-bundle.crt"));
-
-        return possibleCaCertificatePaths.stream()
-                .filter(Files::exists)
+    private static byte[] linuxSystemCertificates(List<Path> caCertificatePaths) {
+        return caCertificatePaths.stream()
                 .map(caCertificatePath -> {
                     try {
                         return Files.readString(caCertificatePath);
@@ -0,0 +1,157 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import com.palantir.gradle.jdks.setup.common.Sha256;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Records which system certificates were imported into a JDK truststore, together with the size and modification
+ * time of the system certificate bundles and of the truststore at the time of the import. It is stored as
+ * {@code key=value} lines next to the JDK's {@code cacerts}.
+ */
+final class CertificateIndex {
+
+    private static final String VERSION = "1";
+
+    private final String bundlesStamp;
+    private final String truststoreStamp;
+    private final Set<String> importedFingerprints;
+
+    CertificateIndex(String bundlesStamp, String truststoreStamp, Set<String> importedFingerprints) {
+        this.bundlesStamp = bundlesStamp;
+        this.truststoreStamp = truststoreStamp;
+        this.importedFingerprints = Collections.unmodifiableSet(new TreeSet<>(importedFingerprints));
+    }
+
+    String bundlesStamp() {
+        return bundlesStamp;
+    }
+
+    String truststoreStamp() {
+        return truststoreStamp;
+    }
+
+    Set<String> importedFingerprints() {
+        return importedFingerprints;
+    }
+
+    static Optional<CertificateIndex> read(Path indexFile) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to read certificate index %s", indexFile), e);
+        }
+        String version = null;
+        String bundlesStamp = null;
+        String truststoreStamp = null;
+        Set<String> importedFingerprints = new HashSet<>();
+        for (String line : lines) {
+            int separator = line.indexOf('=');
+            if (separator < 0) {
+                continue;
+            }
+            String value = line.substring(separator + 1);
+            switch (line.substring(0, separator)) {
+                case "version":
+                    version = value;
+                    break;
+                case "bundles":
+                    bundlesStamp = value;
+                    break;
+                case "truststore":
+                    truststoreStamp = value;
+                    break;
+                case "imported":
+                    importedFingerprints.add(value);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!VERSION.equals(version) || bundlesStamp == null || truststoreStamp == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new CertificateIndex(bundlesStamp, truststoreStamp, importedFingerprints));
+    }
+
+    void write(Path indexFile) {
+        Path temporaryIndexFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryIndexFile, StandardCharsets.UTF_8)) {
+                writer.write("version=" + VERSION + "\n");
+                writer.write("bundles=" + bundlesStamp + "\n");
+                writer.write("truststore=" + truststoreStamp + "\n");
+                for (String fingerprint : importedFingerprints) {
+                    writer.write("imported=" + fingerprint + "\n");
+                }
+            }
+            Files.move(temporaryIndexFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to write certificate index %s", indexFile), e);
+        }
+    }
+
+    /**
+     * Identifies the current content of {@code paths} by their sizes and modification times.
+     */
+    static String stamp(List<Path> paths) {
+        StringBuilder stamp = new StringBuilder();
+        for (Path path : paths) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (stamp.length() > 0) {
+                    stamp.append(';');
+                }
+                stamp.append(path.toAbsolutePath())
+                        .append(':')
+                        .append(attributes.size())
+                        .append(':')
+                        .append(attributes.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Failed to read the attributes of %s", path), e);
+            }
+        }
+        return stamp.toString();
+    }
+
+    static String fingerprint(X509Certificate certificate) {
+        try {
+            return Sha256.hex(Sha256.newDigest().digest(certificate.getEncoded()));
+        } catch (CertificateEncodingException e) {
+            throw new RuntimeException("Failed to compute the certificate fingerprint", e);
+        }
+    }
+}
@@ -18,16 +18,26 @@ package com.palantir.gradle.jdks.setup;
 
 import java.io.IOException;
 import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Optional;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
 public final class FileUtils {
 
+    private static final int COPY_THREADS =
+            Math.min(16, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
     public static void delete(Path path) {
         if (!Files.exists(path)) {
             return;
@@ -55,8 +65,23 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * Copies the {@code source} directory tree into {@code destination}. All the directories are created upfront, then
+     * the files are copied by a pool of threads, as copying a JDK's thousands of small files is latency-bound. Symbolic
+     * links are recreated rather than followed.
+     */
     public static void copyDirectory(Path source, Path destination) throws IOException {
-        Files.walkFileTree(source, new FileVisitor<Path>() {
+        copyDirectory(source, destination, false);
+    }
+
+    /**
+     * Same as {@link #copyDirectory(Path, Path)}, but hardlinks the files into {@code destination} when
+     * {@code hardlink} is set. Files that cannot be linked, eg. because the destination is on another filesystem, are
+     * copied instead.
+     */
+    public static void copyDirectory(Path source, Path destination, boolean hardlink) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(source, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes _attrs) throws IOException {
                 Files.createDirectories(destination.resolve(source.relativize(dir)));
@@ -64,24 +89,67 @@ public final class FileUtils {
             }
 
             @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes _attrs) throws IOException {
-                Files.copy(file, destination.resolve(source.relativize(file)));
+            public FileVisitResult visitFile(Path file, BasicFileAttributes _attrs) {
+                files.add(file);
                 return FileVisitResult.CONTINUE;
             }
 
             @Override
-            public FileVisitResult visitFileFailed(Path _file, IOException exc) throws IOException {
+            public FileVisitResult visitFileFailed(Path _file, IOException exc) {
                 throw new RuntimeException("Failed to copy file", exc);
             }
+        });
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path _dir, IOException exc) throws IOException {
-                if (Optional.ofNullable(exc).isPresent()) {
-                    throw new RuntimeException("Failed to copy directory", exc);
-                }
-                return FileVisitResult.CONTINUE;
-            }
+        ExecutorService executor = Executors.newFixedThreadPool(COPY_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "gradle-jdks-copy");
+            thread.setDaemon(true);
+            return thread;
         });
+        try {
+            List<Future<?>> copies = new ArrayList<>(files.size());
+            for (Path file : files) {
+                Path target = destination.resolve(source.relativize(file));
+                copies.add(executor.submit(() -> {
+                    copyFile(file, target, hardlink);
+                    return null;
+                }));
+            }
+            for (Future<?> copy : copies) {
+                copy.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(String.format("Failed to copy %s into %s", source, destination), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(String.format("Interrupted while copying %s", source), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void copyFile(Path file, Path target, boolean hardlink) throws IOException {
+        if (hardlink && !Files.isSymbolicLink(file)) {
+            try {
+                Files.createLink(target, file);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // fall back to a copy
+            }
+        }
+        Files.copy(file, target, LinkOption.NOFOLLOW_LINKS, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    /**
+     * Moves the {@code source} directory to {@code destination} with a single rename. Returns false if the rename is
+     * not possible, eg. because both paths are not on the same filesystem.
+     */
+    public static boolean tryMoveDirectory(Path source, Path destination) {
+        try {
+            Files.move(source, destination, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     public static void createDirectories(Path directoryPath) {
@@ -16,20 +16,30 @@
 
 package com.palantir.gradle.jdks.setup;
 
+import com.palantir.gradle.jdks.setup.common.JdkInstallationUsage;
+import com.palantir.gradle.jdks.setup.common.LockFiles;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.net.URI;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
 import java.util.Properties;
 
 /**
- * Class responsible for 2 workflows:
+ * Class responsible for 5 workflows:
  * 1. installing the current JDK into {@code destinationJdkInstallationDir} and importing the
  *  system certificates into the JDK's truststore.
  * 2. setting the java.home value in .gradle/config.properties to {@code gradleDaemonJavaHome} in the project directory.
+ * 3. pruning the unused JDK installations of {@code jdksDirectory}, see {@link JdkPruner}.
+ * 4. downloading a JDK archive using ranged parallel requests, see {@link HttpDownloader}.
+ * 5. importing a bundle of JDK installations exported by the {@code exportJdkBundle} task, see {@link JdkBundle}.
  * The class will be called by the Gradle setup script in
  * <a href="file:../resources/gradle-jdks-setup.sh">resources/gradle-jdks-setup.sh</a>.
  */
@@ -37,7 +47,10 @@ public final class GradleJdkInstallationSetup {
 
     public enum Command {
         JDK_SETUP("jdkSetup"),
-        DAEMON_SETUP("daemonSetup");
+        DAEMON_SETUP("daemonSetup"),
+        PRUNE("prune"),
+        DOWNLOAD("download"),
+        IMPORT_BUNDLE("importBundle");
 
         private final String label;
 
@@ -60,23 +73,115 @@ public final class GradleJdkInstallationSetup {
         }
     }
 
+    /**
+     * How the running JDK is installed into the destination directory, set using the {@link #INSTALL_MODE_PROPERTY}
+     * system property. {@code move} and {@code hardlink} must only be used when the running JDK is a throwaway copy,
+     * as its truststore is updated in place before the installation.
+     */
+    public enum InstallMode {
+        COPY("copy"),
+        MOVE("move"),
+        HARDLINK("hardlink");
+
+        private final String label;
+
+        InstallMode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+
+        public static InstallMode fromLabel(String label) {
+            for (InstallMode e : values()) {
+                if (e.label.equals(label)) {
+                    return e;
+                }
+            }
+            throw new RuntimeException(String.format("Cannot convert %s to an InstallMode", label));
+        }
+    }
+
+    public static final String INSTALL_MODE_PROPERTY = "palantir.jdk.setup.install.mode";
+
     public static void main(String[] args) {
-        StdLogger logger = new StdLogger();
-        CaResources caResources = new CaResources(logger);
         if (args.length < 1) {
-            throw new IllegalArgumentException("Expected at least an argument: jdkSetup or daemonSetup");
+            throw new IllegalArgumentException(
+                    "Expected at least an argument: jdkSetup, daemonSetup, prune, download or importBundle");
+        }
+        // daemonSetup runs on every JDK setup of ./gradlew, hence it is dispatched before anything else is loaded and
+        // only uses plain loops and I/O, without lambdas or streams whose bootstrap would dominate its startup time
+        if (args[0].equals(Command.DAEMON_SETUP.label)) {
+            setupDaemon(args);
+            return;
         }
+        StdLogger logger = new StdLogger();
         Command command = Command.fromLabel(args[0]);
         switch (command) {
             case JDK_SETUP:
-                setupJdk(logger, caResources, args);
+                setupJdk(logger, new CaResources(logger), args);
                 break;
             case DAEMON_SETUP:
                 setupDaemon(args);
                 break;
+            case PRUNE:
+                prune(logger, args);
+                break;
+            case DOWNLOAD:
+                download(logger, args);
+                break;
+            case IMPORT_BUNDLE:
+                importBundle(logger, args);
+                break;
         }
     }
 
+    private static void importBundle(ILogger logger, String[] args) {
+        if (args.length != 2 && args.length != 3) {
+            throw new IllegalArgumentException("Expected 1 or 2 arguments: importBundle <bundle> [<jdksDirectory>]");
+        }
+        Path bundle = Path.of(args[1]);
+        Path jdksDirectory = args.length == 3 ? Path.of(args[2]) : defaultJdksDirectory();
+        List<Path> imported = new JdkBundle(logger, JdkPruner.fileLocker()).importBundle(bundle, jdksDirectory);
+        logger.log(String.format("Imported %d JDK installation(s) into %s", imported.size(), jdksDirectory));
+    }
+
+    /** Same as {@code get_gradle_jdks_home} of gradle-jdks-functions.sh. */
+    private static Path defaultJdksDirectory() {
+        String gradleUserHome = System.getenv("GRADLE_USER_HOME");
+        Path gradleUserHomeDirectory = gradleUserHome == null || gradleUserHome.isEmpty()
+                ? Path.of(System.getProperty("user.home"), ".gradle")
+                : Path.of(gradleUserHome);
+        return gradleUserHomeDirectory.resolve("gradle-jdks");
+    }
+
+    private static void download(ILogger logger, String[] args) {
+        if (args.length != 3 && args.length != 4) {
+            throw new IllegalArgumentException(
+                    "Expected 2 or 3 arguments: download <url> <destination> [<connections>]");
+        }
+        URI uri = URI.create(args[1]);
+        Path destination = Path.of(args[2]);
+        int connections = args.length == 4 ? Integer.parseInt(args[3]) : HttpDownloader.DEFAULT_CONNECTIONS;
+        String sha256 = new HttpDownloader(logger, connections).download(uri, destination);
+        logger.log(String.format("%s  %s", sha256, destination.getFileName()));
+    }
+
+    private static void prune(ILogger logger, String[] args) {
+        if (args.length != 3 && args.length != 4) {
+            throw new IllegalArgumentException(
+                    "Expected 2 or 3 arguments: prune <jdksDirectory> <maxUnusedDays> [<maxTotalSizeMb>]");
+        }
+        Path jdksDirectory = Path.of(args[1]);
+        Duration maxUnused = Duration.ofDays(Long.parseLong(args[2]));
+        long maxTotalSizeBytes = args.length == 4 ? Long.parseLong(args[3]) << 20 : Long.MAX_VALUE;
+        List<Path> pruned =
+                new JdkPruner(logger, JdkPruner.fileLocker(), maxUnused, maxTotalSizeBytes).prune(jdksDirectory);
+        logger.log(String.format("Pruned %d JDK installation(s) from %s", pruned.size(), jdksDirectory));
+    }
+
     private static void setupDaemon(String[] args) {
         // [Intelij specific] Set the gradle java.home in .gradle/config.properties. This is the value for the Intelij
         // env variable GRADLE_LOCAL_JAVA_HOME
@@ -90,9 +195,13 @@ public final class GradleJdkInstallationSetup {
             Path gradleConfigFile = projectDir.resolve(".gradle/config.properties");
             gradleConfigFile.toFile().createNewFile();
             Properties gradleProperties = new Properties();
-            gradleProperties.load(new FileInputStream(gradleConfigFile.toFile()));
+            try (InputStream inputStream = new FileInputStream(gradleConfigFile.toFile())) {
+                gradleProperties.load(inputStream);
+            }
             gradleProperties.setProperty("java.home", gradleDaemonJavaHome.toString());
-            gradleProperties.store(Files.newBufferedWriter(gradleConfigFile, StandardCharsets.UTF_8), null);
+            try (Writer writer = Files.newBufferedWriter(gradleConfigFile, StandardCharsets.UTF_8)) {
+                gradleProperties.store(writer, null);
+            }
         } catch (IOException e) {
             throw new RuntimeException("Unable to set the java.home value in .gradle/config.properties.", e);
         }
@@ -103,32 +212,67 @@ public final class GradleJdkInstallationSetup {
             throw new IllegalArgumentException("Expected 2 arguments: jdkSetup <destinationJdkInstallationDir>");
         }
         Path destinationJdkInstallationDir = Path.of(args[1]);
-        boolean wasCopied = copy(logger, destinationJdkInstallationDir);
-        // If the JDK was not copied by the current process - which means that we waited for the lock while another
-        // process set up the JDK - then we shouldn't try to add the certificate because the certificate was already
-        // added.
-        if (wasCopied) {
-            caResources.importAllSystemCerts(destinationJdkInstallationDir);
-        }
+        InstallMode installMode =
+                InstallMode.fromLabel(System.getProperty(INSTALL_MODE_PROPERTY, InstallMode.COPY.toString()));
+        install(logger, caResources, destinationJdkInstallationDir, installMode);
+        // the extracted JDK keeps the modification times of its archive, which are no indication of its last use
+        JdkInstallationUsage.markUsed(destinationJdkInstallationDir);
     }
 
-    private static boolean copy(ILogger logger, Path destinationJdkInstallationDirectory) {
+    private static void install(
+            ILogger logger,
+            CaResources caResources,
+            Path destinationJdkInstallationDirectory,
+            InstallMode installMode) {
         Path currentJavaHome = Path.of(System.getProperty("java.home"));
         Path jdksInstallationDirectory = destinationJdkInstallationDirectory.getParent();
         FileUtils.createDirectories(jdksInstallationDirectory);
         Path lockFile = jdksInstallationDirectory.resolve(destinationJdkInstallationDirectory.getFileName() + ".lock");
-        try (FileChannel channel = FileChannel.open(
-                lockFile, StandardOpenOption.READ, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
-            channel.lock();
-            // double-check, now that we hold the lock
-            if (Files.exists(destinationJdkInstallationDirectory)) {
-                logger.log(String.format("Distribution URL %s already exists", destinationJdkInstallationDirectory));
-                return false;
+        Path inProgressDirectory =
+                jdksInstallationDirectory.resolve(destinationJdkInstallationDirectory.getFileName() + ".in-progress");
+        try {
+            // the lock file is deleted by the prune command while holding the lock
+            FileChannel lockChannel = LockFiles.lock(lockFile).channel();
+            try {
+                // double-check, now that we hold the lock
+                if (Files.exists(destinationJdkInstallationDirectory)) {
+                    logger.log(
+                            String.format("Distribution URL %s already exists", destinationJdkInstallationDirectory));
+                    return;
+                }
+                // left behind by a process that was killed while holding the lock
+                FileUtils.delete(inProgressDirectory);
+                switch (installMode) {
+                    case COPY:
+                        logger.log(String.format(
+                                "Copying JDK from %s into %s", currentJavaHome, destinationJdkInstallationDirectory));
+                        FileUtils.copyDirectory(currentJavaHome, inProgressDirectory);
+                        caResources.importAllSystemCerts(inProgressDirectory);
+                        break;
+                    case MOVE:
+                        // The certificates are imported before the move, as the import might fork processes which are
+                        // launched using helpers from the running java.home
+                        caResources.importAllSystemCerts(currentJavaHome);
+                        logger.log(String.format(
+                                "Moving JDK from %s into %s", currentJavaHome, destinationJdkInstallationDirectory));
+                        if (FileUtils.tryMoveDirectory(currentJavaHome, destinationJdkInstallationDirectory)) {
+                            return;
+                        }
+                        logger.log("JDK cannot be moved across filesystems, copying it instead");
+                        FileUtils.copyDirectory(currentJavaHome, inProgressDirectory);
+                        break;
+                    case HARDLINK:
+                        // The linked files share the truststore with the running java.home, hence it is updated first
+                        caResources.importAllSystemCerts(currentJavaHome);
+                        logger.log(String.format(
+                                "Linking JDK from %s into %s", currentJavaHome, destinationJdkInstallationDirectory));
+                        FileUtils.copyDirectory(currentJavaHome, inProgressDirectory, true);
+                        break;
+                }
+                Files.move(inProgressDirectory, destinationJdkInstallationDirectory, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                lockChannel.close();
             }
-            logger.log(
-                    String.format("Copying JDK from %s into %s", currentJavaHome, destinationJdkInstallationDirectory));
-            FileUtils.copyDirectory(currentJavaHome, destinationJdkInstallationDirectory);
-            return true;
         } catch (IOException e) {
             throw new RuntimeException("Unable to acquire locks, won't move the JDK installation directory", e);
         }
@@ -0,0 +1,597 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import com.palantir.gradle.jdks.setup.common.LockFiles;
+import com.palantir.gradle.jdks.setup.common.Sha256;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * Downloads a file over HTTP using up to {@code connections} concurrent range requests, which makes better use of
+ * high-latency links than a single stream. The progress is recorded next to the partial file, such that an
+ * interrupted download resumes where it stopped, provided the server still serves the same content. The SHA-256 of
+ * the file is computed while the segments are downloaded, following the contiguous downloaded prefix of the file.
+ *
+ * <p>Servers that do not support range requests are downloaded in a single stream. Only successful responses are
+ * accepted as content: any other status, including a redirect that was not followed, fails the download.
+ *
+ * <p>Concurrent downloads into the same destination, from this or other processes, are serialized using the
+ * {@code <destination>.part.lock} file, as they share the partial file.
+ *
+ * <p>The content can be consumed while it downloads, e.g. to extract an archive: the consumer reads the file as it
+ * arrives, using the file being downloaded as its buffer.
+ */
+public final class HttpDownloader {
+
+    public static final int DEFAULT_CONNECTIONS = 4;
+
+    /** Consumes the content of a download, in order, while it downloads. */
+    public interface ContentConsumer {
+        void accept(InputStream content) throws IOException;
+    }
+
+    private static final long MIN_SEGMENT_SIZE = 1L << 20;
+    private static final long MAX_SEGMENT_SIZE = 8L << 20;
+    private static final long STATE_SAVE_INTERVAL_BYTES = 4L << 20;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+    private static final Lock[] JVM_LOCKS =
+            IntStream.range(0, 16).mapToObj(_i -> new ReentrantLock()).toArray(Lock[]::new);
+
+    private final ILogger logger;
+    private final int connections;
+
+    public HttpDownloader(ILogger logger, int connections) {
+        if (connections < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Expected a positive number of connections, got %d", connections));
+        }
+        this.logger = logger;
+        this.connections = connections;
+    }
+
+    /**
+     * Downloads {@code uri} into {@code destination}, resuming a previous partial download of it, and returns the
+     * SHA-256 of the downloaded file.
+     */
+    public String download(URI uri, Path destination) {
+        return download(uri, destination, _content -> {});
+    }
+
+    /**
+     * Downloads {@code uri} like {@link #download(URI, Path)}, while passing its content to {@code consumer} on the
+     * calling thread. The content the consumer does not read is still downloaded and hashed.
+     */
+    public String download(URI uri, Path destination, ContentConsumer consumer) {
+        Path partialFile = destination.resolveSibling(destination.getFileName() + ".part");
+        Path stateFile = destination.resolveSibling(destination.getFileName() + ".part.state");
+        // file locks are held on behalf of the whole JVM, hence its threads are serialized first
+        Lock jvmLock = JVM_LOCKS[Math.floorMod(partialFile.toAbsolutePath().hashCode(), JVM_LOCKS.length)];
+        jvmLock.lock();
+        try {
+            Files.createDirectories(destination.getParent());
+            // the lock file is deleted by the archive cache eviction while holding the lock
+            FileChannel lockChannel = LockFiles.lock(
+                            destination.resolveSibling(destination.getFileName() + ".part.lock"))
+                    .channel();
+            try {
+                return download(uri, destination, partialFile, stateFile, consumer);
+            } finally {
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to download %s into %s", uri, destination), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(String.format("Interrupted while downloading %s", uri), e);
+        } finally {
+            jvmLock.unlock();
+        }
+    }
+
+    private String download(URI uri, Path destination, Path partialFile, Path stateFile, ContentConsumer consumer)
+            throws IOException, InterruptedException {
+        HttpURLConnection probe = send(uri, "bytes=0-0", "");
+        String sha256;
+        if (probe.getResponseCode() == 206) {
+            sha256 = downloadSegments(uri, probe, partialFile, stateFile, consumer);
+        } else {
+            logger.log(String.format("%s does not support range requests, downloading it in one stream", uri));
+            sha256 = downloadStream(probe, partialFile, consumer);
+        }
+        Files.move(partialFile, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(stateFile);
+        return sha256;
+    }
+
+    private static String downloadStream(HttpURLConnection response, Path partialFile, ContentConsumer consumer)
+            throws IOException {
+        MessageDigest digest = Sha256.newDigest();
+        try (FileChannel channel = FileChannel.open(
+                        partialFile,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                InputStream content =
+                        new DigestInputStream(new TeeInputStream(response.getInputStream(), channel), digest)) {
+            consume(content, consumer);
+        }
+        return Sha256.hex(digest.digest());
+    }
+
+    private String downloadSegments(
+            URI uri, HttpURLConnection probe, Path partialFile, Path stateFile, ContentConsumer consumer)
+            throws IOException, InterruptedException {
+        // the probe is only used for its headers, but its body is read such that its connection is reused
+        try (InputStream body = probe.getInputStream()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+        long length = parseContentRangeLength(uri, probe);
+        String validator = Optional.ofNullable(probe.getHeaderField("ETag"))
+                .or(() -> Optional.ofNullable(probe.getHeaderField("Last-Modified")))
+                .orElse("");
+        // the segments are requested from the redirected uri, rather than following the redirect for each of them
+        URI resolvedUri = toUri(probe);
+        DownloadState state = DownloadState.read(stateFile)
+                .filter(previous -> previous.matches(uri, validator, length) && Files.exists(partialFile))
+                .orElseGet(() -> DownloadState.create(uri, validator, length, segmentSize(length)));
+        long resumedBytes = state.downloadedBytes();
+        if (resumedBytes > 0) {
+            logger.log(String.format("Resuming the download of %s from %d of %d bytes", uri, resumedBytes, length));
+        }
+
+        // the segments are downloaded in order, such that the contiguous downloaded prefix grows steadily
+        int threads = Math.max(1, Math.min(connections, state.segments.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gradle-jdks-download");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel channel = FileChannel.open(
+                partialFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Segment segment : state.segments) {
+                    if (!segment.isComplete()) {
+                        futures.add(executor.submit(() -> {
+                            downloadSegment(resolvedUri, validator, segment, channel, state, stateFile);
+                            return null;
+                        }));
+                    }
+                }
+                MessageDigest digest = Sha256.newDigest();
+                consume(
+                        new DigestInputStream(new ContiguousPrefixInputStream(channel, state, futures), digest),
+                        consumer);
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                return Sha256.hex(digest.digest());
+            } finally {
+                // the other segments stop after their current read, before the channel is closed
+                state.cancelled = true;
+                executor.shutdown();
+                executor.awaitTermination(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                state.write(stateFile);
+            }
+        } catch (ExecutionException e) {
+            throw new IOException(String.format("Failed to download a segment of %s", uri), e.getCause());
+        }
+    }
+
+    private void downloadSegment(
+            URI uri, String validator, Segment segment, FileChannel channel, DownloadState state, Path stateFile)
+            throws IOException {
+        IOException lastFailure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS && !segment.isComplete() && !state.cancelled; attempt++) {
+            try {
+                long start = segment.start + segment.downloaded();
+                HttpURLConnection response = send(uri, String.format("bytes=%d-%d", start, segment.end - 1), validator);
+                if (response.getResponseCode() != 206) {
+                    response.disconnect();
+                    throw new IOException(String.format(
+                            "Expected a partial response for the range %d-%d of %s, got status %d. The content might"
+                                    + " have changed during the download.",
+                            start, segment.end - 1, uri, response.getResponseCode()));
+                }
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long position = start;
+                long unsavedBytes = 0;
+                try (InputStream body = response.getInputStream()) {
+                    int read;
+                    while (position < segment.end && !state.cancelled && (read = body.read(buffer)) != -1) {
+                        int toWrite = (int) Math.min(read, segment.end - position);
+                        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, toWrite);
+                        while (byteBuffer.hasRemaining()) {
+                            position += channel.write(byteBuffer, position);
+                        }
+                        state.progress(segment, position - segment.start);
+                        unsavedBytes += toWrite;
+                        if (unsavedBytes >= STATE_SAVE_INTERVAL_BYTES) {
+                            state.write(stateFile);
+                            unsavedBytes = 0;
+                        }
+                    }
+                }
+                if (!segment.isComplete() && !state.cancelled) {
+                    throw new IOException(String.format(
+                            "Connection closed after %d of %d bytes of segment %d-%d of %s",
+                            segment.downloaded(), segment.end - segment.start, segment.start, segment.end - 1, uri));
+                }
+            } catch (IOException e) {
+                lastFailure = e;
+                logger.log(String.format("Attempt %d to download a segment of %s failed: %s", attempt, uri, e));
+            }
+        }
+        if (!segment.isComplete() && !state.cancelled) {
+            throw lastFailure;
+        }
+    }
+
+    /** Passes {@code content} to {@code consumer}, then reads what it left, such that all of it is hashed. */
+    private static void consume(InputStream content, ContentConsumer consumer) throws IOException {
+        consumer.accept(new FilterInputStream(content) {
+            @Override
+            public long skip(long count) throws IOException {
+                // skipped bytes must be hashed and written too
+                return Math.max(0, read(new byte[(int) Math.min(count, BUFFER_SIZE)]));
+            }
+
+            @Override
+            public void close() {
+                // the rest of the content is still read below
+            }
+        });
+        content.transferTo(OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Requests {@code range} of {@code uri}. The connections are kept alive by the JDK, and reused by the following
+     * requests to the same host once their response was read completely.
+     */
+    private static HttpURLConnection send(URI uri, String range, String validator) throws IOException {
+        URLConnection urlConnection = uri.toURL().openConnection();
+        if (!(urlConnection instanceof HttpURLConnection)) {
+            throw new IOException(String.format("Only http and https urls can be downloaded, got %s", uri));
+        }
+        HttpURLConnection connection = (HttpURLConnection) urlConnection;
+        // a stalled connection fails the attempt rather than hanging the download
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(READ_TIMEOUT_MILLIS);
+        connection.setRequestProperty("Range", range);
+        if (!validator.isEmpty()) {
+            // the server answers with the whole file rather than the range if the file changed meanwhile
+            connection.setRequestProperty("If-Range", validator);
+        }
+        int statusCode = connection.getResponseCode();
+        // redirects are followed by the connection, so a remaining 3xx (e.g. from http to https) is a failure too
+        if (statusCode < 200 || statusCode >= 300) {
+            connection.disconnect();
+            throw new IOException(String.format("Request to %s failed with status %d", uri, statusCode));
+        }
+        return connection;
+    }
+
+    /**
+     * Files are split into more segments than connections once large enough, such that the connections work through
+     * the file in order rather than each downloading a distant part of it.
+     */
+    private long segmentSize(long length) {
+        return Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, (length + connections - 1) / connections));
+    }
+
+    private static long parseContentRangeLength(URI uri, HttpURLConnection response) throws IOException {
+        String contentRange = Optional.ofNullable(response.getHeaderField("Content-Range"))
+                .orElseThrow(() -> new IOException(
+                        String.format("Missing Content-Range header in the partial response of %s", uri)));
+        Matcher matcher = CONTENT_RANGE.matcher(contentRange);
+        if (!matcher.matches()) {
+            throw new IOException(
+                    String.format("Unexpected Content-Range header '%s' in the response of %s", contentRange, uri));
+        }
+        return Long.parseLong(matcher.group(3));
+    }
+
+    private static URI toUri(HttpURLConnection connection) throws IOException {
+        try {
+            return connection.getURL().toURI();
+        } catch (URISyntaxException e) {
+            throw new IOException(String.format("Invalid redirect to %s", connection.getURL()), e);
+        }
+    }
+
+    /** Writes the bytes read from {@code delegate} to the end of {@code channel}. */
+    private static final class TeeInputStream extends FilterInputStream {
+        private final FileChannel channel;
+
+        TeeInputStream(InputStream delegate, FileChannel channel) {
+            super(delegate);
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, read);
+                while (byteBuffer.hasRemaining()) {
+                    channel.write(byteBuffer);
+                }
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Reads the contiguous downloaded prefix of the file as it grows, blocking until the next bytes are downloaded,
+     * and failing if a segment failed.
+     */
+    private static final class ContiguousPrefixInputStream extends InputStream {
+        private final FileChannel channel;
+        private final DownloadState state;
+        private final List<Future<?>> futures;
+        private long position;
+
+        ContiguousPrefixInputStream(FileChannel channel, DownloadState state, List<Future<?>> futures) {
+            this.channel = channel;
+            this.state = state;
+            this.futures = futures;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= state.length) {
+                return -1;
+            }
+            long available;
+            try {
+                available = state.awaitContiguousBytes(position, futures);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the download");
+            } catch (ExecutionException e) {
+                throw new IOException(String.format("Failed to download a segment of %s", state.uri), e.getCause());
+            }
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, (int) Math.min(length, available - position));
+            int read = channel.read(byteBuffer, position);
+            if (read <= 0) {
+                throw new IOException(String.format("Unexpected end of the downloaded file at %d", position));
+            }
+            position += read;
+            return read;
+        }
+    }
+
+    /** The byte range {@code [start, end)} of the file, of which the first {@code downloaded} bytes were written. */
+    private static final class Segment {
+        private final long start;
+        private final long end;
+        private long downloaded;
+
+        Segment(long start, long end, long downloaded) {
+            this.start = start;
+            this.end = end;
+            this.downloaded = downloaded;
+        }
+
+        synchronized long downloaded() {
+            return downloaded;
+        }
+
+        synchronized boolean isComplete() {
+            return start + downloaded >= end;
+        }
+    }
+
+    /**
+     * The progress of a segmented download, stored as {@code key=value} lines next to the partial file, such that it
+     * can be resumed.
+     */
+    private static final class DownloadState {
+        private static final String VERSION = "1";
+
+        private final String uri;
+        private final String validator;
+        private final long length;
+        private final List<Segment> segments;
+        private volatile boolean cancelled;
+
+        private DownloadState(String uri, String validator, long length, List<Segment> segments) {
+            this.uri = uri;
+            this.validator = validator;
+            this.length = length;
+            this.segments = segments;
+        }
+
+        static DownloadState create(URI uri, String validator, long length, long segmentSize) {
+            List<Segment> segments = new ArrayList<>();
+            for (long start = 0; start < length; start += segmentSize) {
+                segments.add(new Segment(start, Math.min(length, start + segmentSize), 0));
+            }
+            return new DownloadState(uri.toString(), validator, length, segments);
+        }
+
+        static Optional<DownloadState> read(Path stateFile) {
+            List<String> lines;
+            try {
+                lines = Files.readAllLines(stateFile, StandardCharsets.UTF_8);
+            } catch (NoSuchFileException e) {
+                return Optional.empty();
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Failed to read download state %s", stateFile), e);
+            }
+            String version = null;
+            String uri = null;
+            String validator = null;
+            long length = -1;
+            List<Segment> segments = new ArrayList<>();
+            try {
+                for (String line : lines) {
+                    int separator = line.indexOf('=');
+                    if (separator < 0) {
+                        continue;
+                    }
+                    String value = line.substring(separator + 1);
+                    switch (line.substring(0, separator)) {
+                        case "version":
+                            version = value;
+                            break;
+                        case "uri":
+                            uri = value;
+                            break;
+                        case "validator":
+                            validator = value;
+                            break;
+                        case "length":
+                            length = Long.parseLong(value);
+                            break;
+                        case "segment":
+                            String[] bounds = value.split(":", 3);
+                            segments.add(new Segment(
+                                    Long.parseLong(bounds[0]), Long.parseLong(bounds[1]), Long.parseLong(bounds[2])));
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                return Optional.empty();
+            }
+            if (!VERSION.equals(version) || uri == null || validator == null || length < 0 || segments.isEmpty()) {
+                return Optional.empty();
+            }
+            return Optional.of(new DownloadState(uri, validator, length, segments));
+        }
+
+        boolean matches(URI otherUri, String otherValidator, long otherLength) {
+            // without a validator, there is no way to tell whether the partial file is still current
+            return uri.equals(otherUri.toString())
+                    && !validator.isEmpty()
+                    && validator.equals(otherValidator)
+                    && length == otherLength;
+        }
+
+        long downloadedBytes() {
+            return segments.stream().mapToLong(Segment::downloaded).sum();
+        }
+
+        synchronized void progress(Segment segment, long downloaded) {
+            synchronized (segment) {
+                segment.downloaded = downloaded;
+            }
+            notifyAll();
+        }
+
+        /**
+         * Waits until the file is downloaded contiguously beyond {@code hashed} bytes, and returns the length of the
+         * contiguous downloaded prefix.
+         */
+        synchronized long awaitContiguousBytes(long hashed, List<Future<?>> futures)
+                throws InterruptedException, ExecutionException {
+            while (true) {
+                long contiguous = 0;
+                for (Segment segment : segments) {
+                    contiguous = segment.start + segment.downloaded();
+                    if (!segment.isComplete()) {
+                        break;
+                    }
+                }
+                if (contiguous > hashed) {
+                    return contiguous;
+                }
+                for (Future<?> future : futures) {
+                    if (future.isDone()) {
+                        // surfaces the failure of a segment, rather than waiting for its bytes forever
+                        future.get();
+                    }
+                }
+                wait(100);
+            }
+        }
+
+        synchronized void write(Path stateFile) {
+            Path temporaryStateFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temporaryStateFile, StandardCharsets.UTF_8)) {
+                    writer.write("version=" + VERSION + "\n");
+                    writer.write("uri=" + uri + "\n");
+                    writer.write("validator=" + validator + "\n");
+                    writer.write("length=" + length + "\n");
+                    for (Segment segment : segments) {
+                        writer.write(
+                                String.format("segment=%d:%d:%d%n", segment.start, segment.end, segment.downloaded()));
+                    }
+                }
+                Files.move(temporaryStateFile, stateFile, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Failed to write download state %s", stateFile), e);
+            }
+        }
+    }
+}
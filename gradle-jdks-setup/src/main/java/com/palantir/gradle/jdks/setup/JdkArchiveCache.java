@@ -0,0 +1,331 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import com.palantir.gradle.jdks.setup.common.LockFiles;
+import com.palantir.gradle.jdks.setup.common.Sha256;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Cache of the downloaded JDK archives in {@code $GRADLE_USER_HOME/gradle-jdks/archives}, shared by JdkManager and
+ * by the gradle-jdks-functions.sh installer. Every archive is stored as {@code <sha256 of its url>.<extension>}, next
+ * to a {@code .sha256} file holding the SHA-256 of its content in the {@code sha256sum} format, followed by its size
+ * on a second line. The least recently used archives are evicted once the cache exceeds
+ * {@code GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB} (default 2048, 0 disables the cache), the last use being tracked by the
+ * modification time of the {@code .sha256} file.
+ *
+ * <p>The downloads of the {@code http} download method are written into the cache as hidden files, such that they can
+ * be resumed once interrupted. They are evicted like the archives, unless they are in progress.
+ *
+ * <p>The digest file is written once the archive is complete, and only touched after the archive was found intact,
+ * hence an archive is trusted without hashing it again as long as it has its recorded size and was not modified after
+ * its digest file.
+ */
+public final class JdkArchiveCache {
+
+    public static final String MAX_SIZE_ENV_VARIABLE = "GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB";
+    private static final long DEFAULT_MAX_SIZE_MB = 2048;
+    private static final String DIGEST_SUFFIX = ".sha256";
+    private static final String DOWNLOAD_SUFFIX = ".download";
+    // from the most specific, such that the download of a file is found from any of its suffixes
+    private static final List<String> DOWNLOAD_SUFFIXES =
+            List.of(".download.part.state", ".download.part.lock", ".download.part", DOWNLOAD_SUFFIX);
+    private static final Duration MAX_TEMPORARY_FILE_AGE = Duration.ofDays(1);
+
+    private final Path directory;
+    private final long maxSizeBytes;
+
+    JdkArchiveCache(Path directory, long maxSizeBytes) {
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * The archive cache of {@code gradleUserHome}, or empty if it was disabled using
+     * {@code GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB=0}.
+     */
+    public static Optional<JdkArchiveCache> forGradleUserHome(Path gradleUserHome) {
+        long maxSizeMb = maxSizeMb(System.getenv(MAX_SIZE_ENV_VARIABLE));
+        if (maxSizeMb == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(
+                new JdkArchiveCache(gradleUserHome.resolve("gradle-jdks").resolve("archives"), maxSizeMb << 20));
+    }
+
+    static long maxSizeMb(String value) {
+        if (value == null || value.isEmpty()) {
+            return DEFAULT_MAX_SIZE_MB;
+        }
+        try {
+            long maxSizeMb = Long.parseLong(value);
+            if (maxSizeMb >= 0) {
+                return maxSizeMb;
+            }
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        throw new IllegalArgumentException(
+                String.format("%s must be a non-negative number of megabytes, got '%s'", MAX_SIZE_ENV_VARIABLE, value));
+    }
+
+    /**
+     * Returns the cached archive downloaded from {@code url}, provided it still has its recorded size and was not
+     * modified since its digest file was written. A hit marks the archive as the most recently used one.
+     */
+    public Optional<Path> get(String url, String extension) {
+        Path archive = archivePath(url, extension);
+        Path digestFile = digestPath(archive);
+        try {
+            if (!Files.isRegularFile(archive) || !Files.isRegularFile(digestFile)) {
+                return Optional.empty();
+            }
+            BasicFileAttributes attributes = Files.readAttributes(archive, BasicFileAttributes.class);
+            if (attributes.size() != readSize(digestFile)
+                    || attributes.lastModifiedTime().compareTo(Files.getLastModifiedTime(digestFile)) > 0) {
+                delete(archive);
+                return Optional.empty();
+            }
+            Files.setLastModifiedTime(digestFile, FileTime.fromMillis(System.currentTimeMillis()));
+            return Optional.of(archive);
+        } catch (NoSuchFileException e) {
+            // evicted concurrently
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to read the cached JDK archive %s", archive), e);
+        }
+    }
+
+    /**
+     * Where to download the archive of {@code url} before adding it using {@link #putDownloaded}. The path is hidden
+     * like the other temporary files of the cache, and stable such that an interrupted download can be resumed.
+     */
+    public Path downloadPath(String url, String extension) {
+        Path archive = archivePath(url, extension);
+        return archive.resolveSibling("." + archive.getFileName() + DOWNLOAD_SUFFIX);
+    }
+
+    /**
+     * Moves {@code downloadedArchive}, downloaded from {@code url} with the given SHA-256, into the cache, without
+     * copying or hashing it again, and returns the cached archive.
+     */
+    public Path putDownloaded(String url, String extension, Path downloadedArchive, String sha256) {
+        Path archive = archivePath(url, extension);
+        try {
+            Files.createDirectories(directory);
+            commit(archive, downloadedArchive, sha256);
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    String.format("Failed to cache the JDK archive %s in %s", downloadedArchive, directory), e);
+        }
+        evict(archive);
+        return archive;
+    }
+
+    /** Moves the complete {@code temporaryArchive} to {@code archive}, after writing its digest file. */
+    private static void commit(Path archive, Path temporaryArchive, String sha256) throws IOException {
+        Path temporaryDigestFile = temporaryPath(digestPath(archive));
+        try {
+            // the digest is written first, so that an archive is never visible without it
+            Files.writeString(
+                    temporaryDigestFile,
+                    String.format("%s  %s%n%d%n", sha256, archive.getFileName(), Files.size(temporaryArchive)),
+                    StandardCharsets.UTF_8);
+            Files.move(temporaryDigestFile, digestPath(archive), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporaryArchive, archive, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            deleteQuietly(temporaryDigestFile);
+        }
+    }
+
+    /** Hidden until complete, as the installer only lists the visible files of the cache. */
+    private static Path temporaryPath(Path file) {
+        return file.resolveSibling(
+                "." + file.getFileName() + "." + UUID.randomUUID().toString().substring(0, 8));
+    }
+
+    /**
+     * Removes the least recently used archives and interrupted downloads until the cache fits into its maximum size,
+     * always keeping {@code archiveToKeep}. The temporary files left behind by a process killed while adding an archive
+     * are removed once they are older than a day, as they are not locked.
+     */
+    private void evict(Path archiveToKeep) {
+        List<CachedArchive> archives = new ArrayList<>();
+        Map<Path, CachedArchive> downloads = new HashMap<>();
+        long minTemporaryFileMillis = System.currentTimeMillis() - MAX_TEMPORARY_FILE_AGE.toMillis();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                try {
+                    String fileName = file.getFileName().toString();
+                    if (isArchive(file)) {
+                        archives.add(new CachedArchive(
+                                file,
+                                Files.size(file),
+                                Files.getLastModifiedTime(digestPath(file)).toMillis()));
+                    } else if (downloadOf(file).isPresent()) {
+                        Path download = downloadOf(file).get();
+                        CachedArchive leftover = new CachedArchive(
+                                download,
+                                Files.size(file),
+                                Files.getLastModifiedTime(file).toMillis());
+                        downloads.merge(download, leftover, CachedArchive::merge);
+                    } else if (fileName.startsWith(".")
+                            && Files.getLastModifiedTime(file).toMillis() < minTemporaryFileMillis) {
+                        deleteQuietly(file);
+                    }
+                } catch (IOException e) {
+                    // evicted concurrently
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to list the JDK archive cache %s", directory), e);
+        }
+        archives.addAll(downloads.values());
+        archives.sort(Comparator.comparingLong((CachedArchive archive) -> archive.lastUsedMillis)
+                .reversed());
+        long totalSize = 0;
+        for (CachedArchive archive : archives) {
+            totalSize += archive.size;
+            if (totalSize > maxSizeBytes && !archive.path.equals(archiveToKeep)) {
+                if (downloads.containsKey(archive.path)) {
+                    deleteDownload(archive.path);
+                } else {
+                    delete(archive.path);
+                }
+            }
+        }
+    }
+
+    Path archivePath(String url, String extension) {
+        return directory.resolve(archiveFileName(url, extension));
+    }
+
+    /** The file name of the archive downloaded from {@code url}: {@code <sha256 of the url>.<extension>}. */
+    public static String archiveFileName(String url, String extension) {
+        return Sha256.hex(Sha256.newDigest().digest(url.getBytes(StandardCharsets.UTF_8))) + "." + extension;
+    }
+
+    /**
+     * The download {@code file} belongs to, if it is one of the {@code .download} files of {@link #downloadPath} or the
+     * {@code .part}, {@code .part.state} and {@code .part.lock} files {@link HttpDownloader} writes next to it.
+     */
+    private static Optional<Path> downloadOf(Path file) {
+        String fileName = file.getFileName().toString();
+        if (!fileName.startsWith(".")) {
+            return Optional.empty();
+        }
+        for (String suffix : DOWNLOAD_SUFFIXES) {
+            if (fileName.endsWith(suffix)) {
+                return Optional.of(file.resolveSibling(
+                        fileName.substring(0, fileName.length() - suffix.length()) + DOWNLOAD_SUFFIX));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Deletes the files of an interrupted download, unless it is being resumed by another download. */
+    private static void deleteDownload(Path download) {
+        Path lockFile = download.resolveSibling(download.getFileName() + ".part.lock");
+        try {
+            Optional<FileLock> fileLock = LockFiles.tryLock(lockFile);
+            if (fileLock.isEmpty()) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(download);
+                Files.deleteIfExists(download.resolveSibling(download.getFileName() + ".part"));
+                Files.deleteIfExists(download.resolveSibling(download.getFileName() + ".part.state"));
+                // deleted last, while it is still held, which the downloaders detect, see LockFiles
+                Files.deleteIfExists(lockFile);
+            } finally {
+                fileLock.get().channel().close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to evict the JDK archive download %s", download), e);
+        }
+    }
+
+    private static boolean isArchive(Path file) {
+        String fileName = file.getFileName().toString();
+        return !fileName.startsWith(".") && !fileName.endsWith(DIGEST_SUFFIX) && Files.isRegularFile(file);
+    }
+
+    private static Path digestPath(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + DIGEST_SUFFIX);
+    }
+
+    /** The size recorded on the second line of {@code digestFile}, or -1 if it has none. */
+    private static long readSize(Path digestFile) throws IOException {
+        List<String> lines = Files.readAllLines(digestFile, StandardCharsets.UTF_8);
+        try {
+            return lines.size() < 2 ? -1 : Long.parseLong(lines.get(1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void delete(Path archive) {
+        try {
+            Files.deleteIfExists(archive);
+            Files.deleteIfExists(digestPath(archive));
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to evict the cached JDK archive %s", archive), e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // best effort clean-up of a partially written file
+        }
+    }
+
+    private static final class CachedArchive {
+        private final Path path;
+        private final long size;
+        private final long lastUsedMillis;
+
+        CachedArchive(Path path, long size, long lastUsedMillis) {
+            this.path = path;
+            this.size = size;
+            this.lastUsedMillis = lastUsedMillis;
+        }
+
+        /** The files of the same download, which was last used when any of them was last modified. */
+        CachedArchive merge(CachedArchive other) {
+            return new CachedArchive(path, size + other.size, Math.max(lastUsedMillis, other.lastUsedMillis));
+        }
+    }
+}
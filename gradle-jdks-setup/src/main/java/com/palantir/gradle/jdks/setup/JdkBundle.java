@@ -0,0 +1,547 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import com.palantir.gradle.jdks.setup.common.JdkInstallationUsage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Packs JDK installations into a single bundle file, and unpacks a bundle into a JDKs directory, such that e.g.
+ * ephemeral CI agents can restore every JDK from a cache with one sequential read instead of installing them.
+ *
+ * <p>The bundle starts with an index of the installation names, followed by the directories, files and symbolic
+ * links of every installation, with their POSIX permissions and modification times. Files hardlinked to each other,
+ * e.g. the files shared by installations that only differ in their CA certs, are stored once and hardlinked again when
+ * unpacked. Every installation is unpacked into {@code <installation>.in-progress} while holding its lock, the same
+ * one the installers and {@link JdkPruner} hold, then moved into place, so a bundle can be imported concurrently with
+ * a Gradle JDK setup. Installations that already exist are left untouched. Likewise, the installations are exported
+ * while holding their locks.
+ *
+ * <p>Bundles may come from elsewhere, e.g. a CI cache, hence nothing is unpacked outside of the installations: entries
+ * escaping their installation, symlinks pointing outside of it and entries written through a symlink are rejected.
+ */
+public final class JdkBundle {
+
+    private static final int MAGIC = 0x474a4442;
+    private static final int VERSION = 1;
+
+    private static final byte END = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte FILE = 2;
+    private static final byte HARDLINK = 3;
+    private static final byte SYMLINK = 4;
+
+    private static final int NO_PERMISSIONS = -1;
+    private static final PosixFilePermission[] PERMISSIONS = PosixFilePermission.values();
+    private static final String IN_PROGRESS_SUFFIX = ".in-progress";
+
+    private final ILogger logger;
+    private final JdkPruner.InstallationLocker locker;
+
+    public JdkBundle(ILogger logger, JdkPruner.InstallationLocker locker) {
+        this.logger = logger;
+        this.locker = locker;
+    }
+
+    /**
+     * Packs the {@code installationNames} installations of {@code jdksDirectory} into {@code bundle}, while holding
+     * their locks such that they are not pruned or replaced while being read.
+     */
+    public void export(Path jdksDirectory, List<String> installationNames, Path bundle) {
+        try {
+            exportInstallations(jdksDirectory, installationNames, bundle);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to export the JDK bundle %s", bundle), e);
+        }
+    }
+
+    private void exportInstallations(Path jdksDirectory, List<String> installationNames, Path bundle)
+            throws IOException {
+        List<Closeable> locks = new ArrayList<>();
+        Path temporaryBundle = bundle.resolveSibling(
+                "." + bundle.getFileName() + "." + UUID.randomUUID().toString().substring(0, 8));
+        try {
+            // locked in the same order as the imports, such that concurrent exports and imports cannot deadlock
+            for (String installationName : new TreeSet<>(installationNames)) {
+                locks.add(locker.lock(jdksDirectory.resolve(installationName)));
+            }
+            List<Entry> entries = new ArrayList<>();
+            for (int installation = 0; installation < installationNames.size(); installation++) {
+                Path installationDirectory = jdksDirectory.resolve(installationNames.get(installation));
+                if (!Files.isDirectory(installationDirectory.resolve("bin"))) {
+                    throw new RuntimeException(
+                            String.format("%s is not a JDK installation, cannot export it", installationDirectory));
+                }
+                entries.addAll(list(installation, installationDirectory));
+            }
+
+            // the first file of a set of hardlinks is stored, the others refer to it
+            Map<Object, Integer> firstFileByKey = new HashMap<>();
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                if (entry.type == FILE && entry.fileKey != null) {
+                    Integer first = firstFileByKey.putIfAbsent(entry.fileKey, i);
+                    if (first != null) {
+                        entry.type = HARDLINK;
+                        entry.linkTarget = first;
+                        entries.get(first).linked = true;
+                    }
+                }
+            }
+
+            Files.createDirectories(bundle.toAbsolutePath().getParent());
+            try (DataOutputStream output =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryBundle), 1 << 16))) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeInt(installationNames.size());
+                for (String installationName : installationNames) {
+                    output.writeUTF(installationName);
+                }
+                for (Entry entry : entries) {
+                    write(output, entry);
+                }
+                output.writeByte(END);
+            }
+            Files.move(temporaryBundle, bundle, StandardCopyOption.REPLACE_EXISTING);
+            long hardlinks =
+                    entries.stream().filter(entry -> entry.type == HARDLINK).count();
+            logger.log(String.format(
+                    "Exported %d JDK installation(s) into %s, %d hardlinked file(s) stored once",
+                    installationNames.size(), bundle, hardlinks));
+        } finally {
+            deleteIfExists(temporaryBundle);
+            for (Closeable lock : locks) {
+                lock.close();
+            }
+        }
+    }
+
+    /** Unpacks {@code bundle} into {@code jdksDirectory} and returns the installations that did not exist yet. */
+    public List<Path> importBundle(Path bundle, Path jdksDirectory) {
+        FileUtils.createDirectories(jdksDirectory);
+        try (DataInputStream input =
+                new DataInputStream(new BufferedInputStream(Files.newInputStream(bundle), 1 << 16))) {
+            if (input.readInt() != MAGIC) {
+                throw new RuntimeException(String.format("%s is not a JDK bundle", bundle));
+            }
+            int version = input.readInt();
+            if (version != VERSION) {
+                throw new RuntimeException(String.format("Unsupported JDK bundle version %d of %s", version, bundle));
+            }
+            List<String> installationNames = new ArrayList<>();
+            int installationCount = input.readInt();
+            for (int i = 0; i < installationCount; i++) {
+                installationNames.add(checkedName(input.readUTF()));
+            }
+            return importInstallations(input, installationNames, jdksDirectory);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to import the JDK bundle %s", bundle), e);
+        }
+    }
+
+    private List<Path> importInstallations(DataInputStream input, List<String> installationNames, Path jdksDirectory)
+            throws IOException {
+        List<Closeable> locks = new ArrayList<>();
+        List<Path> inProgressDirectories = new ArrayList<>();
+        Path scratchDirectory = jdksDirectory.resolve(".bundle-import-" + UUID.randomUUID());
+        try {
+            // locked in a consistent order, such that concurrent imports cannot deadlock
+            for (String installationName : new TreeSet<>(installationNames)) {
+                locks.add(locker.lock(jdksDirectory.resolve(installationName)));
+            }
+            for (String installationName : installationNames) {
+                Path installation = jdksDirectory.resolve(installationName);
+                if (Files.exists(installation)) {
+                    logger.log(String.format("JDK installation %s already exists", installation));
+                    inProgressDirectories.add(null);
+                    continue;
+                }
+                Path inProgressDirectory = jdksDirectory.resolve(installationName + IN_PROGRESS_SUFFIX);
+                // left behind by a process that was killed while holding the lock
+                FileUtils.delete(inProgressDirectory);
+                inProgressDirectories.add(inProgressDirectory);
+            }
+
+            Unpacker unpacker = new Unpacker(input, inProgressDirectories, scratchDirectory);
+            unpacker.unpack();
+
+            List<Path> imported = new ArrayList<>();
+            for (int i = 0; i < installationNames.size(); i++) {
+                Path inProgressDirectory = inProgressDirectories.get(i);
+                if (inProgressDirectory == null) {
+                    continue;
+                }
+                Path installation = jdksDirectory.resolve(installationNames.get(i));
+                Files.move(inProgressDirectory, installation, StandardCopyOption.ATOMIC_MOVE);
+                JdkInstallationUsage.markUsed(installation);
+                imported.add(installation);
+                logger.log(String.format("Imported JDK installation %s", installation));
+            }
+            return imported;
+        } finally {
+            for (Path inProgressDirectory : inProgressDirectories) {
+                if (inProgressDirectory != null && Files.exists(inProgressDirectory)) {
+                    FileUtils.delete(makeWritable(inProgressDirectory));
+                }
+            }
+            if (Files.exists(scratchDirectory)) {
+                FileUtils.delete(makeWritable(scratchDirectory));
+            }
+            for (Closeable lock : locks) {
+                lock.close();
+            }
+        }
+    }
+
+    /** Reads the entries of a bundle, writing the ones of the installations being imported. */
+    private static final class Unpacker {
+        private final DataInputStream input;
+        private final List<Path> inProgressDirectories;
+        private final Path scratchDirectory;
+        private final Map<Integer, Path> unpackedFiles = new HashMap<>();
+        private final List<Path> directories = new ArrayList<>();
+        private final List<Integer> directoryPermissions = new ArrayList<>();
+        private final List<Long> directoryModifiedTimes = new ArrayList<>();
+
+        Unpacker(DataInputStream input, List<Path> inProgressDirectories, Path scratchDirectory) {
+            this.input = input;
+            this.inProgressDirectories = inProgressDirectories;
+            this.scratchDirectory = scratchDirectory;
+        }
+
+        void unpack() throws IOException {
+            for (int entryIndex = 0; ; entryIndex++) {
+                byte type = input.readByte();
+                if (type == END) {
+                    break;
+                }
+                int installation = input.readInt();
+                if (installation < 0 || installation >= inProgressDirectories.size()) {
+                    throw new IOException(String.format("Invalid installation index %d", installation));
+                }
+                Path root = inProgressDirectories.get(installation);
+                String relativePath = input.readUTF();
+                Path target = root == null ? null : resolve(root, relativePath);
+                switch (type) {
+                    case DIRECTORY:
+                        unpackDirectory(target);
+                        break;
+                    case FILE:
+                        unpackFile(entryIndex, target);
+                        break;
+                    case HARDLINK:
+                        unpackHardlink(target);
+                        break;
+                    case SYMLINK:
+                        String linkTarget = input.readUTF();
+                        if (target != null) {
+                            unpackSymlink(root, target, linkTarget);
+                        }
+                        break;
+                    default:
+                        throw new IOException(String.format("Invalid JDK bundle entry type %d", type));
+                }
+            }
+            // directories are made read-only last, as their content is written first
+            for (int i = directories.size() - 1; i >= 0; i--) {
+                setPermissions(directories.get(i), directoryPermissions.get(i));
+                Files.setLastModifiedTime(directories.get(i), FileTime.fromMillis(directoryModifiedTimes.get(i)));
+            }
+        }
+
+        private void unpackDirectory(Path target) throws IOException {
+            int permissions = input.readInt();
+            long modifiedTime = input.readLong();
+            if (target != null) {
+                if (Files.isSymbolicLink(target)) {
+                    throw new IOException(String.format("JDK bundle directory %s is an unpacked symlink", target));
+                }
+                Files.createDirectories(target);
+                directories.add(target);
+                directoryPermissions.add(permissions);
+                directoryModifiedTimes.add(modifiedTime);
+            }
+        }
+
+        private void unpackFile(int entryIndex, Path target) throws IOException {
+            int permissions = input.readInt();
+            long modifiedTime = input.readLong();
+            boolean linked = input.readBoolean();
+            long size = input.readLong();
+            Path destination = target;
+            if (destination == null && linked) {
+                // the installation already exists, but other installations link to this file
+                Files.createDirectories(scratchDirectory);
+                destination = scratchDirectory.resolve(Integer.toString(entryIndex));
+            }
+            if (destination == null) {
+                skipFully(size);
+                return;
+            }
+            // never follows a symlink unpacked earlier
+            try (OutputStream output =
+                    Files.newOutputStream(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                copy(size, output);
+            }
+            setPermissions(destination, permissions);
+            Files.setLastModifiedTime(destination, FileTime.fromMillis(modifiedTime));
+            if (linked) {
+                unpackedFiles.put(entryIndex, destination);
+            }
+        }
+
+        private void unpackHardlink(Path target) throws IOException {
+            int linkTarget = input.readInt();
+            if (target == null) {
+                return;
+            }
+            Path existing = unpackedFiles.get(linkTarget);
+            if (existing == null) {
+                throw new IOException(String.format("Invalid hardlink target %d of %s", linkTarget, target));
+            }
+            try {
+                Files.createLink(target, existing);
+            } catch (IOException | UnsupportedOperationException e) {
+                Files.copy(existing, target, StandardCopyOption.COPY_ATTRIBUTES);
+            }
+        }
+
+        private static void unpackSymlink(Path root, Path target, String linkTarget) throws IOException {
+            Path link = Path.of(linkTarget);
+            if (!target.getParent().resolve(link).normalize().startsWith(root)) {
+                throw new IOException(
+                        String.format("JDK bundle symlink %s -> %s points outside of %s", target, linkTarget, root));
+            }
+            Files.createSymbolicLink(target, link);
+        }
+
+        private void copy(long size, OutputStream output) throws IOException {
+            byte[] buffer = new byte[1 << 16];
+            long remaining = size;
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Unexpected end of the JDK bundle");
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+
+        private void skipFully(long size) throws IOException {
+            long remaining = size;
+            while (remaining > 0) {
+                long skipped = input.skip(remaining);
+                if (skipped <= 0) {
+                    if (input.read() < 0) {
+                        throw new IOException("Unexpected end of the JDK bundle");
+                    }
+                    skipped = 1;
+                }
+                remaining -= skipped;
+            }
+        }
+
+        private static Path resolve(Path root, String relativePath) throws IOException {
+            Path resolved = root.resolve(relativePath).normalize();
+            if (!resolved.startsWith(root)) {
+                throw new IOException(String.format("Invalid JDK bundle entry %s", relativePath));
+            }
+            // a symlink unpacked earlier must not redirect the entry outside of the installation
+            Path relative = root.relativize(resolved);
+            Path parent = root;
+            for (int i = 0; i < relative.getNameCount() - 1; i++) {
+                parent = parent.resolve(relative.getName(i));
+                if (Files.isSymbolicLink(parent)) {
+                    throw new IOException(String.format(
+                            "JDK bundle entry %s would be written through the symlink %s", relativePath, parent));
+                }
+            }
+            return resolved;
+        }
+    }
+
+    private static List<Entry> list(int installation, Path installationDirectory) {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            Files.walkFileTree(installationDirectory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    entries.add(new Entry(DIRECTORY, installation, installationDirectory, dir, attrs));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    entries.add(new Entry(
+                            attrs.isSymbolicLink() ? SYMLINK : FILE, installation, installationDirectory, file, attrs));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                    throw exc;
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to list the files of %s", installationDirectory), e);
+        }
+        return entries;
+    }
+
+    private static void write(DataOutputStream output, Entry entry) throws IOException {
+        output.writeByte(entry.type);
+        output.writeInt(entry.installation);
+        output.writeUTF(entry.relativePath);
+        switch (entry.type) {
+            case DIRECTORY:
+                output.writeInt(permissions(entry.path));
+                output.writeLong(entry.modifiedTime);
+                break;
+            case FILE:
+                output.writeInt(permissions(entry.path));
+                output.writeLong(entry.modifiedTime);
+                output.writeBoolean(entry.linked);
+                long size = Files.size(entry.path);
+                output.writeLong(size);
+                try (InputStream content = Files.newInputStream(entry.path)) {
+                    long copied = content.transferTo(output);
+                    if (copied != size) {
+                        throw new IOException(String.format("%s changed while it was exported", entry.path));
+                    }
+                }
+                break;
+            case HARDLINK:
+                output.writeInt(entry.linkTarget);
+                break;
+            case SYMLINK:
+                output.writeUTF(Files.readSymbolicLink(entry.path).toString());
+                break;
+            default:
+                throw new IllegalStateException(String.format("Unknown entry type %d", entry.type));
+        }
+    }
+
+    private static int permissions(Path path) throws IOException {
+        PosixFileAttributeView view =
+                Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (view == null) {
+            return NO_PERMISSIONS;
+        }
+        int bits = 0;
+        for (PosixFilePermission permission : view.readAttributes().permissions()) {
+            bits |= 1 << permission.ordinal();
+        }
+        return bits;
+    }
+
+    private static void setPermissions(Path path, int bits) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(path, PosixFileAttributeView.class);
+        if (bits == NO_PERMISSIONS || view == null) {
+            return;
+        }
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (PosixFilePermission permission : PERMISSIONS) {
+            if ((bits & (1 << permission.ordinal())) != 0) {
+                permissions.add(permission);
+            }
+        }
+        view.setPermissions(permissions);
+    }
+
+    private static Path makeWritable(Path directory) {
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes _attrs) {
+                    dir.toFile().setWritable(true, true);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // the delete reports the files it cannot delete
+        }
+        return directory;
+    }
+
+    private static String checkedName(String installationName) throws IOException {
+        if (installationName.isEmpty()
+                || installationName.startsWith(".")
+                || installationName.contains("/")
+                || installationName.contains("\\")) {
+            throw new IOException(String.format("Invalid JDK installation name %s", installationName));
+        }
+        return installationName;
+    }
+
+    private static void deleteIfExists(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to delete %s", path), e);
+        }
+    }
+
+    private static final class Entry {
+        private byte type;
+        private final int installation;
+        private final Path path;
+        private final String relativePath;
+        private final long modifiedTime;
+        private final Object fileKey;
+        private boolean linked;
+        private int linkTarget;
+
+        Entry(byte type, int installation, Path installationDirectory, Path path, BasicFileAttributes attrs) {
+            this.type = type;
+            this.installation = installation;
+            this.path = path;
+            // always '/' separated, such that bundles are portable
+            this.relativePath =
+                    installationDirectory.relativize(path).toString().replace('\\', '/');
+            this.modifiedTime = attrs.lastModifiedTime().toMillis();
+            this.fileKey = attrs.fileKey();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import com.palantir.gradle.jdks.setup.common.JdkInstallationUsage;
+import com.palantir.gradle.jdks.setup.common.LockFiles;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Prunes a directory of JDK installations: the installations that were not used for longer than the maximum unused
+ * duration are deleted, then the least recently used ones until the remaining installations fit into the maximum
+ * total size. The {@code .lock} files, {@code .last-used} markers and in-progress directories left behind by the
+ * pruned or abandoned installations are deleted as well.
+ *
+ * <p>Every installation is pruned while holding its lock, the same one the installers hold while installing it, and
+ * the installations used within the last day are never pruned, as a Gradle daemon might still be running them.
+ */
+public final class JdkPruner {
+
+    /** Locks an installation the same way its installer does, until the returned {@link Closeable} is closed. */
+    public interface InstallationLocker {
+        Closeable lock(Path installation) throws IOException;
+    }
+
+    private static final Duration MIN_UNUSED = Duration.ofDays(1);
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final String IN_PROGRESS_SUFFIX = ".in-progress";
+    // the class data sharing archives of the setup jar, see run_setup_jar in gradle-jdks-functions.sh
+    private static final String SETUP_ARCHIVE_INFIX = ".setup-";
+    private static final String PRUNED_INFIX = ".pruned-";
+
+    private final ILogger logger;
+    private final InstallationLocker locker;
+    private final Duration maxUnused;
+    private final long maxTotalSizeBytes;
+
+    public JdkPruner(ILogger logger, InstallationLocker locker, Duration maxUnused, long maxTotalSizeBytes) {
+        this.logger = logger;
+        this.locker = locker;
+        this.maxUnused = maxUnused.compareTo(MIN_UNUSED) < 0 ? MIN_UNUSED : maxUnused;
+        this.maxTotalSizeBytes = maxTotalSizeBytes;
+    }
+
+    /**
+     * Locks installations using their {@code <installation>.lock} file, like {@link GradleJdkInstallationSetup}.
+     */
+    public static InstallationLocker fileLocker() {
+        return installation -> LockFiles.lock(installation.resolveSibling(installation.getFileName() + LOCK_SUFFIX))
+                .channel();
+    }
+
+    /** Prunes {@code jdksDirectory} and returns the pruned installations. */
+    public List<Path> prune(Path jdksDirectory) {
+        if (!Files.isDirectory(jdksDirectory)) {
+            return List.of();
+        }
+        Instant now = Instant.now();
+        List<Installation> installations = new ArrayList<>();
+        Set<String> leftovers = new TreeSet<>();
+        for (Path path : list(jdksDirectory)) {
+            String fileName = path.getFileName().toString();
+            if (fileName.startsWith(".") && fileName.contains(PRUNED_INFIX)) {
+                // left behind by a prune that was interrupted while deleting
+                FileUtils.delete(makeWritable(path));
+            } else if (isInstallation(path)) {
+                installations.add(new Installation(path, lastUsed(path), size(path)));
+            } else {
+                installationName(fileName).ifPresent(leftovers::add);
+            }
+        }
+
+        List<Path> pruned = new ArrayList<>();
+        installations.sort(Comparator.comparing((Installation installation) -> installation.lastUsed)
+                .reversed());
+        long totalSizeBytes = 0;
+        for (Installation installation : installations) {
+            Duration unused = Duration.between(installation.lastUsed.toInstant(), now);
+            boolean prunable = unused.compareTo(MIN_UNUSED) >= 0;
+            if (prunable && unused.compareTo(maxUnused) > 0) {
+                pruneInstallation(installation, String.format("unused for %d days", unused.toDays()), pruned);
+            } else if (prunable && totalSizeBytes + installation.sizeBytes > maxTotalSizeBytes) {
+                pruneInstallation(
+                        installation,
+                        String.format("the JDK installations exceed %d MB", maxTotalSizeBytes >> 20),
+                        pruned);
+            } else {
+                totalSizeBytes += installation.sizeBytes;
+            }
+        }
+
+        installations.forEach(
+                installation -> leftovers.remove(installation.path.getFileName().toString()));
+        for (String leftover : leftovers) {
+            pruneLeftovers(jdksDirectory.resolve(leftover));
+        }
+        return pruned;
+    }
+
+    private void pruneInstallation(Installation installation, String reason, List<Path> pruned) {
+        Path path = installation.path;
+        try {
+            Closeable lock = locker.lock(path);
+            try {
+                // double-check, now that we hold the lock, as the installation might have been used in the meantime
+                if (!Files.isDirectory(path) || !lastUsed(path).equals(installation.lastUsed)) {
+                    return;
+                }
+                logger.log(String.format("Pruning JDK installation %s: %s", path, reason));
+                // moved out of the way first, such that the installation is either complete or absent
+                Path prunedPath = path.resolveSibling("." + path.getFileName() + PRUNED_INFIX
+                        + UUID.randomUUID().toString().substring(0, 8));
+                Files.move(path, prunedPath, StandardCopyOption.ATOMIC_MOVE);
+                FileUtils.delete(makeWritable(prunedPath));
+                deleteSiblings(path);
+                pruned.add(path);
+            } finally {
+                lock.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to prune JDK installation %s", path), e);
+        }
+    }
+
+    private void pruneLeftovers(Path installation) {
+        try {
+            Closeable lock = locker.lock(installation);
+            try {
+                // double-check, now that we hold the lock, as the installation might have been completed meanwhile
+                if (Files.exists(installation)) {
+                    return;
+                }
+                logger.log(String.format("Removing the leftovers of JDK installation %s", installation));
+                deleteSiblings(installation);
+            } finally {
+                lock.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    String.format("Failed to remove the leftovers of JDK installation %s", installation), e);
+        }
+    }
+
+    /**
+     * Deletes the in-progress directories, the setup jar archives, the {@code .last-used} marker and the {@code .lock}
+     * file of {@code installation}, which must be locked. The lock file is deleted last, while it is still held, which
+     * the lockers detect, see {@link LockFiles}.
+     */
+    private static void deleteSiblings(Path installation) {
+        String fileName = installation.getFileName().toString();
+        for (Path sibling : list(installation.getParent())) {
+            String siblingName = sibling.getFileName().toString();
+            if (siblingName.startsWith(fileName + IN_PROGRESS_SUFFIX)
+                    || siblingName.startsWith(fileName + SETUP_ARCHIVE_INFIX)) {
+                FileUtils.delete(makeWritable(sibling));
+            }
+        }
+        FileUtils.delete(JdkInstallationUsage.markerPath(installation));
+        FileUtils.delete(installation.resolveSibling(fileName + LOCK_SUFFIX));
+    }
+
+    /**
+     * The installation a non-installation file belongs to: {@code <installation>.lock},
+     * {@code <installation>.last-used}, {@code <installation>.in-progress}, {@code <installation>.in-progress-<id>} or
+     * {@code <installation>.setup-<checksum>.{jar,jsa}}.
+     */
+    static Optional<String> installationName(String fileName) {
+        if (fileName.startsWith(".")) {
+            return Optional.empty();
+        }
+        for (String infix : List.of(IN_PROGRESS_SUFFIX, SETUP_ARCHIVE_INFIX)) {
+            int index = fileName.indexOf(infix);
+            if (index > 0) {
+                return Optional.of(fileName.substring(0, index));
+            }
+        }
+        for (String suffix : List.of(LOCK_SUFFIX, JdkInstallationUsage.LAST_USED_SUFFIX)) {
+            if (fileName.endsWith(suffix) && fileName.length() > suffix.length()) {
+                return Optional.of(fileName.substring(0, fileName.length() - suffix.length()));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static boolean isInstallation(Path path) {
+        String fileName = path.getFileName().toString();
+        return !fileName.startsWith(".")
+                && !fileName.contains(IN_PROGRESS_SUFFIX)
+                && !fileName.contains(SETUP_ARCHIVE_INFIX)
+                && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)
+                && Files.isDirectory(path.resolve("bin"));
+    }
+
+    private static FileTime lastUsed(Path installation) {
+        return JdkInstallationUsage.lastUsed(installation).orElseGet(() -> FileTime.fromMillis(0));
+    }
+
+    private static long size(Path installation) {
+        AtomicLong size = new AtomicLong();
+        try {
+            Files.walkFileTree(installation, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path _file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        size.addAndGet(attrs.size());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to compute the size of %s", installation), e);
+        }
+        return size.get();
+    }
+
+    /** Some JDK directories are read-only, hence they are made writable such that their content can be deleted. */
+    private static Path makeWritable(Path path) {
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)
+                || !FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return path;
+        }
+        try (Stream<Path> paths = Files.walk(path)) {
+            for (Path directory : paths.filter(p -> Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS))
+                    .collect(Collectors.toList())) {
+                Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directory);
+                if (permissions.add(PosixFilePermission.OWNER_WRITE)) {
+                    Files.setPosixFilePermissions(directory, permissions);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to make %s writable", path), e);
+        }
+        return path;
+    }
+
+    private static List<Path> list(Path directory) {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to list %s", directory), e);
+        }
+    }
+
+    private static final class Installation {
+        private final Path path;
+        private final FileTime lastUsed;
+        private final long sizeBytes;
+
+        Installation(Path path, FileTime lastUsed, long sizeBytes) {
+            this.path = path;
+            this.lastUsed = lastUsed;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+}
@@ -33,7 +33,9 @@ die() {
     echo
     echo "$*"
     echo
-    cleanup
+    # While install jobs are running, the EXIT trap of `install_and_setup_jdks` cleans up once they finished. A `die` in
+    # a subshell must not clean up either, as it cannot wait for the jobs.
+    [ -n "$running_jobs" ] || cleanup
     exit 1
 } >&2
 
@@ -107,60 +109,422 @@ export OS
 ARCH=$(get_arch)
 export ARCH
 
+# The JVM options of the short-lived gradle-jdks-setup.jar calls, which only run for a few hundred milliseconds
+SETUP_JAR_JVM_OPTIONS="-XX:TieredStopAtLevel=1 -XX:+UseSerialGC -XX:-UsePerfData"
+
+# Prints the major version of the JDK $1 from its `release` file, or 0 if it cannot be determined
+get_java_major_version() {
+  java_version=
+  if [ -f "$1"/release ]; then
+    while IFS='=' read -r release_key release_value; do
+      if [ "$release_key" = "JAVA_VERSION" ]; then
+        java_version=${release_value#\"}
+      fi
+    done < "$1"/release
+  fi
+  java_version=${java_version%%[.\"]*}
+  case "$java_version" in
+    ''|*[!0-9]*) echo 0 ;;
+    *) echo "$java_version" ;;
+  esac
+}
+
+# Runs the gradle-jdks-setup.jar $2 with the JDK $1 installed in $GRADLE_JDKS_HOME, passing it the remaining arguments.
+# On JDK 13+, the classes are loaded from an AppCDS archive of the jar for the JDK, which is dumped by the first run
+# (see install_jdk). As an archive is only valid for the exact jar file it was dumped with, the jar is copied next to
+# the JDK installation under a content-addressed name, `<installation>.setup-<cksum>.jar`, which is never modified.
+# These files are deleted together with the installation by the pruner.
+run_setup_jar() {
+  setup_java_home=$1
+  setup_jar=$2
+  shift 2
+  set -- com.palantir.gradle.jdks.setup.GradleJdkInstallationSetup "$@"
+  setup_jar_prefix=
+  if [ "$(get_java_major_version "$setup_java_home")" -ge 13 ]; then
+    setup_jar_checksum=$(cksum < "$setup_jar")
+    setup_jar_prefix="$setup_java_home".setup-${setup_jar_checksum%% *}
+    if [ ! -f "$setup_jar_prefix".jar ]; then
+      # linked rather than moved into place, such that a concurrent copy never replaces a jar already in use
+      cp "$setup_jar" "$setup_jar_prefix".jar.$$ && { ln "$setup_jar_prefix".jar.$$ "$setup_jar_prefix".jar 2> /dev/null || true; }
+      rm -f "$setup_jar_prefix".jar.$$
+    fi
+    [ -f "$setup_jar_prefix".jar ] || setup_jar_prefix=
+  fi
+  if [ -z "$setup_jar_prefix" ]; then
+    set -- -cp "$setup_jar" "$@"
+  elif [ -f "$setup_jar_prefix".jsa ]; then
+    # the JVM warnings of an unusable archive are not printed, the classes are then loaded from the jar
+    set -- -Xshare:auto -Xlog:disable -Xlog:all=error:stderr -XX:SharedArchiveFile="$setup_jar_prefix".jsa -cp "$setup_jar_prefix".jar "$@"
+  else
+    set -- -Xshare:auto -Xlog:disable -Xlog:all=error:stderr -XX:ArchiveClassesAtExit="$setup_jar_prefix".jsa.$$ -cp "$setup_jar_prefix".jar "$@"
+  fi
+  setup_jar_status=0
+  # shellcheck disable=SC2086
+  "$setup_java_home"/bin/java $SETUP_JAR_JVM_OPTIONS "$@" || setup_jar_status=$?
+  if [ -n "$setup_jar_prefix" ] && [ -f "$setup_jar_prefix".jsa.$$ ]; then
+    if [ "$setup_jar_status" -eq 0 ]; then
+      ln "$setup_jar_prefix".jsa.$$ "$setup_jar_prefix".jsa 2> /dev/null || true
+    fi
+    rm -f "$setup_jar_prefix".jsa.$$
+  fi
+  return "$setup_jar_status"
+}
+
+# Prints the SHA-256 of the file $1, or of stdin if no file is given
+sha256_digest() {
+  if command -v sha256sum > /dev/null 2>&1; then
+    sha256sum "$@" | cut -d ' ' -f 1
+  else
+    shasum -a 256 "$@" | cut -d ' ' -f 1
+  fi
+}
+
+# The downloaded archives are cached in $GRADLE_JDKS_HOME/archives, together with JdkManager, see
+# gradle-jdks-setup:com.palantir.gradle.jdks.setup.JdkArchiveCache.java. The cache is disabled when
+# GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB is 0 or when neither sha256sum nor shasum are installed.
+is_jdk_archive_cache_enabled() {
+  [ "${GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB:-2048}" != "0" ] || return 1
+  command -v sha256sum > /dev/null 2>&1 || command -v shasum > /dev/null 2>&1
+}
+
+get_jdk_archive_cache_entry() {
+  case "$1" in
+    *.zip) archive_extension=zip ;;
+    *) archive_extension=tar.gz ;;
+  esac
+  echo "$GRADLE_JDKS_HOME/archives/$(printf '%s' "$1" | sha256_digest).$archive_extension"
+}
+
+# The archive $1 is trusted without hashing it again as long as it has the size recorded in its digest file and was not
+# modified after it, as the digest file is only touched once the archive was found intact
+is_jdk_archive_cached() {
+  [ -f "$1" ] && [ -f "$1".sha256 ] || return 1
+  if [ "$1" -nt "$1".sha256 ]; then
+    return 1
+  fi
+  { read -r _ _ && read -r expected_bytes; } < "$1".sha256 || return 1
+  [ "$(wc -c < "$1" | tr -d ' ')" = "$expected_bytes" ]
+}
+
+download_jdk_archive() {
+  if command -v curl > /dev/null 2>&1; then
+    echo "Using curl to download $1"
+    curl -fsS -C - "$1" -o "$2"
+  elif command -v wget > /dev/null 2>&1; then
+    echo "Using wget to download $1"
+    wget -q -c "$1" -O "$2"
+  else
+    echo "ERROR: Neither curl nor wget are installed, Could not set up JAVA_HOME" >&2
+    return 1
+  fi
+}
+
+# Downloads $1 to stdout
+stream_jdk_archive() {
+  if command -v curl > /dev/null 2>&1; then
+    echo "Using curl to download $1" >&2
+    curl -fsS "$1"
+  elif command -v wget > /dev/null 2>&1; then
+    echo "Using wget to download $1" >&2
+    wget -qO- "$1"
+  else
+    echo "ERROR: Neither curl nor wget are installed, Could not set up JAVA_HOME" >&2
+    return 1
+  fi
+}
+
+# Downloads $1 into the archive cache entry $2, which only becomes visible once it was fully downloaded
+cache_jdk_archive() {
+  partial_archive=$(mktemp "${2%/*}/.${2##*/}.XXXXXX")
+  download_jdk_archive "$1" "$partial_archive" || { rm -f "$partial_archive"; return 1; }
+  commit_jdk_archive "$partial_archive" "$2"
+}
+
+# Extracts the tar.gz $1 into the current directory while it downloads, and adds it to the archive cache entry $2 at
+# the same time. The pipeline only reports the status of tar, hence the other commands record their failure in a file.
+cache_and_extract_jdk_archive() {
+  partial_archive=$(mktemp "${2%/*}/.${2##*/}.XXXXXX")
+  rm -f "$partial_archive".failed
+  { stream_jdk_archive "$1" || echo download > "$partial_archive".failed; } \
+    | { tee "$partial_archive" || echo cache > "$partial_archive".failed; } \
+    | tar -xzf - || echo extract > "$partial_archive".failed
+  if [ -f "$partial_archive".failed ]; then
+    read -r failed_step < "$partial_archive".failed || true
+    rm -f "$partial_archive" "$partial_archive".failed
+    if [ "$failed_step" != "cache" ]; then
+      return 1
+    fi
+    echo "WARNING: Failed to add $1 to the archive cache" >&2
+    return 0
+  fi
+  commit_jdk_archive "$partial_archive" "$2"
+}
+
+# Moves the complete archive $1 to the archive cache entry $2, after writing its digest file
+commit_jdk_archive() {
+  chmod 644 "$1"
+  printf '%s  %s\n%s\n' "$(sha256_digest "$1")" "${2##*/}" "$(wc -c < "$1" | tr -d ' ')" > "$1".sha256
+  mv -f "$1".sha256 "$2".sha256
+  mv -f "$1" "$2"
+}
+
+# Removes the least recently used archives once the cache exceeds GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB, always keeping the
+# most recently used one. The last use of an archive is the modification time of its digest file.
+evict_jdk_archives() {
+  max_bytes=$(( ${GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB:-2048} * 1024 * 1024 ))
+  total_bytes=0
+  ls -1t "$GRADLE_JDKS_HOME"/archives 2>/dev/null | while IFS= read -r digest_name; do
+    case "$digest_name" in
+      *.sha256) ;;
+      *) continue ;;
+    esac
+    archive="$GRADLE_JDKS_HOME"/archives/"${digest_name%.sha256}"
+    archive_bytes=$(wc -c < "$archive" 2>/dev/null) || continue
+    if [ "$total_bytes" -gt 0 ] && [ $(( total_bytes + archive_bytes )) -gt "$max_bytes" ]; then
+      rm -f "$archive" "$archive".sha256
+    fi
+    total_bytes=$(( total_bytes + archive_bytes ))
+  done
+}
+
+# Runs in a background subshell started by `install_and_setup_jdks`, hence it must not call `die`, which would remove
+# the in-progress directories of the other installations
+install_jdk() {
+  distribution_url=$1
+  jdk_installation_directory=$2
+  in_progress_dir=$3
+  scripts_dir=$4
+  mkdir -p "$in_progress_dir"
+  cd "$in_progress_dir"
+  if is_jdk_archive_cache_enabled; then
+    archive=$(get_jdk_archive_cache_entry "$distribution_url")
+    if is_jdk_archive_cached "$archive"; then
+      echo "Using cached archive $archive of $distribution_url"
+      touch "$archive".sha256
+      tar -xzf "$archive"
+    else
+      mkdir -p "${archive%/*}"
+      case "$distribution_url" in
+        *.zip)
+          cache_jdk_archive "$distribution_url" "$archive"
+          tar -xzf "$archive"
+          ;;
+        *)
+          cache_and_extract_jdk_archive "$distribution_url" "$archive"
+          ;;
+      esac
+    fi
+    evict_jdk_archives || echo "WARNING: Failed to evict archives from $GRADLE_JDKS_HOME/archives" >&2
+  elif command -v curl > /dev/null 2>&1; then
+    echo "Using curl to download $distribution_url"
+    case "$distribution_url" in
+      *.zip)
+        distribution_name=${distribution_url##*/}
+        curl -sS -C - "$distribution_url" -o "$distribution_name"
+        tar -xzf "$distribution_name"
+        ;;
+      *)
+        curl -sS -C - "$distribution_url" | tar -xzf -
+        ;;
+    esac
+  elif command -v wget > /dev/null 2>&1; then
+    echo "Using wget to download $distribution_url"
+    case "$distribution_url" in
+      *.zip)
+        distribution_name=${distribution_url##*/}
+        wget -c "$distribution_url" -O "$distribution_name"
+        tar -xzf "$distribution_name"
+        ;;
+      *)
+        wget -qO- -c "$distribution_url" | tar -xzf -
+        ;;
+    esac
+  else
+    echo "ERROR: Neither curl nor wget are installed, Could not set up JAVA_HOME" >&2
+    return 1
+  fi
+
+  # Finding the java_home
+  java_home=$(get_java_home "$in_progress_dir")
+  # The extracted distribution is a throwaway, hence by default it is moved rather than copied into $GRADLE_JDKS_HOME
+  # shellcheck disable=SC2086
+  if ! "$java_home"/bin/java $SETUP_JAR_JVM_OPTIONS -Dpalantir.jdk.setup.install.mode="${GRADLE_JDKS_INSTALL_MODE:-move}" -cp "$scripts_dir"/gradle-jdks-setup.jar com.palantir.gradle.jdks.setup.GradleJdkInstallationSetup jdkSetup "$jdk_installation_directory"; then
+    echo "Failed to set up JDK $jdk_installation_directory" >&2
+    return 1
+  fi
+  # Dumps the AppCDS archive of the setup jar for the installed JDK, by running the daemonSetup of a throwaway project
+  if ! run_setup_jar "$jdk_installation_directory" "$scripts_dir"/gradle-jdks-setup.jar daemonSetup "$in_progress_dir"/cds-training "$jdk_installation_directory"; then
+    echo "WARNING: Failed to create the class data sharing archive of $jdk_installation_directory" >&2
+  fi
+  echo "Successfully installed JDK distribution in $jdk_installation_directory"
+}
+
+# Waits for the install jobs that are still running, as they use $TMP_WORK_DIR, then cleans up
+wait_for_jdk_install_jobs_and_cleanup() {
+  for running_job in $running_jobs; do
+    wait "${running_job%%:*}" 2> /dev/null || true
+  done
+  running_jobs=
+  cleanup
+}
+
+wait_for_jdk_install_job() {
+  job_pid=${1%%:*}
+  job_major_version=${1#*:}
+  job_status=0
+  wait "$job_pid" || job_status=$?
+  cat "$TMP_WORK_DIR"/jdk-"$job_major_version".log
+  if [ "$job_status" -ne 0 ]; then
+    echo "ERROR: Installing JDK $job_major_version failed with exit code $job_status" >&2
+    failed_major_versions="$failed_major_versions $job_major_version"
+  fi
+}
+
+# Installs the missing JDKs using at most $GRADLE_JDKS_INSTALL_JOBS (default 4) concurrent background jobs. The Gradle
+# daemon JDK is always started first. Each job writes its output to a log that is printed once the job finished.
 install_and_setup_jdks() {
   gradle_dir=$1
   scripts_dir=${2:-"$1"}
+  max_jobs=${GRADLE_JDKS_INSTALL_JOBS:-4}
+  case "$max_jobs" in
+    ''|*[!0-9]*|0) die "ERROR: GRADLE_JDKS_INSTALL_JOBS must be a positive integer, got '$max_jobs'" ;;
+  esac
+  case "${GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB:-2048}" in
+    *[!0-9]*) die "ERROR: GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB must be a non-negative integer, got '$GRADLE_JDKS_ARCHIVE_CACHE_MAX_MB'" ;;
+  esac
 
+  daemon_major_version=
+  if [ -f "$gradle_dir"/gradle-daemon-jdk-version ]; then
+    daemon_major_version=$(read_value "$gradle_dir"/gradle-daemon-jdk-version)
+  fi
+  major_versions=
+  if [ -n "$daemon_major_version" ] && [ -d "$gradle_dir"/jdks/"$daemon_major_version" ]; then
+    major_versions=$daemon_major_version
+  fi
   for dir in "$gradle_dir"/jdks/*/; do
     major_version_dir=${dir%*/}
     major_version=${major_version_dir##*/}
+    if [ "$major_version" != "$daemon_major_version" ]; then
+      major_versions="$major_versions $major_version"
+    fi
+  done
+
+  running_jobs=
+  running_jobs_count=0
+  failed_major_versions=
+  trap wait_for_jdk_install_jobs_and_cleanup EXIT
+  trap 'exit 130' INT TERM
+  for major_version in $major_versions; do
     if [ "$major_version" = "8" ]; then
       echo "Skipping JDK 8 installation as it is not supported by Gradle JDKs Setup."
       continue
     fi
-    distribution_local_path=$(read_value "$major_version_dir"/"$OS"/"$ARCH"/local-path)
-    distribution_url=$(read_value "$major_version_dir"/"$OS"/"$ARCH"/download-url)
+    major_version_dir="$gradle_dir"/jdks/"$major_version"
+    distribution_local_path=$(read_value "$major_version_dir"/"$OS"/"$ARCH"/local-path) || exit 1
+    distribution_url=$(read_value "$major_version_dir"/"$OS"/"$ARCH"/download-url) || exit 1
     # Check if distribution exists in $GRADLE_JDKS_HOME
     jdk_installation_directory="$GRADLE_JDKS_HOME"/"$distribution_local_path"
-    if [ ! -d "$jdk_installation_directory" ]; then
-      # Download and extract the distribution into a temporary directory
-      echo "JDK installation '$jdk_installation_directory' does not exist, installing '$distribution_url' in progress ..."
-      in_progress_dir="$TMP_WORK_DIR/$distribution_local_path.in-progress"
-      mkdir -p "$in_progress_dir"
-      cd "$in_progress_dir" || die "failed to change dir to $in_progress_dir"
-      if command -v curl > /dev/null 2>&1; then
-        echo "Using curl to download $distribution_url"
-        case "$distribution_url" in
-          *.zip)
-            distribution_name=${distribution_url##*/}
-            curl -C - "$distribution_url" -o "$distribution_name"
-            tar -xzf "$distribution_name"
-            ;;
-          *)
-            curl -C - "$distribution_url" | tar -xzf -
-            ;;
-        esac
-      elif command -v wget > /dev/null 2>&1; then
-        echo "Using wget to download $distribution_url"
-        case "$distribution_url" in
-          *.zip)
-            distribution_name=${distribution_url##*/}
-            wget -c "$distribution_url" -O "$distribution_name"
-            tar -xzf "$distribution_name"
-            ;;
-          *)
-            wget -qO- -c "$distribution_url" | tar -xzf -
-            ;;
-        esac
-      else
-        die "ERROR: Neither curl nor wget are installed, Could not set up JAVA_HOME"
+    in_progress_dir="$TMP_WORK_DIR/$distribution_local_path.in-progress"
+    if [ -d "$jdk_installation_directory" ] || [ -d "$in_progress_dir" ]; then
+      continue
+    fi
+    if [ "$running_jobs_count" -ge "$max_jobs" ]; then
+      case "$running_jobs" in
+        *' '*) oldest_job=${running_jobs%% *}; running_jobs=${running_jobs#* } ;;
+        *) oldest_job=$running_jobs; running_jobs= ;;
+      esac
+      running_jobs_count=$((running_jobs_count - 1))
+      wait_for_jdk_install_job "$oldest_job"
+    fi
+    # Download and extract the distribution into a temporary directory
+    echo "JDK installation '$jdk_installation_directory' does not exist, installing '$distribution_url' in progress ..."
+    mkdir -p "$in_progress_dir"
+    ( install_jdk "$distribution_url" "$jdk_installation_directory" "$in_progress_dir" "$scripts_dir" ) > "$TMP_WORK_DIR"/jdk-"$major_version".log 2>&1 &
+    running_jobs="${running_jobs:+$running_jobs }$!:$major_version"
+    running_jobs_count=$((running_jobs_count + 1))
+  done
+
+  for running_job in $running_jobs; do
+    wait_for_jdk_install_job "$running_job"
+  done
+  running_jobs=
+  trap - EXIT INT TERM
+  if [ -n "$failed_major_versions" ]; then
+    die "ERROR: Failed to install JDK(s):$failed_major_versions"
+  fi
+}
+
+# Fingerprints every input of the setup: the JDK configuration files, the certificates imported into the JDKs and the
+# .gradle/config.properties written by the daemon setup
+compute_gradle_jdks_fingerprint() {
+  gradle_dir=$1
+  {
+    echo "$GRADLE_JDKS_HOME $OS $ARCH"
+    set -- "$gradle_dir"/jdks "$gradle_dir"/gradle-daemon-jdk-version "$gradle_dir"/gradle-jdks-setup.jar "$gradle_dir"/gradle-jdks-functions.sh "$gradle_dir"/gradle-jdks-setup.sh
+    for optional_fingerprint_input in "$gradle_dir"/certs "${gradle_dir%/*}"/.gradle/config.properties; do
+      if [ -e "$optional_fingerprint_input" ]; then
+        set -- "$@" "$optional_fingerprint_input"
       fi
-      cd - || exit
+    done
+    find "$@" -type f -exec cksum {} + | LC_ALL=C sort
+  } | cksum
+}
 
-      # Finding the java_home
-      java_home=$(get_java_home "$in_progress_dir")
-      "$java_home"/bin/java -cp "$scripts_dir"/gradle-jdks-setup.jar com.palantir.gradle.jdks.setup.GradleJdkInstallationSetup jdkSetup "$jdk_installation_directory" || die "Failed to set up JDK $jdk_installation_directory"
-      echo "Successfully installed JDK distribution in $jdk_installation_directory"
+read_gradle_jdks_setup_stamp_value() {
+  stamp_file=$1
+  stamp_key_to_read=$2
+  while IFS='=' read -r stamp_key stamp_value; do
+    if [ "$stamp_key" = "$stamp_key_to_read" ]; then
+      echo "$stamp_value"
+      return 0
     fi
-  done
+  done < "$stamp_file"
+  die "ERROR: $stamp_key_to_read not found in $stamp_file"
+}
+
+is_gradle_jdks_setup_stamp_current() {
+  stamp_file=$1
+  expected_fingerprint=$2
+  if [ ! -f "$stamp_file" ]; then
+    return 1
+  fi
+  stamp_fingerprint_matches=false
+  stamp_jdks_exist=true
+  while IFS='=' read -r stamp_key stamp_value; do
+    case $stamp_key in
+      fingerprint)
+        [ "$stamp_value" = "$expected_fingerprint" ] && stamp_fingerprint_matches=true ;;
+      daemon_java_home)
+        [ -x "$stamp_value"/bin/java ] || stamp_jdks_exist=false ;;
+      jdk)
+        [ -d "$stamp_value" ] || stamp_jdks_exist=false ;;
+    esac
+  done < "$stamp_file"
+  [ "$stamp_fingerprint_matches" = "true" ] && [ "$stamp_jdks_exist" = "true" ]
+}
+
+# The stamp is a list of key=value lines that gradle-jdks-setup.sh validates using only shell builtins
+write_gradle_jdks_setup_stamp() {
+  gradle_dir=$1
+  stamp_file=$2
+  fingerprint=$3
+  daemon_java_home=$4
+  mkdir -p "${stamp_file%/*}"
+  {
+    echo "version=1"
+    echo "fingerprint=$fingerprint"
+    echo "jdks_home=$GRADLE_JDKS_HOME"
+    echo "os=$OS"
+    echo "arch=$ARCH"
+    echo "daemon_java_home=$daemon_java_home"
+    for dir in "$gradle_dir"/jdks/*/; do
+      major_version_dir=${dir%*/}
+      major_version=${major_version_dir##*/}
+      if [ "$major_version" = "8" ]; then
+        continue
+      fi
+      echo "jdk=$GRADLE_JDKS_HOME/$(read_value "$major_version_dir"/"$OS"/"$ARCH"/local-path)"
+    done
+  } > "$stamp_file.$$"
+  mv -f "$stamp_file.$$" "$stamp_file"
 }
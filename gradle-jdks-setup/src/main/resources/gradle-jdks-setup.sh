@@ -26,6 +26,11 @@
 #   `$GRADLE_USER_HOME/${local_path}` based on the local_path=`gradle/jdks/${majorVersion}/${os}/${arch}/local_path`
 #   and it will set up the certificates based on `gradle/certs` entries for the locally installed distribution
 #   (4) Sets `org.gradle.java.home` to the JDK distribution that is used by the Gradle Daemon
+#   (5) Appends the `gradle/jdks/${majorVersion}/${os}/${arch}/daemon-jvm-args` of the Gradle Daemon JDK, if any, to
+#   the `org.gradle.jvmargs` of `gradle.properties`
+#   (6) Records the resolved setup in `.gradle/gradle-jdks-setup.stamp`. Subsequent runs reuse the stamp, without
+#   starting any process, as long as none of the `gradle/` JDK configuration files, `gradle/certs` and
+#   `.gradle/config.properties` changed since it was written and all the recorded JDK installations still exist.
 #
 #
 #   Important for running:
@@ -64,16 +69,128 @@ APP_HOME=$( cd "${APP_HOME:-./}" && pwd -P ) || exit
 APP_HOME=${APP_HOME%/gradle}
 APP_GRADLE_DIR="$APP_HOME"/gradle
 
-# Loading gradle jdk functions
-. "$APP_GRADLE_DIR"/gradle-jdks-functions.sh
+GRADLE_JDKS_SETUP_STAMP="$APP_HOME"/.gradle/gradle-jdks-setup.stamp
 
-install_and_setup_jdks "$APP_GRADLE_DIR"
+# Fast path: only shell builtins are used to validate the stamp, see `write_gradle_jdks_setup_stamp`
+gradle_jdks_stamp_valid=false
+gradle_jdks_stamp_daemon_java_home=
+if [ -f "$GRADLE_JDKS_SETUP_STAMP" ] && [ -f "$APP_HOME"/.gradle/config.properties ]; then
+  gradle_jdks_stamp_valid=true
+  gradle_jdks_stamp_user_home=${GRADLE_USER_HOME:-"$HOME"/.gradle}
+  while IFS='=' read -r gradle_jdks_stamp_key gradle_jdks_stamp_value; do
+    case $gradle_jdks_stamp_key in
+      version)
+        [ "$gradle_jdks_stamp_value" = "1" ] || gradle_jdks_stamp_valid=false ;;
+      jdks_home)
+        [ "$gradle_jdks_stamp_value" = "$gradle_jdks_stamp_user_home"/gradle-jdks ] || gradle_jdks_stamp_valid=false ;;
+      os)
+        gradle_jdks_stamp_os=$gradle_jdks_stamp_value ;;
+      arch)
+        gradle_jdks_stamp_arch=$gradle_jdks_stamp_value ;;
+      daemon_java_home)
+        gradle_jdks_stamp_daemon_java_home=$gradle_jdks_stamp_value
+        [ -x "$gradle_jdks_stamp_value"/bin/java ] || gradle_jdks_stamp_valid=false ;;
+      jdk)
+        [ -d "$gradle_jdks_stamp_value" ] || gradle_jdks_stamp_valid=false ;;
+    esac
+  done < "$GRADLE_JDKS_SETUP_STAMP"
+  [ -n "$gradle_jdks_stamp_daemon_java_home" ] || gradle_jdks_stamp_valid=false
+  for gradle_jdks_stamp_input in \
+      "$APP_HOME"/.gradle/config.properties \
+      "$APP_GRADLE_DIR"/gradle-daemon-jdk-version \
+      "$APP_GRADLE_DIR"/gradle-jdks-setup.jar \
+      "$APP_GRADLE_DIR"/gradle-jdks-setup.sh \
+      "$APP_GRADLE_DIR"/gradle-jdks-functions.sh \
+      "$APP_GRADLE_DIR"/certs \
+      "$APP_GRADLE_DIR"/certs/* \
+      "$APP_GRADLE_DIR"/jdks \
+      "$APP_GRADLE_DIR"/jdks/* \
+      "$APP_GRADLE_DIR"/jdks/*/"$gradle_jdks_stamp_os"/"$gradle_jdks_stamp_arch"/*; do
+    if [ "$gradle_jdks_stamp_input" -nt "$GRADLE_JDKS_SETUP_STAMP" ]; then
+      gradle_jdks_stamp_valid=false
+      break
+    fi
+  done
+fi
 
-gradle_daemon_jdk_version=$(read_value "$APP_GRADLE_DIR"/gradle-daemon-jdk-version)
-gradle_daemon_jdk_distribution_local_path=$(read_value "$APP_GRADLE_DIR"/jdks/"$gradle_daemon_jdk_version"/"$OS"/"$ARCH"/local-path)
-"$GRADLE_JDKS_HOME"/"$gradle_daemon_jdk_distribution_local_path"/bin/java -cp "$APP_GRADLE_DIR"/gradle-jdks-setup.jar com.palantir.gradle.jdks.setup.GradleJdkInstallationSetup daemonSetup "$APP_HOME" "$GRADLE_JDKS_HOME/$gradle_daemon_jdk_distribution_local_path"
+if [ "$gradle_jdks_stamp_valid" = "true" ]; then
+  gradle_daemon_java_home=$gradle_jdks_stamp_daemon_java_home
+  gradle_jdks_os=$gradle_jdks_stamp_os
+  gradle_jdks_arch=$gradle_jdks_stamp_arch
+else
+  # Loading gradle jdk functions
+  . "$APP_GRADLE_DIR"/gradle-jdks-functions.sh
+  gradle_jdks_os=$OS
+  gradle_jdks_arch=$ARCH
 
-# [Used by ./gradlew only] Setting the Gradle Daemon Java Home to the JDK distribution
-set -- "-Dorg.gradle.java.home=$GRADLE_JDKS_HOME/$gradle_daemon_jdk_distribution_local_path" "$@"
+  gradle_jdks_fingerprint=$(compute_gradle_jdks_fingerprint "$APP_GRADLE_DIR")
+  if [ -f "$APP_HOME"/.gradle/config.properties ] && is_gradle_jdks_setup_stamp_current "$GRADLE_JDKS_SETUP_STAMP" "$gradle_jdks_fingerprint"; then
+    # The configuration files were touched (e.g. by a git checkout) but their content is unchanged
+    touch "$GRADLE_JDKS_SETUP_STAMP"
+    gradle_daemon_java_home=$(read_gradle_jdks_setup_stamp_value "$GRADLE_JDKS_SETUP_STAMP" daemon_java_home)
+  else
+    install_and_setup_jdks "$APP_GRADLE_DIR"
+
+    gradle_daemon_jdk_version=$(read_value "$APP_GRADLE_DIR"/gradle-daemon-jdk-version)
+    gradle_daemon_jdk_distribution_local_path=$(read_value "$APP_GRADLE_DIR"/jdks/"$gradle_daemon_jdk_version"/"$OS"/"$ARCH"/local-path)
+    gradle_daemon_java_home="$GRADLE_JDKS_HOME"/"$gradle_daemon_jdk_distribution_local_path"
+    run_setup_jar "$gradle_daemon_java_home" "$APP_GRADLE_DIR"/gradle-jdks-setup.jar daemonSetup "$APP_HOME" "$gradle_daemon_java_home"
+
+    # recomputed, as the daemon setup just wrote .gradle/config.properties
+    gradle_jdks_fingerprint=$(compute_gradle_jdks_fingerprint "$APP_GRADLE_DIR")
+    write_gradle_jdks_setup_stamp "$APP_GRADLE_DIR" "$GRADLE_JDKS_SETUP_STAMP" "$gradle_jdks_fingerprint" "$gradle_daemon_java_home"
+  fi
+
+  cleanup
+fi
+
+# Reads `org.gradle.jvmargs` from the properties file $1 into `gradle_jvmargs`, joining continuation lines, using only
+# shell builtins. `gradle_jvmargs` is left unchanged if the file does not set it.
+read_gradle_jvmargs() {
+  [ -f "$1" ] || return 0
+  gradle_jvmargs_continued=false
+  while IFS= read -r gradle_jvmargs_line || [ -n "$gradle_jvmargs_line" ]; do
+    gradle_jvmargs_line=${gradle_jvmargs_line#"${gradle_jvmargs_line%%[![:space:]]*}"}
+    if [ "$gradle_jvmargs_continued" = "true" ]; then
+      gradle_jvmargs_value=$gradle_jvmargs_line
+    else
+      case $gradle_jvmargs_line in
+        org.gradle.jvmargs=*|org.gradle.jvmargs:*|org.gradle.jvmargs[[:space:]]*) ;;
+        *) continue ;;
+      esac
+      gradle_jvmargs_value=${gradle_jvmargs_line#org.gradle.jvmargs}
+      gradle_jvmargs_value=${gradle_jvmargs_value#"${gradle_jvmargs_value%%[![:space:]]*}"}
+      case $gradle_jvmargs_value in
+        [=:]*) gradle_jvmargs_value=${gradle_jvmargs_value#?} ;;
+      esac
+      gradle_jvmargs_value=${gradle_jvmargs_value#"${gradle_jvmargs_value%%[![:space:]]*}"}
+      gradle_jvmargs=
+    fi
+    gradle_jvmargs_continued=false
+    case $gradle_jvmargs_value in
+      *\\)
+        gradle_jvmargs_value=${gradle_jvmargs_value%?}
+        gradle_jvmargs_continued=true ;;
+    esac
+    gradle_jvmargs=$gradle_jvmargs$gradle_jvmargs_value
+  done < "$1"
+}
 
-cleanup
+# [Used by ./gradlew only] Setting the Gradle Daemon JVM arguments configured for its JDK, see `jdks.daemonJvmArgs`.
+# They are appended to the `org.gradle.jvmargs` of gradle.properties, the ones of the Gradle user home taking
+# precedence like in Gradle, such that they only override the JVM options they set themselves.
+read -r gradle_daemon_jdk_version < "$APP_GRADLE_DIR"/gradle-daemon-jdk-version || true
+gradle_daemon_jvm_args_file="$APP_GRADLE_DIR"/jdks/"$gradle_daemon_jdk_version"/"$gradle_jdks_os"/"$gradle_jdks_arch"/daemon-jvm-args
+if [ -f "$gradle_daemon_jvm_args_file" ]; then
+  read -r gradle_daemon_jvm_args < "$gradle_daemon_jvm_args_file" || true
+  gradle_jvmargs=
+  read_gradle_jvmargs "$APP_HOME"/gradle.properties
+  read_gradle_jvmargs "${GRADLE_USER_HOME:-"$HOME"/.gradle}"/gradle.properties
+  if [ -n "$gradle_jvmargs" ]; then
+    gradle_daemon_jvm_args="$gradle_jvmargs $gradle_daemon_jvm_args"
+  fi
+  set -- "-Dorg.gradle.jvmargs=$gradle_daemon_jvm_args" "$@"
+fi
+
+# [Used by ./gradlew only] Setting the Gradle Daemon Java Home to the JDK distribution
+set -- "-Dorg.gradle.java.home=$gradle_daemon_java_home" "$@"
@@ -20,7 +20,14 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
 
 public class CaResourcesTest {
 
@@ -48,6 +55,32 @@ public class CaResourcesTest {
                 .isEmpty();
     }
 
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void skips_unchanged_system_bundles_and_already_imported_certs(@TempDir Path jdk) throws IOException {
+        Path cacerts = jdk.resolve("lib/security/cacerts");
+        Files.createDirectories(cacerts.getParent());
+        Files.copy(Path.of(System.getProperty("java.home")).resolve("lib/security/cacerts"), cacerts);
+        FileTime cacertsModified = Files.getLastModifiedTime(cacerts);
+        Path bundle = jdk.resolve("bundle.pem");
+        Files.write(bundle, certsFromResources("amazon-cas-with-whitespace-between.pem"));
+        CaResources caResources = new CaResources(new StdLogger());
+
+        // the Amazon root CAs are already part of the JDK truststore
+        caResources.importSystemCerts(jdk, List.of(bundle));
+        assertThat(Files.getLastModifiedTime(cacerts)).isEqualTo(cacertsModified);
+        assertThat(Files.readAllLines(jdk.resolve("lib/security/cacerts.gradle-jdks-index")))
+                .filteredOn(line -> line.startsWith("imported="))
+                .hasSize(3);
+
+        // an unparseable bundle with the same size and modification time is not read again
+        FileTime bundleModified = Files.getLastModifiedTime(bundle);
+        Files.writeString(bundle, "x".repeat((int) Files.size(bundle)));
+        Files.setLastModifiedTime(bundle, bundleModified);
+        caResources.importSystemCerts(jdk, List.of(bundle));
+        assertThat(Files.getLastModifiedTime(cacerts)).isEqualTo(cacertsModified);
+    }
+
     private byte[] certsFromResources(String name) throws IOException {
         return getClass().getClassLoader().getResourceAsStream(name).readAllBytes();
     }
@@ -0,0 +1,89 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisabledOnOs(OS.WINDOWS)
+public final class FileUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path source;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        source = tempDir.resolve("source");
+        Files.createDirectories(source.resolve("bin"));
+        Files.createDirectories(source.resolve("lib/security"));
+        Files.createDirectories(source.resolve("empty"));
+        Files.writeString(source.resolve("bin/java"), "java");
+        Files.setPosixFilePermissions(source.resolve("bin/java"), PosixFilePermissions.fromString("rwxr-xr-x"));
+        Files.writeString(source.resolve("lib/security/cacerts"), "cacerts");
+        for (int i = 0; i < 100; i++) {
+            Files.writeString(source.resolve("lib/file-" + i), Integer.toString(i));
+        }
+        Files.createSymbolicLink(source.resolve("java"), Paths.get("bin/java"));
+    }
+
+    @Test
+    public void copies_directory_tree() throws IOException {
+        Path destination = tempDir.resolve("destination");
+        FileUtils.copyDirectory(source, destination);
+
+        assertThat(destination.resolve("empty")).isDirectory();
+        assertThat(destination.resolve("lib/file-42")).hasContent("42");
+        assertThat(destination.resolve("lib/security/cacerts")).hasContent("cacerts");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(destination.resolve("bin/java"))))
+                .isEqualTo("rwxr-xr-x");
+        assertThat(Files.readSymbolicLink(destination.resolve("java"))).isEqualTo(Paths.get("bin/java"));
+        assertThat(Files.isSameFile(source.resolve("lib/file-42"), destination.resolve("lib/file-42")))
+                .isFalse();
+    }
+
+    @Test
+    public void hardlinks_directory_tree() throws IOException {
+        Path destination = tempDir.resolve("destination");
+        FileUtils.copyDirectory(source, destination, true);
+
+        assertThat(destination.resolve("lib/file-42")).hasContent("42");
+        assertThat(Files.isSameFile(source.resolve("lib/file-42"), destination.resolve("lib/file-42")))
+                .isTrue();
+        assertThat(Files.readSymbolicLink(destination.resolve("java"))).isEqualTo(Paths.get("bin/java"));
+    }
+
+    @Test
+    public void moves_directory_on_the_same_filesystem() throws IOException {
+        Path destination = tempDir.resolve("destination");
+        assertThat(FileUtils.tryMoveDirectory(source, destination)).isTrue();
+
+        assertThat(source).doesNotExist();
+        assertThat(destination.resolve("lib/file-42")).hasContent("42");
+    }
+}
@@ -19,6 +19,7 @@ package com.palantir.gradle.jdks.setup;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.palantir.gradle.jdks.setup.GradleJdkInstallationSetup.Command;
+import com.palantir.gradle.jdks.setup.common.JdkInstallationUsage;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -44,6 +45,9 @@ public final class GradleJdkInstallationSetupTest {
         Path destJavaHome = destDistribution.resolve("bin/java");
         assertThat(destDistribution).exists();
         assertThat(destJavaHome).exists();
+        assertThat(JdkInstallationUsage.markerPath(destDistribution))
+                .as("a fresh installation must not be pruned as unused")
+                .exists();
     }
 
     @Test
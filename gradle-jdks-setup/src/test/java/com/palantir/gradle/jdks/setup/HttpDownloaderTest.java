@@ -0,0 +1,211 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class HttpDownloaderTest {
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    @TempDir
+    Path tempDir;
+
+    private final byte[] content = new byte[16 << 20];
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final AtomicLong servedBytes = new AtomicLong();
+    private volatile boolean supportsRanges = true;
+    private volatile long failAfterBytes = Long.MAX_VALUE;
+    private HttpServer server;
+
+    @BeforeEach
+    public void before() throws IOException {
+        new Random(42).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/jdk.tar.gz", this::serve);
+        server.createContext("/moved.tar.gz", exchange -> {
+            // redirects from http to https are not followed
+            exchange.getResponseHeaders().add("Location", "https://localhost:1/jdk.tar.gz");
+            exchange.sendResponseHeaders(301, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void after() {
+        server.stop(0);
+    }
+
+    @Test
+    public void downloads_in_parallel_segments() {
+        Path destination = tempDir.resolve("jdk.tar.gz");
+
+        String sha256 = new HttpDownloader(new StdLogger(), 3).download(uri(), destination);
+
+        assertThat(destination).hasBinaryContent(content);
+        assertThat(sha256).isEqualTo(sha256(content));
+        // the probe, then one request per segment
+        assertThat(ranges).hasSize(4);
+        assertThat(destination.resolveSibling("jdk.tar.gz.part")).doesNotExist();
+        assertThat(destination.resolveSibling("jdk.tar.gz.part.state")).doesNotExist();
+    }
+
+    @Test
+    public void passes_the_content_to_the_consumer_while_downloading() {
+        Path destination = tempDir.resolve("jdk.tar.gz");
+        byte[] consumed = new byte[1 << 20];
+
+        String sha256 = new HttpDownloader(new StdLogger(), 3)
+                .download(uri(), destination, content -> new DataInputStream(content).readFully(consumed));
+
+        assertThat(consumed).isEqualTo(Arrays.copyOf(content, consumed.length));
+        assertThat(sha256)
+                .as("the content the consumer did not read is hashed too")
+                .isEqualTo(sha256(content));
+        assertThat(destination).hasBinaryContent(content);
+    }
+
+    @Test
+    public void resumes_an_interrupted_download() {
+        Path destination = tempDir.resolve("jdk.tar.gz");
+        failAfterBytes = 1 << 20;
+        assertThatThrownBy(() -> new HttpDownloader(new StdLogger(), 2).download(uri(), destination))
+                .isInstanceOf(RuntimeException.class);
+        assertThat(destination.resolveSibling("jdk.tar.gz.part.state")).exists();
+
+        failAfterBytes = Long.MAX_VALUE;
+        servedBytes.set(0);
+        String sha256 = new HttpDownloader(new StdLogger(), 2).download(uri(), destination);
+
+        assertThat(destination).hasBinaryContent(content);
+        assertThat(sha256).isEqualTo(sha256(content));
+        assertThat(servedBytes.get()).isLessThan(content.length);
+    }
+
+    @Test
+    public void downloads_in_one_stream_without_range_support() {
+        supportsRanges = false;
+        Path destination = tempDir.resolve("jdk.tar.gz");
+
+        String sha256 = new HttpDownloader(new StdLogger(), 4).download(uri(), destination);
+
+        assertThat(destination).hasBinaryContent(content);
+        assertThat(sha256).isEqualTo(sha256(content));
+        assertThat(ranges).hasSize(1);
+    }
+
+    @Test
+    public void fails_on_unsuccessful_responses() {
+        Path destination = tempDir.resolve("jdk.tar.gz");
+        URI moved = URI.create(String.format(
+                "http://localhost:%d/moved.tar.gz", server.getAddress().getPort()));
+
+        assertThatThrownBy(() -> new HttpDownloader(new StdLogger(), 2).download(moved, destination))
+                .rootCause()
+                .hasMessageContaining("failed with status 301");
+        assertThat(destination).doesNotExist();
+    }
+
+    @Test
+    public void serializes_concurrent_downloads_into_the_same_destination() throws Exception {
+        Path destination = tempDir.resolve("jdk.tar.gz");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> downloads = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                downloads.add(
+                        executor.submit(() -> new HttpDownloader(new StdLogger(), 2).download(uri(), destination)));
+            }
+            for (Future<String> download : downloads) {
+                assertThat(download.get()).isEqualTo(sha256(content));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(destination).hasBinaryContent(content);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        ranges.add(String.valueOf(range));
+        exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        Matcher matcher = range == null ? null : RANGE.matcher(range);
+        int start = 0;
+        int end = content.length - 1;
+        int statusCode = 200;
+        if (supportsRanges && matcher != null && matcher.matches()) {
+            statusCode = 206;
+            start = Integer.parseInt(matcher.group(1));
+            end = Math.min(end, Integer.parseInt(matcher.group(2)));
+            exchange.getResponseHeaders()
+                    .add("Content-Range", String.format("bytes %d-%d/%d", start, end, content.length));
+        }
+        int length = (int) Math.min(end - start + 1, failAfterBytes);
+        // a chunked response when failing on purpose, such that the body ends early
+        exchange.sendResponseHeaders(statusCode, length < end - start + 1 ? 0 : length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(content, start, length);
+            servedBytes.addAndGet(length);
+        }
+    }
+
+    private URI uri() {
+        return URI.create(String.format(
+                "http://localhost:%d/jdk.tar.gz", server.getAddress().getPort()));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
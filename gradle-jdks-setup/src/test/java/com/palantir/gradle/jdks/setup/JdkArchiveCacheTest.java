@@ -0,0 +1,153 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.palantir.gradle.jdks.setup.common.LockFiles;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public final class JdkArchiveCacheTest {
+
+    private static final String URL = "https://cdn.azul.com/zulu/bin/zulu-17-linux_x64.tar.gz";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void returns_cached_archive_until_it_is_corrupted() throws IOException {
+        JdkArchiveCache cache = new JdkArchiveCache(tempDir.resolve("archives"), 1024);
+        assertThat(cache.get(URL, "tar.gz")).isEmpty();
+
+        Path cachedArchive = put(cache, URL, "tar.gz", 10);
+        assertThat(cachedArchive).content().isEqualTo("jxxxxxxxxx");
+        assertThat(cache.get(URL, "tar.gz")).contains(cachedArchive);
+        assertThat(cache.get(URL, "zip")).isEmpty();
+
+        Files.writeString(cachedArchive, "truncated");
+        assertThat(cache.get(URL, "tar.gz")).isEmpty();
+        assertThat(cachedArchive).doesNotExist();
+    }
+
+    @Test
+    public void trusts_cached_archive_until_it_is_modified() throws IOException {
+        JdkArchiveCache cache = new JdkArchiveCache(tempDir.resolve("archives"), 1024);
+        Path cachedArchive = put(cache, URL, "tar.gz", 10);
+        Path digestFile = cachedArchive.resolveSibling(cachedArchive.getFileName() + ".sha256");
+        Files.setLastModifiedTime(digestFile, FileTime.fromMillis(2000));
+
+        Files.setLastModifiedTime(cachedArchive, FileTime.fromMillis(1000));
+        assertThat(cache.get(URL, "tar.gz")).as("not hashed again").contains(cachedArchive);
+
+        Files.writeString(cachedArchive, "corrupted!");
+        Files.setLastModifiedTime(cachedArchive, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        assertThat(cache.get(URL, "tar.gz")).isEmpty();
+        assertThat(cachedArchive).doesNotExist();
+    }
+
+    @Test
+    public void evicts_least_recently_used_archives() throws IOException {
+        JdkArchiveCache cache = new JdkArchiveCache(tempDir.resolve("archives"), 250);
+        Path first = put(cache, URL + "/1", "zip", 100);
+        Path second = put(cache, URL + "/2", "zip", 100);
+        Files.setLastModifiedTime(first, FileTime.fromMillis(500));
+        Files.setLastModifiedTime(second, FileTime.fromMillis(500));
+        Files.setLastModifiedTime(first.resolveSibling(first.getFileName() + ".sha256"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(second.resolveSibling(second.getFileName() + ".sha256"), FileTime.fromMillis(2000));
+        assertThat(cache.get(URL + "/1", "zip")).contains(first);
+
+        Path third = put(cache, URL + "/3", "zip", 100);
+        assertThat(first).exists();
+        assertThat(second).doesNotExist();
+        assertThat(third).exists();
+
+        Path large = put(cache, URL + "/4", "zip", 500);
+        assertThat(large).exists();
+        assertThat(first).doesNotExist();
+        assertThat(third).doesNotExist();
+    }
+
+    @Test
+    public void evicts_interrupted_downloads() throws IOException {
+        JdkArchiveCache cache = new JdkArchiveCache(tempDir.resolve("archives"), 250);
+        Path interrupted = cache.downloadPath(URL + "/1", "zip");
+        Path partialFile = interrupted.resolveSibling(interrupted.getFileName() + ".part");
+        Path stateFile = interrupted.resolveSibling(interrupted.getFileName() + ".part.state");
+        Path lockFile = interrupted.resolveSibling(interrupted.getFileName() + ".part.lock");
+        Files.createDirectories(interrupted.getParent());
+        Files.writeString(partialFile, "x".repeat(100));
+        Files.writeString(stateFile, "etag");
+        Files.createFile(lockFile);
+        Path staleTemporaryFile = Files.createFile(interrupted.resolveSibling(".archive.zip.1a2b3c4d"));
+        Path temporaryFile = Files.createFile(interrupted.resolveSibling(".archive.zip.5e6f7a8b"));
+        for (Path file : List.of(partialFile, stateFile, lockFile, staleTemporaryFile)) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+        }
+
+        Path archive = put(cache, URL + "/2", "zip", 100);
+        assertThat(partialFile).as("fits into the cache").exists();
+        assertThat(staleTemporaryFile).doesNotExist();
+        assertThat(temporaryFile).exists();
+
+        put(cache, URL + "/3", "zip", 100);
+        assertThat(archive).exists();
+        assertThat(partialFile).doesNotExist();
+        assertThat(stateFile).doesNotExist();
+        assertThat(lockFile).doesNotExist();
+    }
+
+    @Test
+    public void keeps_downloads_in_progress() throws IOException {
+        JdkArchiveCache cache = new JdkArchiveCache(tempDir.resolve("archives"), 150);
+        Path inProgress = cache.downloadPath(URL + "/1", "zip");
+        Path partialFile = inProgress.resolveSibling(inProgress.getFileName() + ".part");
+        Files.createDirectories(inProgress.getParent());
+        Files.writeString(partialFile, "x".repeat(100));
+        Files.setLastModifiedTime(partialFile, FileTime.fromMillis(1000));
+
+        FileLock fileLock = LockFiles.lock(inProgress.resolveSibling(inProgress.getFileName() + ".part.lock"));
+        try {
+            put(cache, URL + "/2", "zip", 100);
+            assertThat(partialFile).exists();
+        } finally {
+            fileLock.channel().close();
+        }
+    }
+
+    @Test
+    public void reads_maximum_size() {
+        assertThat(JdkArchiveCache.maxSizeMb(null)).isEqualTo(2048);
+        assertThat(JdkArchiveCache.maxSizeMb("0")).isZero();
+        assertThatThrownBy(() -> JdkArchiveCache.maxSizeMb("-1")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /** Downloads an archive of {@code size} bytes starting with {@code j} into the cache. */
+    private static Path put(JdkArchiveCache cache, String url, String extension, int size) throws IOException {
+        Path download = cache.downloadPath(url, extension);
+        Files.createDirectories(download.getParent());
+        Files.writeString(download, "j" + "x".repeat(size - 1));
+        return cache.putDownloaded(url, extension, download, "0".repeat(64));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisabledOnOs(OS.WINDOWS)
+public final class JdkBundleTest {
+
+    private static final FileTime MODIFIED_TIME = FileTime.fromMillis(1_700_000_000_000L);
+
+    @TempDir
+    Path workDirectory;
+
+    private Path sourceJdks;
+    private Path bundle;
+    private final JdkBundle jdkBundle = new JdkBundle(new StdLogger(), JdkPruner.fileLocker());
+
+    @BeforeEach
+    public void before() throws IOException {
+        sourceJdks = workDirectory.resolve("source");
+        bundle = workDirectory.resolve("bundle/jdks.bundle");
+        Path jdk11 = installation("azul-zulu-11", "11");
+        Path jdk11WithCerts = installation("azul-zulu-11-certs", "11");
+        // shares lib/modules with azul-zulu-11, like the installations that only differ in their CA certs
+        Files.delete(jdk11WithCerts.resolve("lib/modules"));
+        Files.createLink(jdk11WithCerts.resolve("lib/modules"), jdk11.resolve("lib/modules"));
+        jdkBundle.export(sourceJdks, List.of("azul-zulu-11", "azul-zulu-11-certs"), bundle);
+    }
+
+    @Test
+    public void imports_the_exported_installations() throws IOException {
+        Path jdks = workDirectory.resolve("jdks");
+
+        assertThat(jdkBundle.importBundle(bundle, jdks))
+                .containsExactly(jdks.resolve("azul-zulu-11"), jdks.resolve("azul-zulu-11-certs"));
+
+        for (String installation : List.of("azul-zulu-11", "azul-zulu-11-certs")) {
+            Path jdk = jdks.resolve(installation);
+            assertThat(jdk.resolve("bin/java")).hasContent("java 11");
+            assertThat(jdk.resolve("bin/java")).isExecutable();
+            assertThat(Files.getLastModifiedTime(jdk.resolve("lib/modules"))).isEqualTo(MODIFIED_TIME);
+            assertThat(Files.readSymbolicLink(jdk.resolve("release-link"))).isEqualTo(Path.of("release"));
+            assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(jdk.resolve("legal"))))
+                    .isEqualTo("r-xr-xr-x");
+            assertThat(jdks.resolve(installation + ".last-used")).exists();
+        }
+        assertThat(Files.isSameFile(
+                        jdks.resolve("azul-zulu-11/lib/modules"), jdks.resolve("azul-zulu-11-certs/lib/modules")))
+                .isTrue();
+        assertThat(jdks.resolve("azul-zulu-11.in-progress")).doesNotExist();
+    }
+
+    @Test
+    public void leaves_existing_installations_untouched() throws IOException {
+        Path jdks = workDirectory.resolve("jdks");
+        Files.createDirectories(jdks.resolve("azul-zulu-11/bin"));
+        Files.writeString(jdks.resolve("azul-zulu-11/bin/java"), "existing");
+
+        assertThat(jdkBundle.importBundle(bundle, jdks)).containsExactly(jdks.resolve("azul-zulu-11-certs"));
+
+        assertThat(jdks.resolve("azul-zulu-11/bin/java")).hasContent("existing");
+        assertThat(jdks.resolve("azul-zulu-11-certs/lib/modules")).hasContent("modules 11");
+        try (Stream<Path> files = Files.list(jdks)) {
+            assertThat(files.map(path -> path.getFileName().toString()))
+                    .containsExactlyInAnyOrder(
+                            "azul-zulu-11",
+                            "azul-zulu-11.lock",
+                            "azul-zulu-11-certs",
+                            "azul-zulu-11-certs.lock",
+                            "azul-zulu-11-certs.last-used");
+        }
+    }
+
+    @Test
+    public void holds_the_installation_locks_while_exporting() {
+        Path otherBundle = workDirectory.resolve("other.bundle");
+        List<String> events = new ArrayList<>();
+        JdkBundle lockingBundle = new JdkBundle(new StdLogger(), installation -> {
+            events.add("locked " + installation.getFileName());
+            return () -> events.add(
+                    "unlocked " + installation.getFileName() + (Files.exists(otherBundle) ? " after export" : ""));
+        });
+
+        lockingBundle.export(sourceJdks, List.of("azul-zulu-11-certs", "azul-zulu-11"), otherBundle);
+
+        assertThat(events)
+                .containsExactly(
+                        "locked azul-zulu-11",
+                        "locked azul-zulu-11-certs",
+                        "unlocked azul-zulu-11 after export",
+                        "unlocked azul-zulu-11-certs after export");
+    }
+
+    @Test
+    public void rejects_symlinks_outside_of_the_installation() throws IOException {
+        Path elsewhere = Files.createDirectories(workDirectory.resolve("elsewhere"));
+        Path evilBundle = workDirectory.resolve("evil.bundle");
+        try (DataOutputStream output = bundleWithInstallation(evilBundle, "evil")) {
+            symlink(output, "x", elsewhere.toString());
+            file(output, "x/evil");
+            output.writeByte(0);
+        }
+        Path jdks = workDirectory.resolve("jdks");
+
+        assertThatThrownBy(() -> jdkBundle.importBundle(evilBundle, jdks))
+                .rootCause()
+                .hasMessageContaining("points outside of");
+        assertThat(elsewhere).isEmptyDirectory();
+        assertThat(jdks.resolve("evil")).doesNotExist();
+    }
+
+    @Test
+    public void rejects_entries_written_through_symlinks() throws IOException {
+        Path evilBundle = workDirectory.resolve("evil.bundle");
+        try (DataOutputStream output = bundleWithInstallation(evilBundle, "evil")) {
+            symlink(output, "lib", "bin");
+            file(output, "lib/evil");
+            output.writeByte(0);
+        }
+        Path jdks = workDirectory.resolve("jdks");
+
+        assertThatThrownBy(() -> jdkBundle.importBundle(evilBundle, jdks))
+                .rootCause()
+                .hasMessageContaining("would be written through the symlink");
+        assertThat(jdks.resolve("evil")).doesNotExist();
+    }
+
+    /** Writes the header of a bundle of a single installation, followed by the directory of the installation. */
+    private static DataOutputStream bundleWithInstallation(Path path, String name) throws IOException {
+        DataOutputStream output = new DataOutputStream(Files.newOutputStream(path));
+        output.writeInt(0x474a4442);
+        output.writeInt(1);
+        output.writeInt(1);
+        output.writeUTF(name);
+        output.writeByte(1);
+        output.writeInt(0);
+        output.writeUTF("");
+        output.writeInt(-1);
+        output.writeLong(MODIFIED_TIME.toMillis());
+        return output;
+    }
+
+    private static void symlink(DataOutputStream output, String relativePath, String linkTarget) throws IOException {
+        output.writeByte(4);
+        output.writeInt(0);
+        output.writeUTF(relativePath);
+        output.writeUTF(linkTarget);
+    }
+
+    private static void file(DataOutputStream output, String relativePath) throws IOException {
+        byte[] content = "evil".getBytes(StandardCharsets.UTF_8);
+        output.writeByte(2);
+        output.writeInt(0);
+        output.writeUTF(relativePath);
+        output.writeInt(-1);
+        output.writeLong(MODIFIED_TIME.toMillis());
+        output.writeBoolean(false);
+        output.writeLong(content.length);
+        output.write(content);
+    }
+
+    private Path installation(String name, String version) throws IOException {
+        Path installation = sourceJdks.resolve(name);
+        Files.createDirectories(installation.resolve("bin"));
+        Files.createDirectories(installation.resolve("lib"));
+        Files.createDirectories(installation.resolve("legal"));
+        Files.writeString(installation.resolve("bin/java"), "java " + version, StandardCharsets.UTF_8);
+        Files.setPosixFilePermissions(installation.resolve("bin/java"), PosixFilePermissions.fromString("rwxr-xr-x"));
+        Files.writeString(installation.resolve("lib/modules"), "modules " + version, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(installation.resolve("lib/modules"), MODIFIED_TIME);
+        Files.writeString(installation.resolve("release"), "JAVA_VERSION=" + version, StandardCharsets.UTF_8);
+        Files.createSymbolicLink(installation.resolve("release-link"), Path.of("release"));
+        Files.writeString(installation.resolve("legal/LICENSE"), "license", StandardCharsets.UTF_8);
+        Files.setPosixFilePermissions(installation.resolve("legal"), PosixFilePermissions.fromString("r-xr-xr-x"));
+        return installation;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks.setup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.palantir.gradle.jdks.setup.common.JdkInstallationUsage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisabledOnOs(OS.WINDOWS)
+public final class JdkPrunerTest {
+
+    @TempDir
+    Path jdksDirectory;
+
+    private final List<Path> lockedInstallations = new ArrayList<>();
+
+    @Test
+    public void prunes_installations_unused_for_too_long() throws IOException {
+        Path unused = installation("azul-zulu-11", 100, Duration.ofDays(40));
+        Path used = installation("azul-zulu-17", 100, Duration.ofDays(2));
+        Files.createFile(jdksDirectory.resolve("azul-zulu-11.lock"));
+        Files.createFile(jdksDirectory.resolve("azul-zulu-11.setup-1234.jar"));
+        Files.createFile(jdksDirectory.resolve("azul-zulu-11.setup-1234.jsa"));
+        Files.createFile(jdksDirectory.resolve("azul-zulu-17.setup-1234.jsa"));
+
+        assertThat(pruner(Long.MAX_VALUE).prune(jdksDirectory)).containsExactly(unused);
+        assertThat(unused).doesNotExist();
+        assertThat(jdksDirectory.resolve("azul-zulu-11.lock")).doesNotExist();
+        assertThat(jdksDirectory.resolve("azul-zulu-11.setup-1234.jar")).doesNotExist();
+        assertThat(jdksDirectory.resolve("azul-zulu-11.setup-1234.jsa")).doesNotExist();
+        assertThat(jdksDirectory.resolve("azul-zulu-17.setup-1234.jsa")).exists();
+        assertThat(JdkInstallationUsage.markerPath(unused)).doesNotExist();
+        assertThat(used).isDirectory();
+        assertThat(lockedInstallations).containsExactly(unused);
+    }
+
+    @Test
+    public void prunes_least_recently_used_installations_over_the_size_budget() throws IOException {
+        Path oldest = installation("azul-zulu-11", 600 << 10, Duration.ofDays(5));
+        Path older = installation("azul-zulu-17", 600 << 10, Duration.ofDays(3));
+        Path inUse = installation("azul-zulu-21", 600 << 10, Duration.ofHours(1));
+
+        assertThat(pruner(1 << 20).prune(jdksDirectory)).containsExactly(older, oldest);
+        assertThat(inUse).isDirectory();
+    }
+
+    @Test
+    public void removes_leftovers_of_abandoned_installations() throws IOException {
+        Files.createDirectories(jdksDirectory.resolve("azul-zulu-17.in-progress-1234abcd/bin"));
+        Files.createDirectories(jdksDirectory.resolve("azul-zulu-17.in-progress/bin"));
+        Files.createFile(jdksDirectory.resolve("azul-zulu-17.lock"));
+        Files.createFile(jdksDirectory.resolve("azul-zulu-17.setup-1234.jsa"));
+        Files.createDirectories(jdksDirectory.resolve("archives"));
+
+        assertThat(pruner(Long.MAX_VALUE).prune(jdksDirectory)).isEmpty();
+        try (Stream<Path> files = Files.list(jdksDirectory)) {
+            assertThat(files).containsExactly(jdksDirectory.resolve("archives"));
+        }
+    }
+
+    @Test
+    public void resolves_the_installation_of_leftover_files() {
+        assertThat(JdkPruner.installationName("azul-zulu-17.lock")).contains("azul-zulu-17");
+        assertThat(JdkPruner.installationName("azul-zulu-17.last-used")).contains("azul-zulu-17");
+        assertThat(JdkPruner.installationName("azul-zulu-17.in-progress-1234abcd"))
+                .contains("azul-zulu-17");
+        assertThat(JdkPruner.installationName("azul-zulu-17.setup-1234.jsa")).contains("azul-zulu-17");
+        assertThat(JdkPruner.installationName("archives")).isEmpty();
+        assertThat(JdkPruner.installationName(".store")).isEmpty();
+    }
+
+    private JdkPruner pruner(long maxTotalSizeBytes) {
+        JdkPruner.InstallationLocker locker = installation -> {
+            lockedInstallations.add(installation);
+            return JdkPruner.fileLocker().lock(installation);
+        };
+        return new JdkPruner(new StdLogger(), locker, Duration.ofDays(30), maxTotalSizeBytes);
+    }
+
+    private Path installation(String name, int sizeBytes, Duration unused) throws IOException {
+        Path installation = jdksDirectory.resolve(name);
+        Files.createDirectories(installation.resolve("bin"));
+        Files.createDirectories(installation.resolve("legal"));
+        Files.write(installation.resolve("bin/java"), new byte[sizeBytes]);
+        Files.setPosixFilePermissions(installation.resolve("legal"), PosixFilePermissions.fromString("r-xr-xr-x"));
+        JdkInstallationUsage.markUsed(installation);
+        Files.setLastModifiedTime(
+                JdkInstallationUsage.markerPath(installation),
+                FileTime.from(Instant.now().minus(unused)));
+        return installation;
+    }
+}
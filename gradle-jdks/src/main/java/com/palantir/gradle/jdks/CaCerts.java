@@ -26,6 +26,7 @@ import org.immutables.value.Value;
 public interface CaCerts {
     NavigableMap<String, String> caCerts();
 
+    @Value.Lazy
     default String combinedInSortedOrder() {
         StringBuilder stringBuilder = new StringBuilder();
 
@@ -23,19 +23,35 @@ import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import org.gradle.api.file.Directory;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputDirectory;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 
+/**
+ * Checks the {@code gradle/} files generated by {@link GenerateGradleJdksConfigsTask}. The task is up-to-date, or
+ * loaded from the build cache, unless the content of {@code gradle/}, the configured JDKs or the resources bundled in
+ * the plugin (i.e. the plugin version) changed.
+ */
+@CacheableTask
 public abstract class CheckGradleJdksConfigsTask extends GradleJdksConfigs {
 
     @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
     public abstract DirectoryProperty getInputGradleDirectory();
 
+    /** The SHA-256 of the resources of the plugin that are copied into {@code gradle/}, keyed by resource name. */
+    @Input
+    public abstract MapProperty<String, String> getResourceSha256s();
+
     @OutputFile
     public abstract RegularFileProperty getDummyOutputFile();
 
@@ -47,6 +63,9 @@ public abstract class CheckGradleJdksConfigsTask extends GradleJdksConfigs {
     @Override
     protected void maybePrepareForAction(List<Path> targetPaths) {}
 
+    @Override
+    protected final void completeAction() {}
+
     @Override
     protected final void applyGradleJdkFileAction(
             Path downloadUrlPath, Path localUrlPath, JdkDistributionConfig jdkDistribution) {
@@ -54,6 +73,15 @@ public abstract class CheckGradleJdksConfigsTask extends GradleJdksConfigs {
         assertFileContent(localUrlPath, jdkDistribution.getLocalPath().get());
     }
 
+    @Override
+    protected final void applyGradleJdkDaemonJvmArgsAction(Path daemonJvmArgsPath, Optional<String> daemonJvmArgs) {
+        if (daemonJvmArgs.isPresent()) {
+            assertFileContent(daemonJvmArgsPath, daemonJvmArgs.get());
+        } else {
+            checkOrThrow(!Files.exists(daemonJvmArgsPath), daemonJvmArgsPath);
+        }
+    }
+
     @Override
     protected final void applyGradleJdkDaemonVersionAction(Path gradleJdkDaemonVersion) {
         assertFileContent(gradleJdkDaemonVersion, getDaemonJavaVersion().get().toString());
@@ -61,13 +89,11 @@ public abstract class CheckGradleJdksConfigsTask extends GradleJdksConfigs {
 
     @Override
     protected final void applyGradleJdkJarAction(File gradleJdkJarFile, String resourceName) {
-        try {
-            byte[] expectedBytes = getResourceContent(resourceName);
-            byte[] actualBytes = Files.readAllBytes(gradleJdkJarFile.toPath());
-            checkOrThrow(Arrays.equals(expectedBytes, actualBytes), gradleJdkJarFile.toPath());
-        } catch (IOException e) {
-            throw new RuntimeException("An error occurred while checking the gradle jdk setup jar", e);
-        }
+        checkOrThrow(
+                gradleJdkJarFile.isFile()
+                        && GradleJdksConfigsUtils.sha256(gradleJdkJarFile.toPath())
+                                .equals(getResourceSha256s().get().get(resourceName)),
+                gradleJdkJarFile.toPath());
     }
 
     @Override
@@ -0,0 +1,121 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.palantir.gradle.jdks.setup.JdkBundle;
+import com.palantir.gradle.jdks.setup.common.Arch;
+import com.palantir.gradle.jdks.setup.common.Os;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Packs the JDK installations referenced by the {@code gradle/jdks/<version>/<os>/<arch>/local-path} files of the
+ * current OS and architecture into a single bundle, see {@link JdkBundle}. The bundle can be imported into the
+ * {@code $GRADLE_USER_HOME/gradle-jdks} of e.g. an ephemeral CI agent using the {@code importBundle} command of the
+ * Gradle JDK setup jar, instead of installing every JDK from scratch.
+ */
+public abstract class ExportJdkBundleTask extends DefaultTask {
+
+    @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract DirectoryProperty getGradleJdksDirectory();
+
+    /** Where the JDKs are installed, the installations being named by their local paths. */
+    @Internal
+    public abstract DirectoryProperty getJdksDirectory();
+
+    @Input
+    public abstract Property<Os> getOs();
+
+    @Input
+    public abstract Property<Arch> getArch();
+
+    @OutputFile
+    public abstract RegularFileProperty getBundleFile();
+
+    @TaskAction
+    public final void export() {
+        Path jdksDirectory = getJdksDirectory().get().getAsFile().toPath();
+        List<String> installationNames = installationNames();
+        for (String installationName : installationNames) {
+            if (!Files.isDirectory(jdksDirectory.resolve(installationName))) {
+                throw new RuntimeException(String.format(
+                        "JDK installation %s does not exist, run ./gradlew to install the JDKs before exporting them",
+                        jdksDirectory.resolve(installationName)));
+            }
+        }
+        new JdkBundle(new GradleLogger(getLogger(), LogLevel.LIFECYCLE), JdkManager.PathLock::new)
+                .export(jdksDirectory, installationNames, getBundleFile().get().getAsFile().toPath());
+    }
+
+    private List<String> installationNames() {
+        Path gradleJdksDirectory = getGradleJdksDirectory().get().getAsFile().toPath();
+        Set<String> installationNames = new TreeSet<>();
+        for (Path majorVersionDirectory : list(gradleJdksDirectory)) {
+            // same as the Gradle JDK setup, which does not install JDK 8
+            if (majorVersionDirectory.getFileName().toString().equals("8")) {
+                continue;
+            }
+            Path localPath = majorVersionDirectory
+                    .resolve(getOs().get().uiName())
+                    .resolve(getArch().get().uiName())
+                    .resolve("local-path");
+            if (!Files.isRegularFile(localPath)) {
+                throw new RuntimeException(String.format(
+                        "%s does not exist, the JDKs of %s/%s cannot be exported",
+                        localPath, getOs().get(), getArch().get()));
+            }
+            try {
+                installationNames.add(Files.readString(localPath).trim());
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Unable to read file %s", localPath), e);
+            }
+        }
+        return new ArrayList<>(installationNames);
+    }
+
+    static String bundleFileName(Os os, Arch arch) {
+        return String.format("gradle-jdks-%s-%s.bundle", os, arch);
+    }
+
+    private static List<Path> list(Path directory) {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Unable to list %s", directory), e);
+        }
+    }
+}
@@ -16,20 +16,41 @@
 
 package com.palantir.gradle.jdks;
 
-import com.palantir.gradle.jdks.setup.FileUtils;
+import com.google.common.hash.Hashing;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.gradle.api.file.Directory;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.tasks.OutputDirectory;
 
+/**
+ * Generates the {@code gradle/} files of the Gradle JDK setup. The files are reconciled rather than regenerated: the
+ * desired files are collected first, then only the files whose content differs are written and only the obsolete
+ * files are deleted, such that the unchanged files keep their modification time and do not invalidate the file system
+ * watching of Gradle and of the IDE.
+ */
 public abstract class GenerateGradleJdksConfigsTask extends GradleJdksConfigs {
 
     private static final Logger log = Logging.getLogger(GenerateGradleJdksConfigsTask.class);
 
+    private final Map<Path, DesiredFile> desiredFiles = new HashMap<>();
+    private final List<Path> managedPaths = new ArrayList<>();
+
     @OutputDirectory
     public abstract DirectoryProperty getOutputGradleDirectory();
 
@@ -40,33 +61,151 @@ public abstract class GenerateGradleJdksConfigsTask extends GradleJdksConfigs {
 
     @Override
     protected final void maybePrepareForAction(List<Path> targetPaths) {
-        targetPaths.forEach(FileUtils::delete);
+        desiredFiles.clear();
+        managedPaths.clear();
+        managedPaths.addAll(targetPaths);
     }
 
     @Override
     protected final void applyGradleJdkFileAction(
             Path downloadUrlPath, Path localUrlPath, JdkDistributionConfig jdkDistribution) {
-        GradleJdksConfigsUtils.createDirectories(downloadUrlPath.getParent());
-        GradleJdksConfigsUtils.writeConfigurationFile(
-                downloadUrlPath, jdkDistribution.getDownloadUrl().get());
-        GradleJdksConfigsUtils.writeConfigurationFile(
-                localUrlPath, jdkDistribution.getLocalPath().get());
+        desireConfigurationFile(downloadUrlPath, jdkDistribution.getDownloadUrl().get());
+        desireConfigurationFile(localUrlPath, jdkDistribution.getLocalPath().get());
+    }
+
+    @Override
+    protected final void applyGradleJdkDaemonJvmArgsAction(Path daemonJvmArgsPath, Optional<String> daemonJvmArgs) {
+        // when absent, the file is not desired, hence deleted if it exists
+        daemonJvmArgs.ifPresent(jvmArgs -> desireConfigurationFile(daemonJvmArgsPath, jvmArgs));
     }
 
     @Override
     protected final void applyGradleJdkDaemonVersionAction(Path gradleJdkDaemonVersion) {
-        GradleJdksConfigsUtils.writeConfigurationFile(
-                gradleJdkDaemonVersion, getDaemonJavaVersion().get().toString());
+        desireConfigurationFile(gradleJdkDaemonVersion, getDaemonJavaVersion().get().toString());
     }
 
     @Override
     protected final void applyGradleJdkJarAction(File gradleJdkJarFile, String resourceName) {
-        GradleJdksConfigsUtils.writeResourceAsStreamToFile(resourceName, gradleJdkJarFile);
+        desiredFiles.put(
+                gradleJdkJarFile.toPath(),
+                new DesiredFile(
+                        GradleJdksConfigsUtils.resourceSha256(resourceName),
+                        false,
+                        path -> GradleJdksConfigsUtils.writeResourceAsStreamToFile(resourceName, path.toFile())));
     }
 
     @Override
     protected final void applyGradleJdkScriptAction(File gradleJdkScriptFile, String resourceName) {
-        GradleJdksConfigsUtils.writeResourceAsStreamToFile(resourceName, gradleJdkScriptFile);
-        GradleJdksConfigsUtils.setExecuteFilePermissions(gradleJdkScriptFile.toPath());
+        desiredFiles.put(
+                gradleJdkScriptFile.toPath(),
+                new DesiredFile(
+                        GradleJdksConfigsUtils.resourceSha256(resourceName),
+                        true,
+                        path -> GradleJdksConfigsUtils.writeResourceAsStreamToFile(resourceName, path.toFile())));
+    }
+
+    @Override
+    protected final void completeAction() {
+        int deleted = 0;
+        for (Path managedPath : managedPaths) {
+            deleted += deleteObsoleteFiles(managedPath);
+        }
+        int written = 0;
+        int added = 0;
+        for (Map.Entry<Path, DesiredFile> entry : desiredFiles.entrySet()) {
+            Path path = entry.getKey();
+            DesiredFile desiredFile = entry.getValue();
+            boolean exists = Files.isRegularFile(path);
+            if (exists && desiredFile.matches(path)) {
+                continue;
+            }
+            GradleJdksConfigsUtils.createDirectories(path.getParent());
+            desiredFile.writer.accept(path);
+            if (desiredFile.executable) {
+                GradleJdksConfigsUtils.setExecuteFilePermissions(path);
+            }
+            written++;
+            if (!exists) {
+                added++;
+            }
+        }
+        int unchanged = desiredFiles.size() - written;
+        if (written == 0 && deleted == 0) {
+            log.info("Gradle JDK configuration files are up-to-date ({} unchanged)", unchanged);
+        } else {
+            log.lifecycle(
+                    "Gradle JDK configuration files: {} added, {} updated, {} deleted, {} unchanged",
+                    added,
+                    written - added,
+                    deleted,
+                    unchanged);
+        }
+    }
+
+    private void desireConfigurationFile(Path path, String content) {
+        // same content as GradleJdksConfigsUtils#writeConfigurationFile
+        String contentWithLineEnding = content + "\n";
+        desiredFiles.put(
+                path,
+                new DesiredFile(
+                        Hashing.sha256()
+                                .hashString(contentWithLineEnding, StandardCharsets.UTF_8)
+                                .toString(),
+                        false,
+                        filePath -> GradleJdksConfigsUtils.writeConfigurationFile(filePath, content)));
+    }
+
+    /** Deletes the files of the managed path that are not desired, and the directories that end up empty. */
+    private int deleteObsoleteFiles(Path managedPath) {
+        if (!Files.exists(managedPath)) {
+            return 0;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(managedPath)) {
+            // children before their parents
+            paths = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to list %s", managedPath), e);
+        }
+        int deleted = 0;
+        for (Path path : paths) {
+            try {
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    if (isEmpty(path)) {
+                        Files.delete(path);
+                    }
+                } else if (!desiredFiles.containsKey(path)) {
+                    log.info("Deleting obsolete Gradle JDK configuration file {}", path);
+                    Files.delete(path);
+                    deleted++;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Failed to delete %s", path), e);
+            }
+        }
+        return deleted;
+    }
+
+    private static boolean isEmpty(Path directory) throws IOException {
+        try (Stream<Path> children = Files.list(directory)) {
+            return children.findAny().isEmpty();
+        }
+    }
+
+    private static final class DesiredFile {
+        private final String sha256;
+        private final boolean executable;
+        private final Consumer<Path> writer;
+
+        private DesiredFile(String sha256, boolean executable, Consumer<Path> writer) {
+            this.sha256 = sha256;
+            this.executable = executable;
+            this.writer = writer;
+        }
+
+        private boolean matches(Path path) {
+            return (!executable || Files.isExecutable(path))
+                    && GradleJdksConfigsUtils.sha256(path).equals(sha256);
+        }
     }
 }
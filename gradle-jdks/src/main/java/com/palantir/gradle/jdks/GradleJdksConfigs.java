@@ -19,10 +19,12 @@ package com.palantir.gradle.jdks;
 import com.palantir.gradle.jdks.setup.common.CurrentArch;
 import com.palantir.gradle.jdks.setup.common.CurrentOs;
 import java.io.File;
-import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.Directory;
 import org.gradle.api.provider.MapProperty;
@@ -57,6 +59,9 @@ public abstract class GradleJdksConfigs extends DefaultTask {
     protected abstract void applyGradleJdkFileAction(
             Path downloadUrlPath, Path localUrlPath, JdkDistributionConfig jdkDistributionConfig);
 
+    /** Applied for every JDK, with an empty value if no daemon JVM arguments are configured for it. */
+    protected abstract void applyGradleJdkDaemonJvmArgsAction(Path daemonJvmArgsPath, Optional<String> daemonJvmArgs);
+
     protected abstract void applyGradleJdkDaemonVersionAction(Path gradleJdkDaemonVersion);
 
     protected abstract void applyGradleJdkJarAction(File gradleJdkJarFile, String resourceName);
@@ -65,6 +70,8 @@ public abstract class GradleJdksConfigs extends DefaultTask {
 
     protected abstract void maybePrepareForAction(List<Path> targetPaths);
 
+    protected abstract void completeAction();
+
     @TaskAction
     public final void action() {
         Path gradleJdksDir = gradleDirectory().dir("jdks").getAsFile().toPath();
@@ -79,7 +86,7 @@ public abstract class GradleJdksConfigs extends DefaultTask {
         Path certsDir = gradleDirectory().dir("certs").getAsFile().toPath();
         maybePrepareForAction(
                 List.of(gradleJdksDir, gradleJdksSetupJar, gradleJdksFunctionsScript, gradleJdksSetupScript, certsDir));
-        AtomicBoolean jdksDirectoryConfigured = new AtomicBoolean(false);
+        Set<Path> configuredJdkDirs = new HashSet<>();
         getJavaVersionToJdkDistros().get().forEach((javaVersion, jdkDistros) -> {
             jdkDistros.forEach(jdkDistribution -> {
                 Path outputDir = gradleJdksDir
@@ -89,10 +96,13 @@ public abstract class GradleJdksConfigs extends DefaultTask {
                 Path downloadUrlPath = outputDir.resolve("download-url");
                 Path localPath = outputDir.resolve("local-path");
                 applyGradleJdkFileAction(downloadUrlPath, localPath, jdkDistribution);
-                jdksDirectoryConfigured.set(true);
+                applyGradleJdkDaemonJvmArgsAction(
+                        outputDir.resolve("daemon-jvm-args"),
+                        daemonJvmArgs(jdkDistribution.getDaemonJvmArgs().get()));
+                configuredJdkDirs.add(outputDir);
             });
         });
-        if (!jdksDirectoryConfigured.get()) {
+        if (configuredJdkDirs.isEmpty()) {
             throw new RuntimeException(
                     "No JDKs were configured for the gradle setup. Please run `./gradlew setupJdks` to generate the"
                             + " JDKs and ensure that you have configured JDKs properly for gradle-jdks as per"
@@ -104,7 +114,8 @@ public abstract class GradleJdksConfigs extends DefaultTask {
         String arch = CurrentArch.get().toString();
         Path expectedJdkDir =
                 gradleJdksDir.resolve(gradleJdkDaemonVersion).resolve(os).resolve(arch);
-        if (!Files.exists(expectedJdkDir)) {
+        // checked against the configuration rather than the disk, as the generated files might not be written yet
+        if (!configuredJdkDirs.contains(expectedJdkDir)) {
             throw new RuntimeException(String.format(
                     "Gradle daemon JDK version is `%s` but no JDK configured for that version. Please ensure that you"
                             + " have configured JDKs properly for gradle-jdks as per the readme:"
@@ -117,5 +128,36 @@ public abstract class GradleJdksConfigs extends DefaultTask {
         applyGradleJdkJarAction(gradleJdksSetupJar.toFile(), GRADLE_JDKS_SETUP_JAR);
         applyGradleJdkScriptAction(gradleJdksFunctionsScript.toFile(), GRADLE_JDKS_FUNCTIONS_SCRIPT);
         applyGradleJdkScriptAction(gradleJdksSetupScript.toFile(), GRADLE_JDKS_SETUP_SCRIPT);
+        completeAction();
+    }
+
+    /**
+     * Renders the arguments on a single line, as read by {@code gradle-jdks-setup.sh} and passed as
+     * {@code org.gradle.jvmargs}, which splits them on whitespace outside of double or single quotes, and drops the
+     * quotes. There is no escape character, hence an argument can contain either kind of quote, but not both.
+     */
+    private static Optional<String> daemonJvmArgs(List<String> jvmArgs) {
+        if (jvmArgs.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(jvmArgs.stream().map(GradleJdksConfigs::quoteJvmArg).collect(Collectors.joining(" ")));
+    }
+
+    private static String quoteJvmArg(String jvmArg) {
+        boolean hasDoubleQuote = jvmArg.indexOf('"') >= 0;
+        boolean hasSingleQuote = jvmArg.indexOf('\'') >= 0;
+        if (hasDoubleQuote && hasSingleQuote) {
+            throw new IllegalArgumentException(String.format(
+                    "Daemon JVM argument '%s' cannot contain both double and single quotes, as it could not be passed"
+                            + " as org.gradle.jvmargs",
+                    jvmArg));
+        }
+        if (hasDoubleQuote) {
+            return "'" + jvmArg + "'";
+        }
+        if (hasSingleQuote || jvmArg.chars().anyMatch(Character::isWhitespace)) {
+            return "\"" + jvmArg + "\"";
+        }
+        return jvmArg;
     }
 }
@@ -16,6 +16,8 @@
 
 package com.palantir.gradle.jdks;
 
+import com.google.common.hash.Hashing;
+import com.google.common.io.Resources;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -28,11 +30,16 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.PosixFilePermission;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 
 public final class GradleJdksConfigsUtils {
 
+    // the resources are bundled in the plugin jar, hence their digests only need to be computed once per classloader
+    private static final Map<String, String> RESOURCE_SHA256S = new ConcurrentHashMap<>();
+
     public static Path copyResourceToPath(Path targetDir, String resourceName) {
         try {
             URL installJdksResource =
@@ -116,5 +123,30 @@ public final class GradleJdksConfigsUtils {
         }
     }
 
+    /** The SHA-256 of the given resource of the plugin, streamed rather than read into memory. */
+    public static String resourceSha256(String resourceName) {
+        return RESOURCE_SHA256S.computeIfAbsent(resourceName, name -> {
+            URL resource = GradleJdksConfigsUtils.class.getClassLoader().getResource(name);
+            if (resource == null) {
+                throw new RuntimeException(String.format("Resource not found: %s:", name));
+            }
+            try {
+                return Resources.asByteSource(resource).hash(Hashing.sha256()).toString();
+            } catch (IOException e) {
+                throw new RuntimeException(String.format("Failed to hash resource %s", name), e);
+            }
+        });
+    }
+
+    public static String sha256(Path file) {
+        try {
+            return com.google.common.io.Files.asByteSource(file.toFile())
+                    .hash(Hashing.sha256())
+                    .toString();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to hash file %s", file), e);
+        }
+    }
+
     private GradleJdksConfigsUtils() {}
 }
@@ -38,6 +38,8 @@ import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 
 @AutoParallelizable
 public abstract class GradleWrapperPatcher {
@@ -45,15 +47,22 @@ public abstract class GradleWrapperPatcher {
     private static final Logger log = Logging.getLogger(GradleWrapperPatcher.class);
     private static final String COMMENT_BLOCK = "###";
     private static final String SHEBANG = "#!";
+    static final String GRADLEW_PATCH = "gradlew-patch.sh";
 
     interface Params {
 
         @InputFile
+        @PathSensitive(PathSensitivity.NONE)
         RegularFileProperty getOriginalGradlewScript();
 
         @Input
         Property<Boolean> getGenerate();
 
+        /** The SHA-256 of the patch resource, which changes with the plugin version. */
+        @Input
+        Property<String> getPatchSha256();
+
+        /** The patched {@code gradlew} script, or a marker file written once the check passed. */
         @OutputFile
         RegularFileProperty getPatchedGradlewScript();
 
@@ -73,7 +82,8 @@ public abstract class GradleWrapperPatcher {
             log.lifecycle("Gradle JDK setup is enabled, patching the gradle wrapper files");
             patchGradlewContent(params.getOriginalGradlewScript().getAsFile().get(), params.getPatchedGradlewScript());
         } else {
-            checkContainsPatch(params.getOriginalGradlewScript().get().getAsFile(), "gradlew-patch.sh");
+            checkContainsPatch(params.getOriginalGradlewScript().get().getAsFile(), GRADLEW_PATCH);
+            write(params.getPatchedGradlewScript().getAsFile().get().toPath(), new byte[0]);
         }
     }
 
@@ -90,7 +100,7 @@ public abstract class GradleWrapperPatcher {
     private static void patchGradlewContent(File originalGradlewScript, RegularFileProperty patchedGradlewScript) {
         List<String> initialLines = readAllLines(originalGradlewScript.toPath());
         List<String> linesNoPatch = GradleJdksPatchHelper.getLinesWithoutPatch(initialLines);
-        List<String> patchLines = getPatchLines("gradlew-patch.sh");
+        List<String> patchLines = getPatchLines(GRADLEW_PATCH);
         int insertIndex = getGradlewInsertLineIndex(initialLines);
         write(
                 patchedGradlewScript.getAsFile().get().toPath(),
@@ -0,0 +1,261 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.palantir.gradle.jdks.JdkPath.Extension;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+/**
+ * Extracts a JDK archive in a single pass straight into the destination directory, preserving symlinks and POSIX file
+ * modes, and detects the java home ({@code JAVA_HOME/bin/java}) while doing so.
+ *
+ * <p>Nothing is written outside of the destination: entries escaping it are rejected, as are symlinks pointing outside
+ * of it and entries that would be written through a previously extracted symlink.
+ */
+final class JdkArchiveExtractor {
+
+    private static final boolean SUPPORTS_POSIX =
+            FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    private static final PosixFilePermission[] PERMISSION_BITS = {
+        PosixFilePermission.OTHERS_EXECUTE,
+        PosixFilePermission.OTHERS_WRITE,
+        PosixFilePermission.OTHERS_READ,
+        PosixFilePermission.GROUP_EXECUTE,
+        PosixFilePermission.GROUP_WRITE,
+        PosixFilePermission.GROUP_READ,
+        PosixFilePermission.OWNER_EXECUTE,
+        PosixFilePermission.OWNER_WRITE,
+        PosixFilePermission.OWNER_READ
+    };
+
+    private final Path destination;
+    private final Path javaExecutable;
+    private final Map<Path, Integer> directoryModes = new LinkedHashMap<>();
+    private Optional<Path> javaHome = Optional.empty();
+
+    private JdkArchiveExtractor(Path destination) {
+        this.destination = destination.toAbsolutePath().normalize();
+        this.javaExecutable = Paths.get("bin", SystemTools.java());
+    }
+
+    /**
+     * Extracts {@code archive} into {@code destination} and returns the java home found in it.
+     */
+    static Path extract(Extension extension, Path archive, Path destination) {
+        return extract(archive.toString(), destination, extractor -> extractor.extractArchive(extension, archive));
+    }
+
+    /**
+     * Extracts the tar.gz archive read from {@code content} into {@code destination} as it is read, e.g. while it
+     * downloads, and returns the java home found in it. Zip archives cannot be extracted this way, as their central
+     * directory is at their end.
+     */
+    static Path extractTarGz(InputStream content, Path destination) {
+        return extract("the JDK archive", destination, extractor -> extractor.extractTarGz(content));
+    }
+
+    private static Path extract(String source, Path destination, Extraction extraction) {
+        JdkArchiveExtractor extractor = new JdkArchiveExtractor(destination);
+        try {
+            Files.createDirectories(extractor.destination);
+            extraction.extractInto(extractor);
+            extractor.applyDirectoryModes();
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to extract %s into %s", source, destination), e);
+        }
+        return extractor.javaHome.orElseThrow(() -> new RuntimeException("Failed to find java home in " + destination));
+    }
+
+    private void extractArchive(Extension extension, Path archive) throws IOException {
+        switch (extension) {
+            case TARGZ:
+                try (InputStream fileStream = new BufferedInputStream(Files.newInputStream(archive), 64 * 1024)) {
+                    extractTarGz(fileStream);
+                }
+                return;
+            case ZIP:
+                extractZip(archive);
+                return;
+        }
+
+        throw new UnsupportedOperationException("Unknown case " + extension);
+    }
+
+    private void extractTarGz(InputStream content) throws IOException {
+        try (TarArchiveInputStream tarStream =
+                new TarArchiveInputStream(new GzipCompressorInputStream(content, true))) {
+            TarArchiveEntry entry;
+            while ((entry = tarStream.getNextEntry()) != null) {
+                Path target = resolve(entry.getName());
+                if (entry.isDirectory()) {
+                    createDirectory(target);
+                    directoryModes.put(target, entry.getMode());
+                } else if (entry.isSymbolicLink()) {
+                    createSymbolicLink(target, entry.getLinkName());
+                } else if (entry.isLink()) {
+                    createHardLink(target, resolveLinkSource(entry.getLinkName()));
+                } else if (entry.isFile()) {
+                    writeFile(target, tarStream, entry.getMode());
+                }
+            }
+        }
+    }
+
+    private void extractZip(Path archive) throws IOException {
+        try (ZipFile zipFile = ZipFile.builder().setPath(archive).get()) {
+            for (ZipArchiveEntry entry : Collections.list(zipFile.getEntriesInPhysicalOrder())) {
+                Path target = resolve(entry.getName());
+                if (entry.isDirectory()) {
+                    createDirectory(target);
+                    directoryModes.put(target, entry.getUnixMode());
+                } else if (entry.isUnixSymlink()) {
+                    createSymbolicLink(target, zipFile.getUnixSymlink(entry));
+                } else {
+                    try (InputStream entryStream = zipFile.getInputStream(entry)) {
+                        writeFile(target, entryStream, entry.getUnixMode());
+                    }
+                }
+            }
+        }
+    }
+
+    private Path resolve(String entryName) {
+        Path target = destination.resolve(entryName).normalize();
+        if (!target.startsWith(destination)) {
+            throw new RuntimeException(String.format("Archive entry %s is outside of %s", entryName, destination));
+        }
+        // a symlink extracted earlier must not redirect the entry outside of the destination
+        Path relative = destination.relativize(target);
+        Path parent = destination;
+        for (int i = 0; i < relative.getNameCount() - 1; i++) {
+            parent = parent.resolve(relative.getName(i));
+            if (Files.isSymbolicLink(parent)) {
+                throw new RuntimeException(
+                        String.format("Archive entry %s would be written through the symlink %s", entryName, parent));
+            }
+        }
+        return target;
+    }
+
+    private Path resolveLinkSource(String entryName) {
+        Path source = resolve(entryName);
+        if (Files.isSymbolicLink(source)) {
+            throw new RuntimeException(String.format("Archive hard link source %s is a symlink", entryName));
+        }
+        return source;
+    }
+
+    private static void createDirectory(Path target) throws IOException {
+        if (Files.isSymbolicLink(target)) {
+            throw new RuntimeException(String.format("Archive directory %s is an extracted symlink", target));
+        }
+        Files.createDirectories(target);
+    }
+
+    private void writeFile(Path target, InputStream content, int mode) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.copy(content, target, StandardCopyOption.REPLACE_EXISTING);
+        setMode(target, mode);
+        maybeRecordJavaHome(target);
+    }
+
+    private void createSymbolicLink(Path target, String linkTarget) throws IOException {
+        Path link = Paths.get(linkTarget);
+        if (!target.getParent().resolve(link).normalize().startsWith(destination)) {
+            throw new RuntimeException(
+                    String.format("Archive symlink %s -> %s points outside of %s", target, linkTarget, destination));
+        }
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        Files.createSymbolicLink(target, link);
+    }
+
+    private void createHardLink(Path target, Path existing) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, existing);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(existing, target, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        maybeRecordJavaHome(target);
+    }
+
+    private void maybeRecordJavaHome(Path file) {
+        // macos JDKs have a `bin/java` symlink to `Contents/Home/bin/java`, symlinks never get here
+        if (!file.endsWith(javaExecutable)) {
+            return;
+        }
+        // JAVA_HOME/bin/java -> JAVA_HOME
+        Path candidate = file.getParent().getParent();
+        // prefer the outermost java home, e.g. `jdk/bin/java` over `jdk/jre/bin/java`
+        if (javaHome.isEmpty() || candidate.getNameCount() < javaHome.get().getNameCount()) {
+            javaHome = Optional.of(candidate);
+        }
+    }
+
+    private void applyDirectoryModes() throws IOException {
+        // Applied last, in reverse order, so that read-only directories do not prevent extracting their contents
+        List<Map.Entry<Path, Integer>> directories = new ArrayList<>(directoryModes.entrySet());
+        Collections.reverse(directories);
+        for (Map.Entry<Path, Integer> directory : directories) {
+            // the directory might have been replaced by a symlink, whose target must not be changed
+            if (Files.isSymbolicLink(directory.getKey())) {
+                continue;
+            }
+            setMode(directory.getKey(), directory.getValue());
+        }
+    }
+
+    private static void setMode(Path path, int mode) throws IOException {
+        if (!SUPPORTS_POSIX || (mode & 0777) == 0) {
+            return;
+        }
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (int bit = 0; bit < PERMISSION_BITS.length; bit++) {
+            if ((mode & (1 << bit)) != 0) {
+                permissions.add(PERMISSION_BITS[bit]);
+            }
+        }
+        Files.setPosixFilePermissions(path, permissions);
+    }
+
+    private interface Extraction {
+        void extractInto(JdkArchiveExtractor extractor) throws IOException;
+    }
+}
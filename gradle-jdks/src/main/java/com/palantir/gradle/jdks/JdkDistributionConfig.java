@@ -18,6 +18,7 @@ package com.palantir.gradle.jdks;
 
 import com.palantir.gradle.jdks.setup.common.Arch;
 import com.palantir.gradle.jdks.setup.common.Os;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 
@@ -34,4 +35,7 @@ public interface JdkDistributionConfig {
 
     @Input
     Property<Arch> getArch();
+
+    @Input
+    ListProperty<String> getDaemonJvmArgs();
 }
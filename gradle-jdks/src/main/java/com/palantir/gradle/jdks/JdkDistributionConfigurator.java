@@ -18,13 +18,14 @@ package com.palantir.gradle.jdks;
 
 import com.palantir.gradle.jdks.setup.common.Arch;
 import com.palantir.gradle.jdks.setup.common.Os;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.gradle.api.JavaVersion;
 import org.gradle.api.Project;
 import org.gradle.api.logging.Logger;
@@ -36,17 +37,29 @@ public final class JdkDistributionConfigurator {
     private static Logger logger = Logging.getLogger(JdkDistributionConfigurator.class);
     private static final JavaLanguageVersion MINIMUM_SUPPORTED_JAVA_VERSION = JavaLanguageVersion.of(11);
 
+    /**
+     * Resolves the JDK of every OS and arch of every configured java version. Only the versions of the {@code jdk(...)}
+     * blocks are looked up, unless {@link JdksExtension#jdks(JdksExtension.LazyJdks)} is used, as it can configure any
+     * version: every version is then looked up, but only the ones it configures are resolved. The result is computed
+     * once per build and shared by the tasks using it, see {@link JdksExtension#javaVersionToJdkDistros}.
+     */
     public static Map<JavaLanguageVersion, List<JdkDistributionConfig>> getJavaVersionToJdkDistros(
             Project project, JdkDistributions jdkDistributions, JdksExtension jdksExtension) {
         Set<JavaLanguageVersion> javaVersions = Arrays.stream(JavaVersion.values())
                 .map(javaVersion -> JavaLanguageVersion.of(javaVersion.getMajorVersion()))
                 .filter(javaLanguageVersion -> javaLanguageVersion.canCompileOrRun(MINIMUM_SUPPORTED_JAVA_VERSION))
                 .collect(Collectors.toSet());
-        return javaVersions.stream()
-                .collect(Collectors.toMap(
-                        javaVersion -> javaVersion,
-                        javaVersion ->
-                                getJdkDistributionConfigs(project, jdkDistributions, javaVersion, jdksExtension)));
+        jdksExtension.explicitlyConfiguredJavaVersions().ifPresent(javaVersions::retainAll);
+        Map<JavaLanguageVersion, List<JdkDistributionConfig>> javaVersionToJdkDistros = new HashMap<>();
+        for (JavaLanguageVersion javaVersion : javaVersions) {
+            List<JdkDistributionConfig> jdkDistributionConfigs =
+                    getJdkDistributionConfigs(project, jdkDistributions, javaVersion, jdksExtension);
+            // the versions that are not configured are left out, rather than mapped to no JDKs
+            if (!jdkDistributionConfigs.isEmpty()) {
+                javaVersionToJdkDistros.put(javaVersion, jdkDistributionConfigs);
+            }
+        }
+        return javaVersionToJdkDistros;
     }
 
     private static List<JdkDistributionConfig> getJdkDistributionConfigs(
@@ -54,37 +67,41 @@ public final class JdkDistributionConfigurator {
             JdkDistributions jdkDistributions,
             JavaLanguageVersion javaVersion,
             JdksExtension jdksExtension) {
-        return Arrays.stream(Os.values())
-                .flatMap(os -> Arrays.stream(Arch.values())
-                        .flatMap(arch -> getJdkDistributionConfig(
-                                project, jdkDistributions, os, arch, javaVersion, jdksExtension)))
-                .collect(Collectors.toList());
+        Optional<JdkExtension> jdkExtension = jdksExtension.jdkFor(javaVersion, project);
+        if (jdkExtension.isEmpty()) {
+            logger.debug("Skipping JDK distribution for javaVersion={} as it is not configured", javaVersion);
+            return List.of();
+        }
+        List<JdkDistributionConfig> jdkDistributionConfigs = new ArrayList<>();
+        for (Os os : Os.values()) {
+            for (Arch arch : Arch.values()) {
+                getJdkDistributionConfig(
+                                project, jdkDistributions, os, arch, javaVersion, jdksExtension, jdkExtension.get())
+                        .ifPresent(jdkDistributionConfigs::add);
+            }
+        }
+        return jdkDistributionConfigs;
     }
 
-    private static Stream<JdkDistributionConfig> getJdkDistributionConfig(
+    private static Optional<JdkDistributionConfig> getJdkDistributionConfig(
             Project project,
             JdkDistributions jdkDistributions,
             Os os,
             Arch arch,
             JavaLanguageVersion javaVersion,
-            JdksExtension jdksExtension) {
-        Optional<JdkExtension> jdkExtension = jdksExtension.jdkFor(javaVersion, project);
-        if (jdkExtension.isEmpty()) {
-            logger.debug("Skipping JDK distribution for javaVersion={} as it is not configured", javaVersion);
-            return Stream.empty();
-        }
-        Optional<String> jdkVersion = Optional.ofNullable(
-                jdkExtension.get().jdkFor(os).jdkFor(arch).getJdkVersion().getOrNull());
+            JdksExtension jdksExtension,
+            JdkExtension jdkExtension) {
+        JdkOsArchExtension jdkOsArchExtension = jdkExtension.jdkFor(os).jdkFor(arch);
+        Optional<String> jdkVersion = Optional.ofNullable(jdkOsArchExtension.getJdkVersion().getOrNull());
         if (jdkVersion.isEmpty()) {
             logger.debug(
                     "Skipping JDK distribution for os={} arch={} javaVersion={} as it is not configured",
                     os,
                     arch,
                     javaVersion);
-            return Stream.empty();
+            return Optional.empty();
         }
-        JdkDistributionName jdkDistributionName =
-                jdkExtension.get().getDistributionName().get();
+        JdkDistributionName jdkDistributionName = jdkExtension.getDistributionName().get();
         JdkRelease jdkRelease =
                 JdkRelease.builder().arch(arch).os(os).version(jdkVersion.get()).build();
         JdkDistributionConfig jdkDistribution = project.getObjects().newInstance(JdkDistributionConfig.class);
@@ -102,7 +119,8 @@ public final class JdkDistributionConfigurator {
                         jdkPath.filename(),
                         jdkPath.extension()));
         jdkDistribution.getLocalPath().set(String.format("%s-%s", jdkDistributionName, jdkVersion.get()));
-        return Stream.of(jdkDistribution);
+        jdkDistribution.getDaemonJvmArgs().set(jdkOsArchExtension.getDaemonJvmArgs());
+        return Optional.of(jdkDistribution);
     }
 
     private JdkDistributionConfigurator() {}
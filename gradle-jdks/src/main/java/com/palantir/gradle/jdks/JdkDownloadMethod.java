@@ -0,0 +1,38 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.palantir.gradle.jdks.setup.common.UiNames;
+
+/**
+ * How {@link JdkDownloader} downloads the JDK archives: {@code gradle} resolves them from an ivy repository, using
+ * the Gradle dependency cache, while {@code http} uses the ranged parallel segments of
+ * {@link com.palantir.gradle.jdks.setup.HttpDownloader}, which resumes interrupted downloads.
+ */
+public enum JdkDownloadMethod {
+    GRADLE,
+    HTTP;
+
+    @Override
+    public String toString() {
+        return UiNames.uiName(this);
+    }
+
+    public static JdkDownloadMethod fromStringThrowing(String uiName) {
+        return UiNames.fromStringThrowing(JdkDownloadMethod.class, values(), uiName);
+    }
+}
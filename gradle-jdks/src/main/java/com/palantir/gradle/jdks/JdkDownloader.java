@@ -16,19 +16,36 @@
 
 package com.palantir.gradle.jdks;
 
+import com.palantir.gradle.jdks.setup.HttpDownloader;
+import com.palantir.gradle.jdks.setup.JdkArchiveCache;
+import java.net.URI;
 import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.Configuration;
 import org.gradle.api.artifacts.repositories.IvyArtifactRepository.MetadataSources;
+import org.gradle.api.logging.LogLevel;
 
 final class JdkDownloader {
 
     private final Project project;
     private final String jdkGroup;
+    private final String jdkBaseUrl;
+    private final JdkDownloadMethod downloadMethod;
+    private final int downloadConnections;
 
-    JdkDownloader(Project project, JdkDistributionName jdkDistributionName, String jdkBaseUrl) {
+    JdkDownloader(
+            Project project,
+            JdkDistributionName jdkDistributionName,
+            String jdkBaseUrl,
+            JdkDownloadMethod downloadMethod,
+            int downloadConnections) {
         this.project = project;
         this.jdkGroup = jdkDistributionName.uiName() + "-jdk";
+        this.jdkBaseUrl = jdkBaseUrl;
+        this.downloadMethod = downloadMethod;
+        this.downloadConnections = downloadConnections;
 
         project.getRepositories().ivy(ivy -> {
             ivy.setName(jdkGroup);
@@ -41,7 +58,95 @@ final class JdkDownloader {
         });
     }
 
+    /**
+     * Returns the JDK archive from the archive cache shared with the gradle-jdks-setup installer, downloading it on a
+     * miss. Only the {@code http} download method adds it to the cache, as Gradle already keeps the archives it
+     * resolves in its own dependency cache.
+     */
     public Path downloadJdkPath(JdkPath jdKPath) {
+        String extension = jdKPath.extension().toString();
+        String url = jdkUrl(jdKPath);
+        Optional<JdkArchiveCache> archiveCache = archiveCache();
+        Optional<Path> cachedArchive = archiveCache.flatMap(cache -> cache.get(url, extension));
+        if (cachedArchive.isPresent()) {
+            return cachedArchive.get();
+        }
+        switch (downloadMethod) {
+            case GRADLE:
+                return resolveJdkPath(jdKPath);
+            case HTTP:
+                Path destination = httpDownloadPath(url, extension, archiveCache);
+                String sha256 = httpDownloader().download(URI.create(url), destination);
+                return archiveCache
+                        .map(cache -> cache.putDownloaded(url, extension, destination, sha256))
+                        .orElse(destination);
+        }
+        throw new IllegalStateException("Unknown download method " + downloadMethod);
+    }
+
+    /**
+     * Unpacks the JDK archive into {@code destination} and returns its java home. With the {@code http} download
+     * method, a tar.gz archive missing from the archive cache is extracted while it downloads, rather than once it is
+     * completely downloaded, and still added to the cache. Zip archives are always downloaded completely first, as
+     * their central directory is at their end.
+     */
+    public Path unpackJdk(JdkPath jdKPath, Path destination) {
+        String extension = jdKPath.extension().toString();
+        String url = jdkUrl(jdKPath);
+        Optional<JdkArchiveCache> archiveCache = archiveCache();
+        Optional<Path> cachedArchive = archiveCache.flatMap(cache -> cache.get(url, extension));
+        if (cachedArchive.isPresent()) {
+            return JdkArchiveExtractor.extract(jdKPath.extension(), cachedArchive.get(), destination);
+        }
+        if (downloadMethod != JdkDownloadMethod.HTTP || jdKPath.extension() != JdkPath.Extension.TARGZ) {
+            return JdkArchiveExtractor.extract(jdKPath.extension(), downloadJdkPath(jdKPath), destination);
+        }
+        Path download = httpDownloadPath(url, extension, archiveCache);
+        AtomicReference<Path> javaHome = new AtomicReference<>();
+        String sha256 = httpDownloader()
+                .download(
+                        URI.create(url),
+                        download,
+                        content -> javaHome.set(JdkArchiveExtractor.extractTarGz(content, destination)));
+        if (archiveCache.isPresent()) {
+            archiveCache.get().putDownloaded(url, extension, download, sha256);
+        } else {
+            // only kept to be resumed if the download is interrupted
+            project.delete(delete -> delete.delete(download.toFile()));
+        }
+        return javaHome.get();
+    }
+
+    private String jdkUrl(JdkPath jdKPath) {
+        return String.format("%s/%s.%s", jdkBaseUrl, jdKPath.filename(), jdKPath.extension());
+    }
+
+    private Optional<JdkArchiveCache> archiveCache() {
+        return JdkArchiveCache.forGradleUserHome(
+                project.getGradle().getGradleUserHomeDir().toPath());
+    }
+
+    private HttpDownloader httpDownloader() {
+        return new HttpDownloader(new GradleLogger(project.getLogger(), LogLevel.INFO), downloadConnections);
+    }
+
+    /**
+     * Downloads are written next to the archive cache, such that they are moved into it without being copied, or into
+     * {@code $GRADLE_USER_HOME/gradle-jdks/downloads} when the cache is disabled. Either path is stable across builds,
+     * such that an interrupted download is resumed.
+     */
+    private Path httpDownloadPath(String url, String extension, Optional<JdkArchiveCache> archiveCache) {
+        return archiveCache
+                .map(cache -> cache.downloadPath(url, extension))
+                .orElseGet(() -> project.getGradle()
+                        .getGradleUserHomeDir()
+                        .toPath()
+                        .resolve("gradle-jdks")
+                        .resolve("downloads")
+                        .resolve(JdkArchiveCache.archiveFileName(url, extension)));
+    }
+
+    private Path resolveJdkPath(JdkPath jdKPath) {
         Configuration configuration = project.getConfigurations()
                 .detachedConfiguration(project.getDependencies()
                         .create(String.format("%s:%s:@%s", jdkGroup, jdKPath.filename(), jdKPath.extension())));
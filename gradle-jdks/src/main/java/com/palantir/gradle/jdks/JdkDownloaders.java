@@ -42,7 +42,9 @@ final class JdkDownloaders {
                         jdksExtension
                                 .jdkDistributionFor(jdkDistributionName)
                                 .getBaseUrl()
-                                .get()));
+                                .get(),
+                        jdksExtension.getDownloadMethod().get(),
+                        jdksExtension.getDownloadConnections().get()));
     }
 
     @Value.Immutable
@@ -23,6 +23,7 @@ import java.util.Map;
 import javax.inject.Inject;
 import org.gradle.api.Action;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 
 public abstract class JdkExtension {
@@ -31,6 +32,12 @@ public abstract class JdkExtension {
 
     public abstract Property<JdkDistributionName> getDistributionName();
 
+    /**
+     * The JVM arguments of the Gradle daemon when it runs on this JDK, e.g. its GC or heap ratio, which the Gradle JDK
+     * setup appends to the {@code org.gradle.jvmargs} of {@code gradle.properties}. Can be overridden per OS and arch.
+     */
+    public abstract ListProperty<String> getDaemonJvmArgs();
+
     private final Map<Os, JdkOsExtension> jdkOsExtensions = new HashMap<>();
 
     @Inject
@@ -40,6 +47,7 @@ public abstract class JdkExtension {
         for (Os os : Os.values()) {
             JdkOsExtension jdkOsExtension = getObjectFactory().newInstance(JdkOsExtension.class);
             jdkOsExtension.getJdkVersion().set(getJdkVersion());
+            jdkOsExtension.getDaemonJvmArgs().set(getDaemonJvmArgs());
             jdkOsExtensions.put(os, jdkOsExtension);
         }
     }
@@ -18,36 +18,52 @@ package com.palantir.gradle.jdks;
 
 import com.google.common.io.Closer;
 import com.google.common.util.concurrent.Striped;
-import com.palantir.gradle.jdks.JdkPath.Extension;
+import com.palantir.gradle.jdks.setup.common.JdkInstallationUsage;
+import com.palantir.gradle.jdks.setup.common.LockFiles;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
-import java.nio.channels.FileChannel;
+import java.io.OutputStream;
 import java.nio.channels.FileLock;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import org.gradle.api.Project;
 import org.gradle.api.file.Directory;
-import org.gradle.api.file.DuplicatesStrategy;
-import org.gradle.api.file.FileTree;
 import org.gradle.api.provider.Provider;
-import org.gradle.process.ExecResult;
 
 public final class JdkManager {
 
+    /**
+     * Written last into every installation, recording its number of files and bytes, such that an installation that
+     * was interrupted, or lost files to a tmp cleaner before it was complete, is installed again rather than trusted
+     * because its directory exists. Checking the marker is a single stat, the files are only counted when writing it.
+     */
+    static final String COMPLETE_MARKER = ".gradle-jdks-complete";
+
     private final Provider<Directory> storageLocation;
     private final JdkDistributions jdkDistributions;
     private final JdkDownloaders jdkDownloaders;
+    // every provider query rebuilds the JdkSpec, the installation is only resolved once per build
+    private final ConcurrentMap<JdkSpec, Path> installedJdks = new ConcurrentHashMap<>();
 
     JdkManager(Provider<Directory> storageLocation, JdkDistributions jdkDistributions, JdkDownloaders jdkDownloaders) {
         this.storageLocation = storageLocation;
@@ -56,6 +72,16 @@ public final class JdkManager {
     }
 
     public Path jdk(Project project, JdkSpec jdkSpec) {
+        Path installedJdk = installedJdks.get(jdkSpec);
+        if (installedJdk != null) {
+            return installedJdk;
+        }
+        Path diskPath = install(project, jdkSpec);
+        installedJdks.putIfAbsent(jdkSpec, diskPath);
+        return diskPath;
+    }
+
+    private Path install(Project project, JdkSpec jdkSpec) {
         Path diskPath = storageLocation
                 .get()
                 .getAsFile()
@@ -70,68 +96,100 @@ public final class JdkManager {
                         jdkSpec.release().version(),
                         jdkSpec.consistentShortHash());
 
-        if (Files.exists(diskPath)) {
+        if (Files.exists(diskPath.resolve(COMPLETE_MARKER))) {
             project.getLogger()
                     .debug(
                             "JDK {} {} ({}) has already been unpacked",
                             jdkSpec.distributionName(),
                             jdkSpec.release().version(),
                             jdkSpec.consistentShortHash());
+            JdkInstallationUsage.markUsed(diskPath);
             return diskPath;
         }
 
-        project.getLogger()
-                .info(
-                        "Preparing to install JDK {} {} ({}) into {}",
-                        jdkSpec.distributionName(),
-                        jdkSpec.release().version(),
-                        jdkSpec.consistentShortHash(),
-                        diskPath);
-
-        JdkPath jdkPath = jdkDistributions.get(jdkSpec.distributionName()).path(jdkSpec.release());
-        Path jdkArchive = jdkDownloaders
-                .jdkDownloaderFor(project, jdkSpec.distributionName())
-                .downloadJdkPath(jdkPath);
-
         Path temporaryJdkPath = diskPath.getParent()
                 .resolve(diskPath.getFileName() + ".in-progress-"
                         + UUID.randomUUID().toString().substring(0, 8));
         try (PathLock ignored = new PathLock(diskPath)) {
-            // double-check, now that we hold the lock
-            if (Files.exists(diskPath)) {
+            // double-check, now that we hold the lock, such that no other process is installing or replacing the JDK
+            Completeness completeness = completeness(diskPath);
+            if (completeness == Completeness.COMPLETE) {
                 project.getLogger()
                         .info(
                                 "JDK {} {} ({}) was installed while this task waited for the lock",
                                 jdkSpec.distributionName(),
                                 jdkSpec.release().version(),
                                 jdkSpec.consistentShortHash());
+                JdkInstallationUsage.markUsed(diskPath);
                 return diskPath;
             }
+            if (completeness == Completeness.UNMARKED) {
+                // installed before the markers existed, and possibly used by running daemons, hence kept
+                project.getLogger()
+                        .info(
+                                "Adopting JDK {} {} ({}) in {}",
+                                jdkSpec.distributionName(),
+                                jdkSpec.release().version(),
+                                jdkSpec.consistentShortHash(),
+                                diskPath);
+                adopt(project, diskPath);
+                JdkInstallationUsage.markUsed(diskPath);
+                return diskPath;
+            }
+            if (completeness == Completeness.INCOMPLETE) {
+                project.getLogger()
+                        .warn(
+                                "JDK {} {} ({}) in {} is incomplete, installing it again",
+                                jdkSpec.distributionName(),
+                                jdkSpec.release().version(),
+                                jdkSpec.consistentShortHash(),
+                                diskPath);
+                deleteIncomplete(project, diskPath);
+            }
             project.getLogger()
                     .info(
-                            "Unpacking JDK {} {} ({}) into {}",
+                            "Preparing to install JDK {} {} ({}) into {}",
                             jdkSpec.distributionName(),
                             jdkSpec.release().version(),
                             jdkSpec.consistentShortHash(),
-                            temporaryJdkPath);
-            project.copy(copy -> {
-                copy.from(unpackTree(project, jdkPath.extension(), jdkArchive));
-                copy.into(temporaryJdkPath);
-                copy.setDuplicatesStrategy(DuplicatesStrategy.WARN);
-            });
-
-            Path javaHome = findJavaHome(temporaryJdkPath);
+                            diskPath);
+            JdkPath jdkPath = jdkDistributions.get(jdkSpec.distributionName()).path(jdkSpec.release());
+            // only downloaded if the JDK release is not in the JDK store yet
+            Function<Path, Path> unpackJdk = destination -> jdkDownloaders
+                    .jdkDownloaderFor(project, jdkSpec.distributionName())
+                    .unpackJdk(jdkPath, destination);
+            Path javaHome;
+            if (JdkStore.isSupported()) {
+                project.getLogger()
+                        .info(
+                                "Assembling JDK {} {} ({}) from the JDK store into {}",
+                                jdkSpec.distributionName(),
+                                jdkSpec.release().version(),
+                                jdkSpec.consistentShortHash(),
+                                temporaryJdkPath);
+                JdkStore.in(diskPath.getParent()).assemble(releaseKey(jdkSpec), unpackJdk, temporaryJdkPath);
+                javaHome = temporaryJdkPath;
+            } else {
+                project.getLogger()
+                        .info(
+                                "Unpacking JDK {} {} ({}) into {}",
+                                jdkSpec.distributionName(),
+                                jdkSpec.release().version(),
+                                jdkSpec.consistentShortHash(),
+                                temporaryJdkPath);
+                javaHome = unpackJdk.apply(temporaryJdkPath);
+            }
 
-            jdkSpec.caCerts().caCerts().forEach((name, caCertFile) -> {
+            if (!jdkSpec.caCerts().caCerts().isEmpty()) {
                 project.getLogger()
                         .info(
-                                "Installing certificate {} into JDK {} {} ({})",
-                                name,
+                                "Installing certificates {} into JDK {} {} ({})",
+                                jdkSpec.caCerts().caCerts().keySet(),
                                 jdkSpec.distributionName(),
                                 jdkSpec.release().version(),
                                 jdkSpec.consistentShortHash());
-                addCaCert(project, javaHome, name, caCertFile);
-            });
+                addCaCerts(javaHome, jdkSpec.caCerts().caCerts());
+            }
 
             project.getLogger()
                     .info(
@@ -141,7 +199,9 @@ public final class JdkManager {
                             jdkSpec.consistentShortHash(),
                             javaHome,
                             diskPath);
+            writeCompleteMarker(javaHome);
             moveJavaHome(javaHome, diskPath);
+            JdkInstallationUsage.markUsed(diskPath);
             return diskPath;
         } catch (IOException e) {
             throw new RuntimeException("Locking failed", e);
@@ -152,6 +212,89 @@ public final class JdkManager {
         }
     }
 
+    private enum Completeness {
+        ABSENT,
+        COMPLETE,
+        // has a java executable, but was installed by an older version without the complete marker
+        UNMARKED,
+        INCOMPLETE
+    }
+
+    /**
+     * Only ever reads the complete marker, never the installation files, such that a marked installation, which might
+     * be used by running daemons, is never replaced.
+     */
+    private static Completeness completeness(Path diskPath) {
+        if (Files.exists(diskPath.resolve(COMPLETE_MARKER))) {
+            return Completeness.COMPLETE;
+        }
+        if (!Files.exists(diskPath)) {
+            return Completeness.ABSENT;
+        }
+        return Files.isRegularFile(diskPath.resolve("bin").resolve(SystemTools.java()))
+                ? Completeness.UNMARKED
+                : Completeness.INCOMPLETE;
+    }
+
+    /**
+     * Marks an unmarked installation as complete, such that later builds take the fast path. Its marker is empty, as
+     * its files were not counted after unpacking. This is best effort, as the installation might be read-only, in which
+     * case it is still used, but adopted again by every build.
+     */
+    private static void adopt(Project project, Path diskPath) {
+        try {
+            Files.writeString(diskPath.resolve(COMPLETE_MARKER), "", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            project.getLogger().info("Could not write the complete marker into {}", diskPath, e);
+        }
+    }
+
+    private static void writeCompleteMarker(Path javaHome) throws IOException {
+        Files.writeString(javaHome.resolve(COMPLETE_MARKER), fileCounts(javaHome), StandardCharsets.UTF_8);
+    }
+
+    /** The number of files and bytes of the installation, recorded by its complete marker for troubleshooting. */
+    private static String fileCounts(Path javaHome) throws IOException {
+        Path marker = javaHome.resolve(COMPLETE_MARKER);
+        long files = 0;
+        long bytes = 0;
+        try (Stream<Path> paths = Files.walk(javaHome)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!path.equals(marker) && Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+                    files++;
+                    bytes += Files.size(path);
+                }
+            }
+        }
+        return String.format("files=%d%nbytes=%d%n", files, bytes);
+    }
+
+    /**
+     * Moves the incomplete installation out of the way, such that it can be replaced atomically. It is named like the
+     * leftovers of {@code pruneJdks}, which deletes it if it cannot be deleted now, e.g. due to read-only directories.
+     */
+    private static void deleteIncomplete(Project project, Path diskPath) throws IOException {
+        Path incomplete = diskPath.resolveSibling("." + diskPath.getFileName() + ".pruned-"
+                + UUID.randomUUID().toString().substring(0, 8));
+        Files.move(diskPath, incomplete, StandardCopyOption.ATOMIC_MOVE);
+        try {
+            project.delete(delete -> {
+                delete.delete(incomplete.toFile());
+            });
+        } catch (RuntimeException e) {
+            project.getLogger().info("Could not delete {}, pruneJdks will delete it", incomplete, e);
+        }
+    }
+
+    /** Identifies the JDK release regardless of the CA certificates, which are the only per installation files. */
+    private static String releaseKey(JdkSpec jdkSpec) {
+        JdkSpec withoutCaCerts =
+                JdkSpec.builder().from(jdkSpec).caCerts(CaCerts.from(Map.of())).build();
+        return String.format(
+                "%s-%s-%s",
+                jdkSpec.distributionName(), jdkSpec.release().version(), withoutCaCerts.consistentShortHash());
+    }
+
     private static void moveJavaHome(Path temporaryJavaHome, Path permanentJavaHome) {
         try {
             // Attempt an atomic move first to avoid broken partial states.
@@ -178,62 +321,37 @@ public final class JdkManager {
         }
     }
 
-    private FileTree unpackTree(Project project, Extension extension, Path path) {
-        switch (extension) {
-            case ZIP:
-                return project.zipTree(path.toFile());
-            case TARGZ:
-                return project.tarTree(path.toFile());
-        }
-
-        throw new UnsupportedOperationException("Unknown case " + extension);
-    }
-
-    private Path findJavaHome(Path temporaryJdkPath) {
-        try (Stream<Path> files = Files.walk(temporaryJdkPath)) {
-            return files.filter(file -> Files.isRegularFile(file)
-                            // macos JDKs have a `bin/java` symlink to `Contents/Home/bin/java`
-                            && !Files.isSymbolicLink(file)
-                            && file.endsWith(Paths.get("bin", SystemTools.java())))
-                    .findFirst()
-                    // JAVA_HOME/bin/java
-                    .orElseThrow(() -> new RuntimeException("Failed to find java home in " + temporaryJdkPath))
-                    // JAVA_HOME/bin
-                    .getParent()
-                    // JAVA_HOME
-                    .getParent();
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to find java home in " + temporaryJdkPath, e);
+    /**
+     * Imports all the certificates into the JDK truststore with a single load and store of the keystore, rather than
+     * forking {@code keytool} once per certificate.
+     */
+    private static void addCaCerts(Path javaHome, Map<String, String> caCerts) {
+        char[] password = "changeit".toCharArray();
+        Path cacerts = javaHome.resolve("lib/security/cacerts");
+        try {
+            // The keystore type is probed, as the truststore of newer JDKs is PKCS12 rather than JKS
+            KeyStore keyStore = KeyStore.getInstance(cacerts.toFile(), password);
+            CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+            for (Map.Entry<String, String> caCert : caCerts.entrySet()) {
+                keyStore.setCertificateEntry(caCert.getKey(), parseCertificate(certificateFactory, caCert));
+            }
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(cacerts))) {
+                keyStore.store(output, password);
+            }
+        } catch (KeyStoreException | CertificateException | IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(
+                    String.format("Failed to add ca certs %s to java installation at '%s'", caCerts.keySet(), javaHome),
+                    e);
         }
     }
 
-    private void addCaCert(Project project, Path javaHome, String alias, String caCert) {
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-
-        ExecResult keytoolResult = project.exec(exec -> {
-            exec.setCommandLine(
-                    Paths.get("bin", SystemTools.keytool()).toString(),
-                    "-import",
-                    "-trustcacerts",
-                    "-alias",
-                    alias,
-                    "-cacerts",
-                    "-storepass",
-                    "changeit",
-                    "-noprompt");
-
-            exec.environment("JAVA_HOME", javaHome);
-            exec.setWorkingDir(javaHome);
-            exec.setStandardInput(new ByteArrayInputStream(caCert.getBytes(StandardCharsets.UTF_8)));
-            exec.setStandardOutput(output);
-            exec.setErrorOutput(output);
-            exec.setIgnoreExitValue(true);
-        });
-
-        if (keytoolResult.getExitValue() != 0) {
-            throw new RuntimeException(String.format(
-                    "Failed to add ca cert '%s' to java installation at '%s'. Keytool output: %s\n\n",
-                    alias, javaHome, output.toString(StandardCharsets.UTF_8)));
+    private static Certificate parseCertificate(
+            CertificateFactory certificateFactory, Map.Entry<String, String> caCert) {
+        try {
+            return certificateFactory.generateCertificate(
+                    new ByteArrayInputStream(caCert.getValue().getBytes(StandardCharsets.UTF_8)));
+        } catch (CertificateException e) {
+            throw new RuntimeException(String.format("Failed to parse ca cert '%s'", caCert.getKey()), e);
         }
     }
 
@@ -244,22 +362,28 @@ public final class JdkManager {
      * POSIX file locks apply to a process, so within the process we must ensure synchronization
      * separately.
      */
-    private static final class PathLock implements Closeable {
+    static final class PathLock implements Closeable {
         private static final Striped<Lock> JVM_LOCKS = Striped.lock(16);
         private final Closer closer;
 
         PathLock(Path path) throws IOException {
+            this(path, JVM_LOCKS);
+        }
+
+        /**
+         * Locks nested within another {@link PathLock} must use their own {@code jvmLocks}, as two paths can share
+         * the same stripe, which could otherwise lead to lock-order deadlocks.
+         */
+        PathLock(Path path, Striped<Lock> jvmLocks) throws IOException {
             this.closer = Closer.create();
             try {
-                Lock jvmLock = JVM_LOCKS.get(path);
+                Lock jvmLock = jvmLocks.get(path);
                 jvmLock.lock();
                 closer.register(jvmLock::unlock);
                 Files.createDirectories(path.getParent());
-                FileChannel channel = closer.register(FileChannel.open(
-                        path.getParent().resolve(path.getFileName() + ".lock"),
-                        StandardOpenOption.CREATE,
-                        StandardOpenOption.WRITE));
-                FileLock fileLock = channel.lock();
+                // the lock file is deleted by pruneJdks while holding the lock
+                FileLock fileLock = LockFiles.lock(path.getParent().resolve(path.getFileName() + ".lock"));
+                closer.register(fileLock.channel());
                 closer.register(fileLock::close);
             } catch (Throwable t) {
                 closer.close();
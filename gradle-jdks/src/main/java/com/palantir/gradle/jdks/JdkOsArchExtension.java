@@ -17,11 +17,14 @@
 package com.palantir.gradle.jdks;
 
 import com.palantir.gradle.jdks.json.JdkOsArchInfoJson;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 
 public abstract class JdkOsArchExtension {
     public abstract Property<String> getJdkVersion();
 
+    public abstract ListProperty<String> getDaemonJvmArgs();
+
     public final void fromJson(JdkOsArchInfoJson archInfo) {
         getJdkVersion().set(archInfo.version());
     }
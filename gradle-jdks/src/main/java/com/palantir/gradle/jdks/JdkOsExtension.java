@@ -23,11 +23,14 @@ import java.util.Map;
 import javax.inject.Inject;
 import org.gradle.api.Action;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 
 public abstract class JdkOsExtension {
     public abstract Property<String> getJdkVersion();
 
+    public abstract ListProperty<String> getDaemonJvmArgs();
+
     @Inject
     protected abstract ObjectFactory getObjectFactory();
 
@@ -37,6 +40,7 @@ public abstract class JdkOsExtension {
         for (Arch arch : Arch.values()) {
             JdkOsArchExtension jdkOsArchExtension = getObjectFactory().newInstance(JdkOsArchExtension.class);
             jdkOsArchExtension.getJdkVersion().set(getJdkVersion());
+            jdkOsArchExtension.getDaemonJvmArgs().set(getDaemonJvmArgs());
             jdkOsArchExtensions.put(arch, jdkOsArchExtension);
         }
     }
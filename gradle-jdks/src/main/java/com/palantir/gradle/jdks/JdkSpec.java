@@ -22,6 +22,10 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import org.immutables.value.Value;
 
+/**
+ * The {@link #consistentShortHash()} is computed lazily, once per instance. The specs rebuilt for every project and
+ * provider query are only hashed once per build, as {@link JdkManager} memoizes their installation.
+ */
 @Value.Immutable
 public interface JdkSpec {
     JdkDistributionName distributionName();
@@ -30,6 +34,7 @@ public interface JdkSpec {
 
     CaCerts caCerts();
 
+    @Value.Lazy
     default String consistentShortHash() {
         String infoBlock = String.format(
                 String.join("\n", "Distribution: %s", "Version: %s", "Os: %s", "Arch: %s", "CaCerts: %s"),
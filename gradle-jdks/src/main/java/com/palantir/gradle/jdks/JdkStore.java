@@ -0,0 +1,434 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Closer;
+import com.google.common.io.MoreFiles;
+import com.google.common.util.concurrent.Striped;
+import com.palantir.gradle.jdks.setup.FileUtils;
+import com.palantir.gradle.jdks.setup.common.JdkInstallationUsage;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.logging.Logger;
+
+/**
+ * Content-addressed store of the files of the unpacked JDKs, kept in {@code <jdkStorageLocation>/.store}. JDK
+ * installations that only differ in their CA certificates share the same release, which is unpacked once: every file
+ * is stored once in {@code objects/} (keyed by its SHA-256 and POSIX permissions) and a manifest of the release's
+ * directories, files and symlinks is written to {@code manifests/}. Installations are then assembled by hardlinking
+ * the objects, except for the truststore which is copied, as it is modified per installation.
+ *
+ * <p>Ingestions and assemblies share the store lock, which pruning holds exclusively: an object is only collected while
+ * nothing can find it in the store and link it concurrently.
+ */
+final class JdkStore {
+
+    private static final String STORE_DIRECTORY = ".store";
+    private static final Striped<Lock> MANIFEST_LOCKS = Striped.lock(16);
+    private static final ConcurrentMap<Path, StoreLock> STORE_LOCKS = new ConcurrentHashMap<>();
+    private static final Path CACERTS = Paths.get("lib", "security", "cacerts");
+
+    /**
+     * Objects are only collected once they were last linked or stored a while ago, which keeps the objects of releases
+     * that were just pruned around for installations of the same release that are assembled shortly after.
+     */
+    private static final Duration MIN_OBJECT_AGE = Duration.ofDays(1);
+
+    private final Path jdkStorageLocation;
+    private final Path storeDirectory;
+    private final Path objectsDirectory;
+    private final Path manifestsDirectory;
+    private final Path temporaryDirectory;
+
+    private JdkStore(Path jdkStorageLocation, Path storeDirectory) {
+        this.jdkStorageLocation = jdkStorageLocation;
+        this.storeDirectory = storeDirectory;
+        this.objectsDirectory = storeDirectory.resolve("objects");
+        this.manifestsDirectory = storeDirectory.resolve("manifests");
+        this.temporaryDirectory = storeDirectory.resolve("tmp");
+    }
+
+    static boolean isSupported() {
+        // the objects are keyed by their POSIX permissions, as hardlinks share them
+        return FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+    }
+
+    static JdkStore in(Path jdkStorageLocation) {
+        return new JdkStore(jdkStorageLocation, jdkStorageLocation.resolve(STORE_DIRECTORY));
+    }
+
+    /**
+     * Assembles the java home of {@code releaseKey} into {@code destination}. The JDK is only unpacked, using
+     * {@code unpackJdk} which unpacks it into the given directory and returns its java home, if the release is not in
+     * the store yet.
+     */
+    void assemble(String releaseKey, Function<Path, Path> unpackJdk, Path destination) {
+        Path manifest = manifestsDirectory.resolve(releaseKey + ".manifest");
+        try {
+            Closeable storeLock = storeLock().lockShared();
+            try {
+                if (!Files.exists(manifest)) {
+                    JdkManager.PathLock manifestLock = new JdkManager.PathLock(manifest, MANIFEST_LOCKS);
+                    try {
+                        // double-check, now that we hold the lock
+                        if (!Files.exists(manifest)) {
+                            ingest(unpackJdk, manifest);
+                        }
+                    } finally {
+                        manifestLock.close();
+                    }
+                }
+                assembleFromManifest(manifest, destination);
+            } finally {
+                storeLock.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(
+                    String.format("Failed to assemble JDK %s from the store into %s", releaseKey, destination), e);
+        }
+    }
+
+    /**
+     * Deletes the releases that no installation of the JDK storage location was assembled from anymore, then the
+     * objects that are neither linked by an installation nor referenced by a remaining release.
+     */
+    void prune(Logger logger) {
+        if (!Files.isDirectory(manifestsDirectory)) {
+            return;
+        }
+        try {
+            Closeable storeLock = storeLock().lockExclusive();
+            try {
+                List<String> installations = listFileNames(jdkStorageLocation);
+                Set<String> manifestNames = new TreeSet<>();
+                for (String fileName : listFileNames(manifestsDirectory)) {
+                    manifestName(fileName).ifPresent(manifestNames::add);
+                }
+                for (String fileName : listFileNames(temporaryDirectory)) {
+                    manifestName(fileName).ifPresent(manifestNames::add);
+                }
+                Set<String> referencedObjects = new HashSet<>();
+                for (String manifestName : manifestNames) {
+                    Path manifest = manifestsDirectory.resolve(manifestName);
+                    JdkManager.PathLock manifestLock = new JdkManager.PathLock(manifest, MANIFEST_LOCKS);
+                    try {
+                        // left behind by an ingestion that was interrupted, as it holds the lock until it completes
+                        FileUtils.delete(manifestsDirectory.resolve(manifestName + ".tmp"));
+                        for (String unpackDirectory : listFileNames(temporaryDirectory)) {
+                            if (unpackDirectory.startsWith(manifestName + ".in-progress-")) {
+                                FileUtils.delete(temporaryDirectory.resolve(unpackDirectory));
+                            }
+                        }
+                        if (!Files.exists(manifest)) {
+                            continue;
+                        }
+                        if (isReleaseInUse(manifestName, installations)) {
+                            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                                String[] entry = line.split("\t", 4);
+                                if (entry[0].equals("f")) {
+                                    referencedObjects.add(entry[2]);
+                                }
+                            }
+                        } else {
+                            logger.lifecycle("Pruning JDK release {} from the JDK store", manifestName);
+                            Files.delete(manifest);
+                            Files.deleteIfExists(manifestsDirectory.resolve(manifestName + ".lock"));
+                        }
+                    } finally {
+                        manifestLock.close();
+                    }
+                }
+                if (FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+                    pruneObjects(logger, referencedObjects);
+                }
+            } finally {
+                storeLock.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to prune the JDK store of %s", jdkStorageLocation), e);
+        }
+    }
+
+    private StoreLock storeLock() {
+        return STORE_LOCKS.computeIfAbsent(storeDirectory.toAbsolutePath().normalize(), StoreLock::new);
+    }
+
+    private static Optional<String> manifestName(String fileName) {
+        int suffix = fileName.indexOf(".manifest");
+        return suffix > 0 ? Optional.of(fileName.substring(0, suffix + ".manifest".length())) : Optional.empty();
+    }
+
+    /**
+     * A release {@code <distribution>-<version>-<hash>} is in use as long as any installation or in-progress
+     * installation of the same distribution and version exists, as they only differ in their CA certificates hash.
+     */
+    private static boolean isReleaseInUse(String manifestName, List<String> installations) {
+        String releaseKey = manifestName.substring(0, manifestName.length() - ".manifest".length());
+        String installationPrefix = releaseKey.substring(0, releaseKey.lastIndexOf('-') + 1);
+        return installations.stream()
+                .filter(name -> !name.endsWith(".lock") && !name.endsWith(JdkInstallationUsage.LAST_USED_SUFFIX))
+                .anyMatch(name -> name.startsWith(installationPrefix));
+    }
+
+    private void pruneObjects(Logger logger, Set<String> referencedObjects) throws IOException {
+        long minLastChangeMillis = System.currentTimeMillis() - MIN_OBJECT_AGE.toMillis();
+        long prunedObjects = 0;
+        for (String prefix : listFileNames(objectsDirectory)) {
+            for (String object : listFileNames(objectsDirectory.resolve(prefix))) {
+                Path objectPath = objectsDirectory.resolve(prefix).resolve(object);
+                // the link count is 1 if no installation links the object anymore, and the status change time is
+                // updated whenever the object is stored or linked
+                int links = (Integer) Files.getAttribute(objectPath, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+                FileTime lastChange =
+                        (FileTime) Files.getAttribute(objectPath, "unix:ctime", LinkOption.NOFOLLOW_LINKS);
+                if (links == 1 && lastChange.toMillis() < minLastChangeMillis && !referencedObjects.contains(object)) {
+                    Files.delete(objectPath);
+                    prunedObjects++;
+                }
+            }
+        }
+        if (prunedObjects > 0) {
+            logger.lifecycle("Pruned {} unused objects from the JDK store", prunedObjects);
+        }
+    }
+
+    private static List<String> listFileNames(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(path -> path.getFileName().toString()).collect(Collectors.toList());
+        }
+    }
+
+    private void ingest(Function<Path, Path> unpackJdk, Path manifest) throws IOException {
+        Files.createDirectories(objectsDirectory);
+        Files.createDirectories(temporaryDirectory);
+        Path unpackDirectory = temporaryDirectory.resolve(manifest.getFileName() + ".in-progress-"
+                + UUID.randomUUID().toString().substring(0, 8));
+        try {
+            Path javaHome = unpackJdk.apply(unpackDirectory);
+            List<String> entries = new ArrayList<>();
+            Files.walkFileTree(javaHome, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes _attrs) throws IOException {
+                    entries.add(entry("d", permissions(dir), "-", javaHome.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isSymbolicLink()) {
+                        entries.add(
+                                entry("l", "-", Files.readSymbolicLink(file).toString(), javaHome.relativize(file)));
+                    } else {
+                        String object = storeObject(file);
+                        entries.add(entry("f", "-", object, javaHome.relativize(file)));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            Files.createDirectories(manifest.getParent());
+            Path temporaryManifest = manifest.resolveSibling(manifest.getFileName() + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temporaryManifest, StandardCharsets.UTF_8)) {
+                for (String entry : entries) {
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            }
+            Files.move(temporaryManifest, manifest, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            FileUtils.delete(unpackDirectory);
+        }
+    }
+
+    /** Moves {@code file} into the objects directory, unless an identical object is already stored. */
+    private String storeObject(Path file) throws IOException {
+        String object = sha256(file) + "-" + permissions(file);
+        Path objectPath = objectPath(object);
+        if (Files.exists(objectPath)) {
+            Files.delete(file);
+            return object;
+        }
+        Files.createDirectories(objectPath.getParent());
+        try {
+            Files.move(file, objectPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // stored concurrently by the ingestion of another release
+            Files.delete(file);
+        }
+        return object;
+    }
+
+    private void assembleFromManifest(Path manifest, Path destination) throws IOException {
+        List<String[]> directories = new ArrayList<>();
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            String[] entry = line.split("\t", 4);
+            Path target = destination.resolve(entry[3]);
+            switch (entry[0]) {
+                case "d":
+                    Files.createDirectories(target);
+                    directories.add(entry);
+                    break;
+                case "l":
+                    Files.createSymbolicLink(target, Paths.get(entry[2]));
+                    break;
+                case "f":
+                    linkObject(objectPath(entry[2]), target, Paths.get(entry[3]).equals(CACERTS));
+                    break;
+                default:
+                    throw new IllegalStateException(String.format("Invalid JDK store manifest entry '%s'", line));
+            }
+        }
+        // the directories might not be writable, hence their permissions are set once all the files were linked
+        for (int i = directories.size() - 1; i >= 0; i--) {
+            String[] entry = directories.get(i);
+            Files.setPosixFilePermissions(destination.resolve(entry[3]), PosixFilePermissions.fromString(entry[1]));
+        }
+    }
+
+    private static void linkObject(Path object, Path target, boolean materialize) throws IOException {
+        if (!materialize) {
+            try {
+                Files.createLink(target, object);
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // eg. a storage location spanning filesystems, fall back to a copy
+            }
+        }
+        Files.copy(object, target, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+
+    private Path objectPath(String object) {
+        return objectsDirectory.resolve(object.substring(0, 2)).resolve(object);
+    }
+
+    private static String entry(String type, String permissions, String value, Path relativePath) {
+        return String.join("\t", type, permissions, value, relativePath.toString());
+    }
+
+    private static String permissions(Path path) throws IOException {
+        return PosixFilePermissions.toString(Files.getPosixFilePermissions(path, LinkOption.NOFOLLOW_LINKS));
+    }
+
+    private static String sha256(Path file) throws IOException {
+        return MoreFiles.asByteSource(file).hash(Hashing.sha256()).toString();
+    }
+
+    /**
+     * Shared/exclusive lock on {@code <store>/store.lock}, held across threads and processes. File locks are held on
+     * behalf of the whole JVM, which cannot hold overlapping ones, hence its threads share a single shared file lock.
+     */
+    private static final class StoreLock {
+        private final Path lockFile;
+        private final ReadWriteLock jvmLock = new ReentrantReadWriteLock();
+        private int sharedHolders;
+        private FileChannel sharedChannel;
+
+        StoreLock(Path storeDirectory) {
+            this.lockFile = storeDirectory.resolve("store.lock");
+        }
+
+        Closeable lockShared() throws IOException {
+            Closer closer = Closer.create();
+            try {
+                Lock readLock = jvmLock.readLock();
+                readLock.lock();
+                closer.register(readLock::unlock);
+                synchronized (this) {
+                    if (sharedHolders == 0) {
+                        sharedChannel = lock(true);
+                    }
+                    sharedHolders++;
+                }
+                closer.register(this::releaseShared);
+                return closer;
+            } catch (Throwable t) {
+                closer.close();
+                throw t;
+            }
+        }
+
+        private synchronized void releaseShared() throws IOException {
+            if (--sharedHolders == 0) {
+                FileChannel channel = sharedChannel;
+                sharedChannel = null;
+                channel.close();
+            }
+        }
+
+        Closeable lockExclusive() throws IOException {
+            Closer closer = Closer.create();
+            try {
+                Lock writeLock = jvmLock.writeLock();
+                writeLock.lock();
+                closer.register(writeLock::unlock);
+                closer.register(lock(false));
+                return closer;
+            } catch (Throwable t) {
+                closer.close();
+                throw t;
+            }
+        }
+
+        private FileChannel lock(boolean shared) throws IOException {
+            Files.createDirectories(lockFile.getParent());
+            FileChannel channel = FileChannel.open(
+                    lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                channel.lock(0, Long.MAX_VALUE, shared);
+                return channel;
+            } catch (Throwable t) {
+                channel.close();
+                throw t;
+            }
+        }
+    }
+}
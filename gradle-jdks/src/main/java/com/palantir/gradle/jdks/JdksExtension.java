@@ -17,10 +17,16 @@
 package com.palantir.gradle.jdks;
 
 import com.palantir.gradle.jdks.json.JdksInfoJson;
+import com.palantir.gradle.jdks.setup.HttpDownloader;
 import com.palantir.gradle.utils.lazilyconfiguredmapping.LazilyConfiguredMapping;
 import groovy.lang.Closure;
 import groovy.lang.DelegatesTo;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
 import org.gradle.api.Action;
 import org.gradle.api.Project;
@@ -36,6 +42,11 @@ public abstract class JdksExtension {
     private final MapProperty<String, String> caCerts;
     private final DirectoryProperty jdkStorageLocation;
     private final Property<JavaLanguageVersion> daemonTarget;
+    private final Property<JdkDownloadMethod> downloadMethod;
+    private final Property<Integer> downloadConnections;
+    private final Set<JavaLanguageVersion> explicitJavaVersions = ConcurrentHashMap.newKeySet();
+    private volatile boolean hasLazyJdks = false;
+    private Map<JavaLanguageVersion, List<JdkDistributionConfig>> javaVersionToJdkDistros;
 
     @Inject
     protected abstract ObjectFactory getObjectFactory();
@@ -50,16 +61,22 @@ public abstract class JdksExtension {
         // the build failure itself is extremely rare, on very large builds with larger worker pools, these
         // errors occur enough times that it is significant
         // tracing the source of this race condition is difficult, so to just mitigate the problem,
-        // these two properties have had their methods synchronized (which arguably gradle should probably
-        // do since it's known that Property access is racy)
-        this.caCerts = SynchronizedInterface.synchronizeAllInterfaceMethods(
+        // these two properties are synchronized until they are finalized, after which they are read without
+        // locking (which arguably gradle should probably do since it's known that Property access is racy)
+        this.caCerts = SynchronizedUntilFinalized.wrap(
                 MapProperty.class, getObjectFactory().mapProperty(String.class, String.class));
-        this.jdkStorageLocation = SynchronizedInterface.synchronizeAllInterfaceMethods(
-                DirectoryProperty.class, getObjectFactory().directoryProperty());
+        this.jdkStorageLocation =
+                SynchronizedUntilFinalized.wrap(DirectoryProperty.class, getObjectFactory().directoryProperty());
         this.daemonTarget = getObjectFactory().property(JavaLanguageVersion.class);
+        this.downloadMethod =
+                getObjectFactory().property(JdkDownloadMethod.class).convention(JdkDownloadMethod.GRADLE);
+        this.downloadConnections =
+                getObjectFactory().property(Integer.class).convention(HttpDownloader.DEFAULT_CONNECTIONS);
         this.getCaCerts().finalizeValueOnRead();
         this.getJdkStorageLocation().finalizeValueOnRead();
         this.getDaemonTarget().finalizeValueOnRead();
+        this.getDownloadMethod().finalizeValueOnRead();
+        this.getDownloadConnections().finalizeValueOnRead();
     }
 
     public final Property<JavaLanguageVersion> getDaemonTarget() {
@@ -74,6 +91,20 @@ public abstract class JdksExtension {
         getDaemonTarget().set(JavaLanguageVersion.of(value));
     }
 
+    /** How the JDK archives are downloaded, {@code gradle} by default, see {@link JdkDownloadMethod}. */
+    public final Property<JdkDownloadMethod> getDownloadMethod() {
+        return downloadMethod;
+    }
+
+    public final void setDownloadMethod(String value) {
+        getDownloadMethod().set(JdkDownloadMethod.fromStringThrowing(value));
+    }
+
+    /** The number of concurrent range requests of the {@code http} download method. */
+    public final Property<Integer> getDownloadConnections() {
+        return downloadConnections;
+    }
+
     public final MapProperty<String, String> getCaCerts() {
         return caCerts;
     }
@@ -82,11 +113,15 @@ public abstract class JdksExtension {
         return jdkStorageLocation;
     }
 
-    public final void jdks(LazyJdks lazyJdks) {
+    public final synchronized void jdks(LazyJdks lazyJdks) {
+        checkJdksNotResolved();
+        hasLazyJdks = true;
         jdks.put(lazyJdks::configureJdkFor);
     }
 
-    public final void jdk(JavaLanguageVersion javaLanguageVersion, Action<JdkExtension> action) {
+    public final synchronized void jdk(JavaLanguageVersion javaLanguageVersion, Action<JdkExtension> action) {
+        checkJdksNotResolved();
+        explicitJavaVersions.add(javaLanguageVersion);
         jdks.put(javaLanguageVersion, action);
     }
 
@@ -128,6 +163,38 @@ public abstract class JdksExtension {
         return jdks.get(javaLanguageVersion, project);
     }
 
+    /**
+     * The java versions configured using {@code jdk(...)}, or empty if {@link #jdks(LazyJdks)} was used, in which case
+     * any java version might be configured.
+     */
+    final Optional<Set<JavaLanguageVersion>> explicitlyConfiguredJavaVersions() {
+        if (hasLazyJdks) {
+            return Optional.empty();
+        }
+        return Optional.of(Collections.unmodifiableSet(explicitJavaVersions));
+    }
+
+    /**
+     * The JDK distributions of every configured java version, resolved once per build when first queried, which is at
+     * execution time, once the configuration is complete. Configuring the jdks afterwards fails.
+     */
+    final synchronized Map<JavaLanguageVersion, List<JdkDistributionConfig>> javaVersionToJdkDistros(
+            Project rootProject, JdkDistributions jdkDistributions) {
+        if (javaVersionToJdkDistros == null) {
+            javaVersionToJdkDistros = Collections.unmodifiableMap(
+                    JdkDistributionConfigurator.getJavaVersionToJdkDistros(rootProject, jdkDistributions, this));
+        }
+        return javaVersionToJdkDistros;
+    }
+
+    /** The resolved JDK distributions are never updated, hence the jdks cannot be configured anymore once resolved. */
+    private void checkJdksNotResolved() {
+        if (javaVersionToJdkDistros != null) {
+            throw new IllegalStateException("The jdks cannot be configured anymore, as the JDK distributions of the"
+                    + " configured java versions were already resolved");
+        }
+    }
+
     public interface LazyJdkDistributions {
         Optional<Action<JdkDistributionExtension>> configureJdkDistributionFor(JdkDistributionName jdkDistributionName);
     }
@@ -27,6 +27,8 @@ import org.slf4j.LoggerFactory;
 public final class JdksPlugin implements Plugin<Project> {
 
     private static final Logger log = LoggerFactory.getLogger(JdksPlugin.class);
+    private static final int DEFAULT_MAX_UNUSED_DAYS = 30;
+    private static final int DEFAULT_MAX_PARALLEL_DOWNLOADS = 4;
 
     @Override
     public void apply(Project rootProject) {
@@ -34,12 +36,39 @@ public final class JdksPlugin implements Plugin<Project> {
             throw new IllegalArgumentException("com.palantir.jdks must be applied to the root project only");
         }
 
-        if (GradleJdksEnablement.isGradleJdkSetupEnabled(
-                rootProject.getProjectDir().toPath())) {
+        boolean gradleJdkSetupEnabled = GradleJdksEnablement.isGradleJdkSetupEnabled(
+                rootProject.getProjectDir().toPath());
+        if (gradleJdkSetupEnabled) {
             rootProject.getPluginManager().apply(ToolchainsPlugin.class);
         } else {
             rootProject.getPluginManager().apply(BaselineJavaJdksPlugin.class);
         }
+
+        JdksExtension jdksExtension = rootProject.getExtensions().getByType(JdksExtension.class);
+        rootProject.getTasks().register("pruneJdks", PruneJdksTask.class, task -> {
+            task.setDescription("Deletes the JDK installations that were not used recently.");
+            task.setGroup("Gradle JDK");
+            if (gradleJdkSetupEnabled) {
+                // the Gradle JDK setup installs the JDKs into $GRADLE_USER_HOME/gradle-jdks
+                task.getJdksDirectory()
+                        .set(new File(rootProject.getGradle().getGradleUserHomeDir(), "gradle-jdks"));
+            } else {
+                task.getJdksDirectory().set(jdksExtension.getJdkStorageLocation());
+            }
+            task.getMaxUnusedDays().convention(DEFAULT_MAX_UNUSED_DAYS);
+        });
+
+        JdkDistributions jdkDistributions = new JdkDistributions();
+        rootProject.getTasks().register("prefetchJdks", PrefetchJdksTask.class, task -> {
+            task.setDescription("Downloads the JDK archives of every configured java version, OS and architecture.");
+            task.setGroup("Gradle JDK");
+            task.getJavaVersionToJdkDistros()
+                    .putAll(rootProject.provider(
+                            () -> jdksExtension.javaVersionToJdkDistros(rootProject, jdkDistributions)));
+            task.getMaxParallelDownloads().convention(DEFAULT_MAX_PARALLEL_DOWNLOADS);
+            task.getOutputDirectory()
+                    .convention(rootProject.getLayout().getBuildDirectory().dir("prefetched-jdks"));
+        });
     }
 
     public static JdksExtension extension(Project rootProject, JdkDistributions jdkDistributions) {
@@ -0,0 +1,301 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+import com.palantir.gradle.jdks.setup.HttpDownloader;
+import com.palantir.gradle.jdks.setup.common.Arch;
+import com.palantir.gradle.jdks.setup.common.Os;
+import com.palantir.gradle.jdks.setup.common.Sha256;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.jvm.toolchain.JavaLanguageVersion;
+
+/**
+ * Downloads the JDK archives of every configured java version, OS and architecture, or of the subset selected by
+ * {@link #getJavaVersions()}, {@link #getOperatingSystems()} and {@link #getArchitectures()}, e.g. to seed a mirror or
+ * to bake CI images. The archives are downloaded at most {@link #getMaxParallelDownloads()} at a time into
+ * {@link #getOutputDirectory()}, laid out like their download urls ({@code <host>/<path>}), and the archives with the
+ * same SHA-256 are hardlinked to a single copy. The size and SHA-256 of every archive are written to
+ * {@code manifest.json}, which is also used to skip the archives that were already downloaded by a previous run.
+ */
+public abstract class PrefetchJdksTask extends DefaultTask {
+
+    static final String MANIFEST = "manifest.json";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    @Nested
+    public abstract MapProperty<JavaLanguageVersion, List<JdkDistributionConfig>> getJavaVersionToJdkDistros();
+
+    /** The java versions to download, all of them if empty. */
+    @Input
+    @Option(option = "java-version", description = "Only download the JDKs of this java version")
+    public abstract ListProperty<String> getJavaVersions();
+
+    /** The operating systems to download, e.g. {@code linux-glibc}, all of them if empty. */
+    @Input
+    @Option(option = "os", description = "Only download the JDKs of this operating system, e.g. linux-glibc")
+    public abstract ListProperty<String> getOperatingSystems();
+
+    /** The architectures to download, e.g. {@code x86-64}, all of them if empty. */
+    @Input
+    @Option(option = "arch", description = "Only download the JDKs of this architecture, e.g. x86-64")
+    public abstract ListProperty<String> getArchitectures();
+
+    @Input
+    public abstract Property<Integer> getMaxParallelDownloads();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDirectory();
+
+    @TaskAction
+    public final void prefetch() {
+        Path outputDirectory = getOutputDirectory().get().getAsFile().toPath();
+        Map<String, Archive> archives = selectArchives();
+        if (archives.isEmpty()) {
+            throw new RuntimeException(String.format(
+                    "No JDKs matched java versions %s, operating systems %s and architectures %s",
+                    getJavaVersions().get(),
+                    getOperatingSystems().get(),
+                    getArchitectures().get()));
+        }
+        Map<String, String> previousSha256s = readPreviousSha256s(outputDirectory);
+
+        ExecutorService executor = Executors.newFixedThreadPool(getMaxParallelDownloads().get());
+        try {
+            List<Future<?>> downloads = new ArrayList<>();
+            for (Archive archive : archives.values()) {
+                downloads.add(executor.submit(() -> prefetch(outputDirectory, archive, previousSha256s)));
+            }
+            for (Future<?> download : downloads) {
+                download.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while prefetching the JDKs", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Failed to prefetch the JDKs", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        deduplicate(outputDirectory, archives.values());
+        writeManifest(outputDirectory, archives.values());
+        getLogger()
+                .lifecycle(
+                        "Prefetched {} JDK archive(s) into {}",
+                        archives.size(),
+                        outputDirectory.resolve(MANIFEST));
+    }
+
+    /** The archives to download keyed by their url, as several JDKs may share the same archive. */
+    private Map<String, Archive> selectArchives() {
+        List<String> operatingSystems = getOperatingSystems().get();
+        List<String> architectures = getArchitectures().get();
+        // fails early on typos, rather than silently selecting nothing
+        operatingSystems.forEach(Os::fromStringThrowing);
+        architectures.forEach(Arch::fromStringThrowing);
+        Map<String, Archive> archives = new TreeMap<>();
+        getJavaVersionToJdkDistros().get().forEach((javaVersion, jdkDistros) -> {
+            if (!getJavaVersions().get().isEmpty()
+                    && !getJavaVersions().get().contains(javaVersion.toString())) {
+                return;
+            }
+            for (JdkDistributionConfig jdkDistro : jdkDistros) {
+                Os os = jdkDistro.getOs().get();
+                Arch arch = jdkDistro.getArch().get();
+                if ((!operatingSystems.isEmpty() && !operatingSystems.contains(os.uiName()))
+                        || (!architectures.isEmpty() && !architectures.contains(arch.uiName()))) {
+                    continue;
+                }
+                String downloadUrl = jdkDistro.getDownloadUrl().get();
+                archives.computeIfAbsent(downloadUrl, Archive::new)
+                        .jdks
+                        .add(String.format("%s/%s/%s", javaVersion, os.uiName(), arch.uiName()));
+            }
+        });
+        return archives;
+    }
+
+    private void prefetch(Path outputDirectory, Archive archive, Map<String, String> previousSha256s) {
+        Path destination = outputDirectory.resolve(archive.relativePath);
+        try {
+            Optional<String> previousSha256 = Optional.ofNullable(previousSha256s.get(archive.relativePath));
+            if (previousSha256.isPresent() && Files.isRegularFile(destination)) {
+                String sha256 = sha256(destination);
+                if (sha256.equals(previousSha256.get())) {
+                    getLogger().info("JDK archive {} was already prefetched", archive.downloadUrl);
+                    archive.complete(sha256, Files.size(destination));
+                    return;
+                }
+            }
+            getLogger().lifecycle("Downloading {}", archive.downloadUrl);
+            Files.createDirectories(destination.getParent());
+            String sha256 = download(archive.uri, destination);
+            archive.complete(sha256, Files.size(destination));
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to prefetch %s", archive.downloadUrl), e);
+        }
+    }
+
+    private String download(URI uri, Path destination) throws IOException {
+        if ("http".equals(uri.getScheme()) || "https".equals(uri.getScheme())) {
+            // the parallelism comes from downloading several archives at a time
+            return new HttpDownloader(new GradleLogger(getLogger(), LogLevel.INFO), 1).download(uri, destination);
+        }
+        // e.g. file:// mirrors
+        Path temporaryDestination = destination.resolveSibling(
+                "." + destination.getFileName() + "." + UUID.randomUUID().toString().substring(0, 8));
+        MessageDigest digest = Sha256.newDigest();
+        try (InputStream content = new DigestInputStream(uri.toURL().openStream(), digest)) {
+            Files.copy(content, temporaryDestination, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporaryDestination, destination, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporaryDestination);
+        }
+        return Sha256.hex(digest.digest());
+    }
+
+    /** Hardlinks the archives with the same content to the first one, falling back to keeping the copies. */
+    private void deduplicate(Path outputDirectory, Iterable<Archive> archives) {
+        Map<String, Path> firstBySha256 = new HashMap<>();
+        for (Archive archive : archives) {
+            Path path = outputDirectory.resolve(archive.relativePath);
+            Path first = firstBySha256.putIfAbsent(archive.sha256, path);
+            if (first == null) {
+                continue;
+            }
+            try {
+                if (!Files.isSameFile(first, path)) {
+                    Path link = path.resolveSibling("." + path.getFileName() + ".link");
+                    Files.deleteIfExists(link);
+                    Files.createLink(link, first);
+                    Files.move(link, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    getLogger().info("{} has the same content as {}, hardlinked it", path, first);
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                getLogger().info("Could not hardlink {} to {}, keeping the copy", path, first, e);
+            }
+        }
+    }
+
+    private static void writeManifest(Path outputDirectory, Iterable<Archive> archives) {
+        ObjectNode manifest = OBJECT_MAPPER.createObjectNode();
+        ArrayNode archiveNodes = manifest.putArray("archives");
+        for (Archive archive : archives) {
+            ObjectNode archiveNode = archiveNodes.addObject();
+            archiveNode.put("downloadUrl", archive.downloadUrl);
+            archiveNode.put("path", archive.relativePath);
+            archiveNode.put("sizeBytes", archive.sizeBytes);
+            archiveNode.put("sha256", archive.sha256);
+            ArrayNode jdks = archiveNode.putArray("jdks");
+            archive.jdks.forEach(jdks::add);
+        }
+        try {
+            Path temporaryManifest = outputDirectory.resolve(MANIFEST + ".tmp");
+            OBJECT_MAPPER.writeValue(temporaryManifest.toFile(), manifest);
+            Files.move(temporaryManifest, outputDirectory.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("Failed to write the manifest of %s", outputDirectory), e);
+        }
+    }
+
+    private static Map<String, String> readPreviousSha256s(Path outputDirectory) {
+        Path manifest = outputDirectory.resolve(MANIFEST);
+        Map<String, String> sha256s = new HashMap<>();
+        if (!Files.isRegularFile(manifest)) {
+            return sha256s;
+        }
+        try {
+            for (JsonNode archive : OBJECT_MAPPER.readTree(manifest.toFile()).path("archives")) {
+                sha256s.put(archive.path("path").asText(), archive.path("sha256").asText());
+            }
+        } catch (IOException e) {
+            // an unreadable manifest only means that every archive is downloaded again
+        }
+        return sha256s;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        return MoreFiles.asByteSource(file).hash(Hashing.sha256()).toString();
+    }
+
+    /** An archive to download, and the {@code <java version>/<os>/<arch>} JDKs using it. */
+    private static final class Archive {
+        private final String downloadUrl;
+        private final URI uri;
+        private final String relativePath;
+        private final List<String> jdks = new ArrayList<>();
+        private volatile String sha256;
+        private volatile long sizeBytes;
+
+        Archive(String downloadUrl) {
+            this.downloadUrl = downloadUrl;
+            this.uri = URI.create(downloadUrl);
+            this.relativePath = relativePath(uri);
+        }
+
+        void complete(String newSha256, long newSizeBytes) {
+            this.sha256 = newSha256;
+            this.sizeBytes = newSizeBytes;
+        }
+
+        private static String relativePath(URI uri) {
+            String path = uri.getPath().replaceAll("^/+", "");
+            String relativePath = uri.getHost() == null ? path : uri.getHost() + "/" + path;
+            if (relativePath.isEmpty() || Path.of(relativePath).normalize().startsWith("..")) {
+                throw new IllegalArgumentException(String.format("Cannot prefetch JDK archive url %s", uri));
+            }
+            return relativePath;
+        }
+    }
+}
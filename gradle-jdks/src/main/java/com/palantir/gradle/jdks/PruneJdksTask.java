@@ -0,0 +1,66 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import com.palantir.gradle.jdks.setup.JdkPruner;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.LogLevel;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Deletes the JDK installations of {@link #getJdksDirectory()} that were not used for more than
+ * {@link #getMaxUnusedDays()}, then the least recently used ones until the installations fit into
+ * {@link #getMaxTotalSizeMb()}, as well as the lock files and in-progress directories left behind. The JDKs are
+ * locked the same way {@link JdkManager} and the Gradle JDK setup lock them while installing them.
+ */
+public abstract class PruneJdksTask extends DefaultTask {
+
+    @Internal
+    public abstract DirectoryProperty getJdksDirectory();
+
+    @Input
+    public abstract Property<Integer> getMaxUnusedDays();
+
+    @Input
+    @Optional
+    public abstract Property<Long> getMaxTotalSizeMb();
+
+    @TaskAction
+    public final void prune() {
+        Path jdksDirectory = getJdksDirectory().get().getAsFile().toPath();
+        long maxTotalSizeBytes =
+                getMaxTotalSizeMb().map(maxTotalSizeMb -> maxTotalSizeMb << 20).getOrElse(Long.MAX_VALUE);
+        List<Path> pruned = new JdkPruner(
+                        new GradleLogger(getLogger(), LogLevel.LIFECYCLE),
+                        JdkManager.PathLock::new,
+                        Duration.ofDays(getMaxUnusedDays().get()),
+                        maxTotalSizeBytes)
+                .prune(jdksDirectory);
+        if (JdkStore.isSupported()) {
+            JdkStore.in(jdksDirectory).prune(getLogger());
+        }
+        getLogger().lifecycle("Pruned {} JDK installation(s) from {}", pruned.size(), jdksDirectory);
+    }
+}
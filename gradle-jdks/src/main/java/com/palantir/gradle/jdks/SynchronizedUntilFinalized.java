@@ -0,0 +1,147 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.gradle.api.provider.Provider;
+
+/**
+ * Wraps a property using {@code finalizeValueOnRead()}, such that its methods are serialized until its value is first
+ * queried, which is when Gradle finalizes it, as a property can be mid-finalization in one worker thread while another
+ * worker thread reads it. From then on, the value is immutable: it is published as a snapshot which the queries return
+ * without locking, and the other methods are called without locking.
+ *
+ * <p>The wrapper implements every interface of the property, including Gradle's internal ones, so that it can still be
+ * passed to other properties. The calls are dispatched through cached {@link MethodHandle}s.
+ */
+final class SynchronizedUntilFinalized implements InvocationHandler {
+
+    private static final Object UNREAD = new Object();
+    private static final Object ABSENT = new Object();
+    private static final Object[] NO_ARGS = new Object[0];
+    private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+    private static final Map<Method, MethodHandle> METHOD_HANDLES = new ConcurrentHashMap<>();
+    private static final MethodHandle REFLECTIVE_INVOKE = reflectiveInvoke();
+
+    private final Provider<?> original;
+    private final Object lock = new Object();
+    // UNREAD until the value is first queried, then the finalized value or ABSENT
+    private volatile Object snapshot = UNREAD;
+
+    private SynchronizedUntilFinalized(Provider<?> original) {
+        this.original = original;
+    }
+
+    static <P extends Provider<?>> P wrap(Class<P> propertyInterface, P original) {
+        return propertyInterface.cast(Proxy.newProxyInstance(
+                original.getClass().getClassLoader(),
+                allInterfaces(original.getClass()).distinct().toArray(Class[]::new),
+                new SynchronizedUntilFinalized(original)));
+    }
+
+    @Override
+    public Object invoke(Object _proxy, Method method, Object[] args) throws Throwable {
+        Object value = snapshot;
+        if (value == UNREAD) {
+            synchronized (lock) {
+                value = snapshot;
+                if (value == UNREAD) {
+                    if (!isQuery(method)) {
+                        return call(method, args);
+                    }
+                    // the first query finalizes the value
+                    Object finalized = original.getOrNull();
+                    value = finalized == null ? ABSENT : finalized;
+                    snapshot = value;
+                }
+            }
+        }
+        if (value != ABSENT && isQuery(method)) {
+            return method.getName().equals("isPresent") ? Boolean.TRUE : value;
+        }
+        // the value is final, hence the property can be called concurrently
+        return call(method, args);
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        MethodHandle methodHandle = METHOD_HANDLES.computeIfAbsent(method, SynchronizedUntilFinalized::spreader);
+        Object[] arguments = args == null ? NO_ARGS : args;
+        try {
+            return (Object) methodHandle.invokeExact((Object) original, arguments);
+        } catch (InvocationTargetException e) {
+            // only thrown by the reflective fallback
+            throw e.getCause();
+        }
+    }
+
+    private static boolean isQuery(Method method) {
+        switch (method.getName()) {
+            case "get":
+            case "getOrNull":
+            case "isPresent":
+                return method.getParameterCount() == 0;
+            case "getOrElse":
+                return method.getParameterCount() == 1;
+            default:
+                return false;
+        }
+    }
+
+    private static MethodHandle spreader(Method method) {
+        try {
+            return MethodHandles.publicLookup()
+                    .unreflect(method)
+                    .asSpreader(Object[].class, method.getParameterCount())
+                    .asType(SPREAD_TYPE);
+        } catch (IllegalAccessException e) {
+            // e.g. methods of non-public interfaces
+            return REFLECTIVE_INVOKE.bindTo(method);
+        }
+    }
+
+    private static MethodHandle reflectiveInvoke() {
+        try {
+            // Method.invoke is caller sensitive, hence cannot be looked up using the public lookup
+            return MethodHandles.lookup().findVirtual(Method.class, "invoke", SPREAD_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new RuntimeException("Cannot find Method.invoke", e);
+        }
+    }
+
+    private static Stream<Class<?>> allInterfaces(Class<?> clazz) {
+        Set<Class<?>> superclasses = Stream.concat(
+                        Optional.ofNullable(clazz.getSuperclass()).stream(), Arrays.stream(clazz.getInterfaces()))
+                .collect(Collectors.toSet());
+
+        return Stream.concat(
+                superclasses.stream().filter(Class::isInterface),
+                superclasses.stream().flatMap(SynchronizedUntilFinalized::allInterfaces));
+    }
+}
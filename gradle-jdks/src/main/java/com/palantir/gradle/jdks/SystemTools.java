@@ -28,11 +28,4 @@ final class SystemTools {
         }
         return "java";
     }
-
-    static String keytool() {
-        if (CurrentOs.get() == Os.WINDOWS) {
-            return "keytool.exe";
-        }
-        return "keytool";
-    }
 }
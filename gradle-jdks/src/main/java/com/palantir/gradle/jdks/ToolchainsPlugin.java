@@ -19,6 +19,13 @@ package com.palantir.gradle.jdks;
 import com.palantir.baseline.plugins.javaversions.BaselineJavaVersionsExtension;
 import com.palantir.gradle.jdks.GradleWrapperPatcher.GradleWrapperPatcherTask;
 import com.palantir.gradle.jdks.enablement.GradleJdksEnablement;
+import com.palantir.gradle.jdks.setup.common.CurrentArch;
+import com.palantir.gradle.jdks.setup.common.CurrentOs;
+import java.io.File;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
@@ -81,6 +88,7 @@ public final class ToolchainsPlugin implements Plugin<Project> {
                                     .getOutputGradleDirectory()
                                     .getLocationOnly()
                                     .get());
+                    task.getResourceSha256s().putAll(rootProject.provider(ToolchainsPlugin::gradleJdksResourceSha256s));
                     task.getDummyOutputFile()
                             .set(rootProject.getLayout().getBuildDirectory().file("checkGradleJdkConfigs"));
                 });
@@ -88,8 +96,8 @@ public final class ToolchainsPlugin implements Plugin<Project> {
         rootProject.getTasks().withType(GradleJdksConfigs.class).configureEach(task -> {
             task.getDaemonJavaVersion().set(jdksExtension.getDaemonTarget());
             task.getJavaVersionToJdkDistros()
-                    .putAll(rootProject.provider(() -> JdkDistributionConfigurator.getJavaVersionToJdkDistros(
-                            rootProject, jdkDistributions, jdksExtension)));
+                    .putAll(rootProject.provider(
+                            () -> jdksExtension.javaVersionToJdkDistros(rootProject, jdkDistributions)));
             task.getCaCerts().putAll(jdksExtension.getCaCerts());
         });
 
@@ -97,20 +105,27 @@ public final class ToolchainsPlugin implements Plugin<Project> {
                 .getTasks()
                 .register("wrapperJdkPatcher", GradleWrapperPatcherTask.class, task -> {
                     task.getGenerate().set(true);
+                    task.getPatchedGradlewScript()
+                            .set(rootProject.file(rootProject.getRootDir().toPath().resolve("gradlew")));
                     task.dependsOn(generateGradleJdkConfigs);
                 });
         TaskProvider<GradleWrapperPatcherTask> checkWrapperPatcherTask = rootProject
                 .getTasks()
                 .register("checkWrapperJdkPatcher", GradleWrapperPatcherTask.class, task -> {
                     task.getGenerate().set(false);
+                    // the check only reads gradlew, hence its output is a marker file, such that it can be cached
+                    task.getPatchedGradlewScript()
+                            .set(rootProject.getLayout().getBuildDirectory().file("checkWrapperJdkPatcher"));
+                    task.getOutputs().cacheIf("the check only depends on its inputs", _task -> true);
                 });
 
         rootProject.getTasks().withType(GradleWrapperPatcherTask.class).configureEach(task -> {
             task.getOriginalGradlewScript()
                     .fileProvider(rootProject.provider(() -> wrapperTask.get().getScriptFile()));
+            task.getPatchSha256()
+                    .set(rootProject.provider(
+                            () -> GradleJdksConfigsUtils.resourceSha256(GradleWrapperPatcher.GRADLEW_PATCH)));
             task.getBuildDir().set(task.getTemporaryDir());
-            task.getPatchedGradlewScript()
-                    .set(rootProject.file(rootProject.getRootDir().toPath().resolve("gradlew")));
         });
         wrapperTask.configure(task -> {
             task.finalizedBy(wrapperPatcherTask);
@@ -134,11 +149,34 @@ public final class ToolchainsPlugin implements Plugin<Project> {
             setupJdksTask.dependsOn(generateGradleJdkConfigs, wrapperPatcherTask);
         });
 
+        rootProject.getTasks().register("exportJdkBundle", ExportJdkBundleTask.class, task -> {
+            task.setDescription("Packs the installed Gradle JDKs of the current OS and arch into a single bundle.");
+            task.setGroup(GRADLE_JDK_GROUP);
+            task.getGradleJdksDirectory()
+                    .set(rootProject.getLayout().getProjectDirectory().dir("gradle/jdks"));
+            task.getJdksDirectory().set(new File(rootProject.getGradle().getGradleUserHomeDir(), "gradle-jdks"));
+            task.getOs().convention(CurrentOs.get());
+            task.getArch().convention(CurrentArch.get());
+            task.getBundleFile()
+                    .convention(rootProject
+                            .getLayout()
+                            .getBuildDirectory()
+                            .file(task.getOs().zip(task.getArch(), ExportJdkBundleTask::bundleFileName)));
+        });
+
         rootProject.getTasks().named("javaToolchains").configure(task -> {
             task.mustRunAfter(checkJdksLifecycle);
         });
     }
 
+    private static Map<String, String> gradleJdksResourceSha256s() {
+        return Stream.of(
+                        GradleJdksConfigs.GRADLE_JDKS_SETUP_JAR,
+                        GradleJdksConfigs.GRADLE_JDKS_FUNCTIONS_SCRIPT,
+                        GradleJdksConfigs.GRADLE_JDKS_SETUP_SCRIPT)
+                .collect(Collectors.toMap(Function.identity(), GradleJdksConfigsUtils::resourceSha256));
+    }
+
     private static boolean isGradleVersionSupported() {
         return GradleVersion.current()
                         .compareTo(GradleVersion.version(GradleJdksEnablement.MINIMUM_SUPPORTED_GRADLE_VERSION))
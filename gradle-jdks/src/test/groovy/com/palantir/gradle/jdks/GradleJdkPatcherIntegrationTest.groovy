@@ -26,6 +26,7 @@ import spock.lang.TempDir
 
 import java.nio.file.Files
 import java.nio.file.Path
+import java.nio.file.attribute.FileTime
 import java.util.stream.Collectors
 
 class GradleJdkPatcherIntegrationTest extends GradleJdkIntegrationSpec {
@@ -83,6 +84,41 @@ class GradleJdkPatcherIntegrationTest extends GradleJdkIntegrationSpec {
         secondCheckResult.wasUpToDate("checkGradleJdkConfigs")
         secondCheckResult.wasUpToDate("checkWrapperJdkPatcher")
 
+        when: 'running check with the build cache from a clean build directory'
+        runTasksSuccessfully("check", "--build-cache")
+        file("build").deleteDir()
+        def cachedCheckResult = runTasksSuccessfully("check", "--build-cache")
+
+        then:
+        cachedCheckResult.standardOutput.contains("checkGradleJdkConfigs FROM-CACHE")
+        cachedCheckResult.standardOutput.contains("checkWrapperJdkPatcher FROM-CACHE")
+
+        where:
+        gradleVersionNumber << GRADLE_TEST_VERSIONS
+    }
+
+    def '#gradleVersionNumber: generateGradleJdkConfigs only rewrites the changed files'() {
+        setupJdksHardcodedVersions()
+        gradleVersion = gradleVersionNumber
+        runTasksSuccessfully("wrapper")
+        file('gradle.properties') << 'palantir.jdk.setup.enabled=true'
+        runTasksSuccessfully("setupJdks")
+        Path localPath = projectDir.toPath()
+                .resolve("gradle/jdks/11/${CurrentOs.get().uiName()}/${CurrentArch.get().uiName()}/local-path")
+        Files.setLastModifiedTime(localPath, FileTime.fromMillis(1_000_000_000_000L))
+        Path obsoleteLocalPath = projectDir.toPath().resolve("gradle/jdks/8/linux/x86-64/local-path")
+        Files.createDirectories(obsoleteLocalPath.getParent())
+        Files.writeString(obsoleteLocalPath, "azul-zulu-8")
+
+        when: 'running generateGradleJdkConfigs again'
+        def result = runTasksSuccessfully("generateGradleJdkConfigs")
+
+        then: 'only the obsolete files are deleted'
+        result.standardOutput.contains("Gradle JDK configuration files: 0 added, 0 updated, 1 deleted")
+        Files.getLastModifiedTime(localPath).toMillis() == 1_000_000_000_000L
+        !Files.exists(projectDir.toPath().resolve("gradle/jdks/8"))
+        checkJdksVersions(projectDir, Set.of("11", "17", "21"))
+
         where:
         gradleVersionNumber << GRADLE_TEST_VERSIONS
     }
@@ -21,6 +21,7 @@ import com.palantir.gradle.jdks.setup.common.CurrentOs
 import org.apache.commons.lang3.tuple.Pair
 import spock.lang.TempDir
 
+import java.nio.file.Files
 import java.nio.file.Path
 import java.util.regex.Matcher
 import java.util.regex.Pattern
@@ -104,6 +105,50 @@ class GradleJdkToolchainsIntegrationTest extends GradleJdkIntegrationSpec {
     }
 
 
+    def '#gradleVersionNumber: the daemon JVM arguments of the daemon JDK are applied'() {
+        gradleVersion = gradleVersionNumber
+        setupJdksHardcodedVersions()
+
+        // language=Groovy
+        buildFile << '''
+            jdks {
+                jdk(11) {
+                    daemonJvmArgs = ['-XX:+UseSerialGC', '-Dgradle.jdks.test=a b', '-Dgradle.jdks.quoted="q"']
+                }
+            }
+
+            tasks.register("printDaemonJvmArgs") {
+                doLast {
+                    println "daemon jvm args: " + java.lang.management.ManagementFactory.getRuntimeMXBean().getInputArguments()
+                }
+            }
+        '''.stripIndent(true)
+        runTasksSuccessfully("wrapper")
+        file('gradle.properties') << 'palantir.jdk.setup.enabled=true\norg.gradle.jvmargs=-Dgradle.jdks.project=kept\n'
+
+        when:
+        runTasksSuccessfully("setupJdks")
+        String output = runGradlewTasksSuccessfully("printDaemonJvmArgs")
+
+        then: 'the arguments are only rendered for the JDK they are configured for'
+        String os = CurrentOs.get().uiName()
+        String arch = CurrentArch.get().uiName()
+        projectDir.toPath().resolve("gradle/jdks/11/${os}/${arch}/daemon-jvm-args").text ==
+                '-XX:+UseSerialGC "-Dgradle.jdks.test=a b" \'-Dgradle.jdks.quoted="q"\'\n'
+        !Files.exists(projectDir.toPath().resolve("gradle/jdks/17/${os}/${arch}/daemon-jvm-args"))
+
+        and: 'the daemon runs with them'
+        output.contains("-XX:+UseSerialGC")
+        output.contains("-Dgradle.jdks.test=a b")
+        output.contains('-Dgradle.jdks.quoted="q"')
+
+        and: 'the org.gradle.jvmargs of gradle.properties are kept'
+        output.contains("-Dgradle.jdks.project=kept")
+
+        where:
+        gradleVersionNumber << GRADLE_TEST_VERSIONS
+    }
+
     def '#gradleVersionNumber: javaToolchains correctly set-up with baseline-java'() {
         gradleVersion = gradleVersionNumber
         setupJdksHardcodedVersions()
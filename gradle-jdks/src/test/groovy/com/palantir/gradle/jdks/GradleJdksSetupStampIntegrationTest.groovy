@@ -0,0 +1,94 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.gradle.jdks
+
+import com.palantir.gradle.jdks.setup.common.CurrentArch
+import com.palantir.gradle.jdks.setup.common.CurrentOs
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+
+class GradleJdksSetupStampIntegrationTest extends GradleJdkIntegrationSpec {
+
+    @TempDir
+    Path workingDir
+
+    def '#gradleVersionNumber: the setup stamp skips the JDK setup until its inputs change'() {
+        gradleVersion = gradleVersionNumber
+        setupJdksHardcodedVersions()
+        runTasksSuccessfully("wrapper")
+        file('gradle.properties') << 'palantir.jdk.setup.enabled=true'
+        runTasksSuccessfully("setupJdks")
+
+        when: 'running ./gradlew a second time with a setup jar that cannot start'
+        runGradlewTasksSuccessfully("help")
+        FileTime firstStampTime = stampTime()
+        Path setupJar = projectDir.toPath().resolve("gradle/gradle-jdks-setup.jar")
+        byte[] setupJarContent = Files.readAllBytes(setupJar)
+        Files.write(setupJar, "not a jar".bytes)
+        Files.setLastModifiedTime(setupJar, FileTime.fromMillis(firstStampTime.toMillis() - 10_000))
+        runGradlewTasksSuccessfully("help")
+
+        then: 'the stamp is used as is'
+        stampTime() == firstStampTime
+
+        when: 'restoring the setup jar, without invalidating the stamp'
+        Files.write(setupJar, setupJarContent)
+        Files.setLastModifiedTime(setupJar, FileTime.fromMillis(firstStampTime.toMillis() - 10_000))
+        String os = CurrentOs.get().uiName()
+        String arch = CurrentArch.get().uiName()
+
+        then: 'the JDK configuration, the certs and the daemon config invalidate the stamp'
+        invalidatesStamp { projectDir.toPath().resolve("gradle/jdks/17/${os}/${arch}/local-path") }
+        invalidatesStamp { projectDir.toPath().resolve("gradle/jdks") }
+        invalidatesStamp { Files.createDirectories(projectDir.toPath().resolve("gradle/certs")) }
+        invalidatesStamp { projectDir.toPath().resolve(".gradle/config.properties") }
+
+        when: 'deleting a JDK installation'
+        FileTime stampTimeBeforeDeletion = stampTime()
+        String jdk17FileName = projectDir.toPath().resolve("gradle/jdks/17/${os}/${arch}/local-path").text.trim()
+        Path jdk17 = workingDir.resolve("gradle-jdks").resolve(jdk17FileName)
+        jdk17.toFile().deleteDir()
+        String output = runGradlewTasksSuccessfully("help")
+
+        then: 'the stamp is invalidated and the JDK installed again'
+        output.contains("JDK installation '${jdk17}' does not exist")
+        Files.isDirectory(jdk17)
+        stampTime() > stampTimeBeforeDeletion
+
+        where:
+        gradleVersionNumber << GRADLE_TEST_VERSIONS
+    }
+
+    /** Runs ./gradlew after making the input returned by {@code touch} newer than the stamp. */
+    private boolean invalidatesStamp(Closure<Path> touch) {
+        FileTime previousStampTime = stampTime()
+        Files.setLastModifiedTime(touch.call(), FileTime.fromMillis(previousStampTime.toMillis() + 1_000))
+        runGradlewTasksSuccessfully("help")
+        return stampTime() > previousStampTime
+    }
+
+    private FileTime stampTime() {
+        return Files.getLastModifiedTime(projectDir.toPath().resolve(".gradle/gradle-jdks-setup.stamp"))
+    }
+
+    @Override
+    Path workingDir() {
+        return workingDir
+    }
+}
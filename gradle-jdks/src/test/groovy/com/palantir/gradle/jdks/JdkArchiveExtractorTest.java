@@ -0,0 +1,167 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.palantir.gradle.jdks.JdkPath.Extension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisabledOnOs(OS.WINDOWS)
+class JdkArchiveExtractorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void extracts_tar_gz_preserving_modes_and_symlinks() throws IOException {
+        Path archive = tempDir.resolve("jdk.tar.gz");
+        try (TarArchiveOutputStream tar = tarGz(archive)) {
+            addDirectory(tar, "jdk-17/");
+            addDirectory(tar, "jdk-17/jre/bin/");
+            addFile(tar, "jdk-17/jre/bin/java", 0755);
+            addDirectory(tar, "jdk-17/bin/");
+            addFile(tar, "jdk-17/bin/java", 0755);
+            addFile(tar, "jdk-17/release", 0644);
+            TarArchiveEntry symlink = new TarArchiveEntry("bin", TarArchiveEntry.LF_SYMLINK);
+            symlink.setLinkName("jdk-17/bin");
+            tar.putArchiveEntry(symlink);
+            tar.closeArchiveEntry();
+        }
+
+        Path destination = tempDir.resolve("jdk.in-progress");
+        Path javaHome = JdkArchiveExtractor.extract(Extension.TARGZ, archive, destination);
+
+        assertThat(javaHome).isEqualTo(destination.resolve("jdk-17").toAbsolutePath());
+        assertThat(Files.readString(javaHome.resolve("release"))).isEqualTo("jdk-17/release");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(javaHome.resolve("bin/java"))))
+                .isEqualTo("rwxr-xr-x");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(javaHome.resolve("release"))))
+                .isEqualTo("rw-r--r--");
+        assertThat(destination.resolve("bin")).isSymbolicLink();
+        assertThat(Files.readSymbolicLink(destination.resolve("bin"))).isEqualTo(Path.of("jdk-17/bin"));
+    }
+
+    @Test
+    void extracts_tar_gz_while_it_is_read() throws IOException {
+        Path archive = tempDir.resolve("jdk.tar.gz");
+        try (TarArchiveOutputStream tar = tarGz(archive)) {
+            addFile(tar, "jdk-17/bin/java", 0755);
+            addFile(tar, "jdk-17/release", 0644);
+        }
+
+        Path destination = tempDir.resolve("jdk.in-progress");
+        Path javaHome;
+        try (InputStream content = Files.newInputStream(archive)) {
+            javaHome = JdkArchiveExtractor.extractTarGz(content, destination);
+        }
+
+        assertThat(javaHome).isEqualTo(destination.resolve("jdk-17").toAbsolutePath());
+        assertThat(Files.readString(javaHome.resolve("release"))).isEqualTo("jdk-17/release");
+    }
+
+    @Test
+    void rejects_entries_outside_of_the_destination() throws IOException {
+        Path archive = tempDir.resolve("evil.tar.gz");
+        try (TarArchiveOutputStream tar = tarGz(archive)) {
+            addFile(tar, "../evil", 0644);
+        }
+
+        assertThatThrownBy(() -> JdkArchiveExtractor.extract(Extension.TARGZ, archive, tempDir.resolve("jdk")))
+                .hasMessageContaining("is outside of");
+    }
+
+    @Test
+    void rejects_symlinks_outside_of_the_destination() throws IOException {
+        Path elsewhere = Files.createDirectories(tempDir.resolve("elsewhere"));
+        Path archive = tempDir.resolve("evil.tar.gz");
+        try (TarArchiveOutputStream tar = tarGz(archive)) {
+            addSymlink(tar, "jdk-17/x", elsewhere.toString());
+            addFile(tar, "jdk-17/x/evil", 0644);
+        }
+        Path relativeArchive = tempDir.resolve("relative-evil.tar.gz");
+        try (TarArchiveOutputStream tar = tarGz(relativeArchive)) {
+            addSymlink(tar, "jdk-17/x", "../../elsewhere");
+            addFile(tar, "jdk-17/x/evil", 0644);
+        }
+
+        assertThatThrownBy(() -> JdkArchiveExtractor.extract(Extension.TARGZ, archive, tempDir.resolve("jdk")))
+                .hasMessageContaining("points outside of");
+        assertThatThrownBy(() ->
+                        JdkArchiveExtractor.extract(Extension.TARGZ, relativeArchive, tempDir.resolve("relative-jdk")))
+                .hasMessageContaining("points outside of");
+        assertThat(elsewhere).isEmptyDirectory();
+    }
+
+    @Test
+    void rejects_entries_written_through_symlinks() throws IOException {
+        Path archive = tempDir.resolve("evil.tar.gz");
+        try (TarArchiveOutputStream tar = tarGz(archive)) {
+            addFile(tar, "jdk-17/bin/java", 0755);
+            addSymlink(tar, "jdk-17/lib", "bin");
+            addFile(tar, "jdk-17/lib/evil", 0644);
+        }
+
+        Path destination = tempDir.resolve("jdk");
+        assertThatThrownBy(() -> JdkArchiveExtractor.extract(Extension.TARGZ, archive, destination))
+                .hasMessageContaining("would be written through the symlink");
+        assertThat(destination.resolve("jdk-17/bin/evil")).doesNotExist();
+    }
+
+    private static TarArchiveOutputStream tarGz(Path archive) throws IOException {
+        OutputStream outputStream = new GzipCompressorOutputStream(Files.newOutputStream(archive));
+        return new TarArchiveOutputStream(outputStream);
+    }
+
+    private static void addDirectory(TarArchiveOutputStream tar, String name) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setMode(TarArchiveEntry.DEFAULT_DIR_MODE);
+        tar.putArchiveEntry(entry);
+        tar.closeArchiveEntry();
+    }
+
+    private static void addSymlink(TarArchiveOutputStream tar, String name, String linkName) throws IOException {
+        TarArchiveEntry entry = new TarArchiveEntry(name, TarArchiveEntry.LF_SYMLINK);
+        entry.setLinkName(linkName);
+        tar.putArchiveEntry(entry);
+        tar.closeArchiveEntry();
+    }
+
+    private static void addFile(TarArchiveOutputStream tar, String name, int mode) throws IOException {
+        byte[] content = name.getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setMode(0100000 | mode);
+        entry.setSize(content.length);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * (c) Copyright 2026 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.palantir.gradle.jdks.JdkPath.Extension;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.gradle.api.logging.Logging;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisabledOnOs(OS.WINDOWS)
+class JdkStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void unpacks_a_release_once_and_hardlinks_it_into_every_installation() throws IOException {
+        Path archive = writeArchive();
+        AtomicInteger archiveRequests = new AtomicInteger();
+        Function<Path, Path> unpackJdk = destination -> {
+            archiveRequests.incrementAndGet();
+            return JdkArchiveExtractor.extract(Extension.TARGZ, archive, destination);
+        };
+        Path storage = tempDir.resolve("jdks");
+        JdkStore jdkStore = JdkStore.in(storage);
+
+        Path first = storage.resolve("first.in-progress");
+        Path second = storage.resolve("second.in-progress");
+        jdkStore.assemble("azul-zulu-17", unpackJdk, first);
+        jdkStore.assemble("azul-zulu-17", unpackJdk, second);
+
+        assertThat(archiveRequests).hasValue(1);
+        assertThat(Files.readString(second.resolve("release"))).isEqualTo("jdk-17/release");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(second.resolve("bin/java"))))
+                .isEqualTo("rwxr-xr-x");
+        assertThat(Files.readSymbolicLink(second.resolve("lib/java"))).isEqualTo(Path.of("../bin/java"));
+        assertThat(Files.isSameFile(first.resolve("release"), second.resolve("release")))
+                .isTrue();
+        assertThat(Files.isSameFile(first.resolve("lib/security/cacerts"), second.resolve("lib/security/cacerts")))
+                .as("the truststore is modified per installation, hence it must not be shared")
+                .isFalse();
+    }
+
+    @Test
+    void prune_waits_for_the_assemblies_in_progress() throws Exception {
+        Path archive = writeArchive();
+        Path storage = tempDir.resolve("jdks");
+        JdkStore jdkStore = JdkStore.in(storage);
+        jdkStore.assemble(
+                "azul-zulu-11",
+                destination -> JdkArchiveExtractor.extract(Extension.TARGZ, archive, destination),
+                storage.resolve("azul-zulu-11-crc.in-progress"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            AtomicReference<Future<?>> pruning = new AtomicReference<>();
+            Path destination = storage.resolve("azul-zulu-17-crc.in-progress");
+            jdkStore.assemble(
+                    "azul-zulu-17",
+                    unpackDirectory -> {
+                        pruning.set(executor.submit(() -> jdkStore.prune(Logging.getLogger(JdkStoreTest.class))));
+                        assertThatThrownBy(() -> pruning.get().get(500, TimeUnit.MILLISECONDS))
+                                .isInstanceOf(TimeoutException.class);
+                        return JdkArchiveExtractor.extract(Extension.TARGZ, archive, unpackDirectory);
+                    },
+                    destination);
+
+            pruning.get().get(10, TimeUnit.SECONDS);
+            assertThat(Files.readString(destination.resolve("release"))).isEqualTo("jdk-17/release");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Path writeArchive() throws IOException {
+        Path archive = tempDir.resolve("jdk.tar.gz");
+        try (TarArchiveOutputStream tar =
+                new TarArchiveOutputStream(new GzipCompressorOutputStream(Files.newOutputStream(archive)))) {
+            addFile(tar, "jdk-17/bin/java", 0755);
+            addFile(tar, "jdk-17/lib/security/cacerts", 0644);
+            addFile(tar, "jdk-17/release", 0644);
+            TarArchiveEntry symlink = new TarArchiveEntry("jdk-17/lib/java", TarArchiveEntry.LF_SYMLINK);
+            symlink.setLinkName("../bin/java");
+            tar.putArchiveEntry(symlink);
+            tar.closeArchiveEntry();
+        }
+        return archive;
+    }
+
+    private static void addFile(TarArchiveOutputStream tar, String name, int mode) throws IOException {
+        byte[] content = name.getBytes(StandardCharsets.UTF_8);
+        TarArchiveEntry entry = new TarArchiveEntry(name);
+        entry.setMode(0100000 | mode);
+        entry.setSize(content.length);
+        tar.putArchiveEntry(entry);
+        tar.write(content);
+        tar.closeArchiveEntry();
+    }
+}
@@ -65,4 +65,97 @@ final class JdksExtensionProjectSpec extends IntegrationSpec {
         stdout.contains('jdkVersion linux-glibc aarch64: 11.2')
         stdout.contains('jdkVersion linux-glibc x64: 11.3')
     }
+
+    def 'only resolves the explicitly configured java versions, once'() {
+        // language=Gradle
+        buildFile << '''
+            jdks {
+                jdkDistribution('azul-zulu') {
+                    baseUrl = 'https://cdn.azul.com/zulu/bin'
+                }
+                jdk(11) {
+                    distribution = 'azul-zulu'
+                    jdkVersion = '11.54.25-11.0.14.1'
+                }
+            }
+
+            def jdkDistributions = new JdkDistributions()
+            def first = jdks.javaVersionToJdkDistros(project, jdkDistributions)
+            def second = jdks.javaVersionToJdkDistros(project, jdkDistributions)
+            println('resolved java versions: ' + first.keySet()*.asInt().sort())
+            println('resolved once: ' + first.is(second))
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('help').standardOutput
+
+        then:
+        stdout.contains('resolved java versions: [11]')
+        stdout.contains('resolved once: true')
+    }
+
+    def 'only resolves the java versions configured by lazy jdks, once'() {
+        // language=Gradle
+        buildFile << '''
+            def lookups = [:].withDefault { 0 }
+            jdks {
+                jdkDistribution('azul-zulu') {
+                    baseUrl = 'https://cdn.azul.com/zulu/bin'
+                }
+            }
+            jdks.jdks({ javaVersion, _project ->
+                lookups[javaVersion.asInt()]++
+                if (javaVersion.asInt() != 17) {
+                    return Optional.empty()
+                }
+                return Optional.of({ jdk ->
+                    jdk.distribution = 'azul-zulu'
+                    jdk.jdkVersion = '17.34.19-ca-jdk17.0.3'
+                } as Action)
+            } as JdksExtension.LazyJdks)
+
+            def jdkDistributions = new JdkDistributions()
+            def first = jdks.javaVersionToJdkDistros(project, jdkDistributions)
+            def lookupsOfTheFirstResolution = new HashMap(lookups)
+            def second = jdks.javaVersionToJdkDistros(project, jdkDistributions)
+            println('resolved java versions: ' + first.keySet()*.asInt().sort())
+            println('resolved once: ' + (first.is(second) && lookups == lookupsOfTheFirstResolution))
+        '''.stripIndent(true)
+
+        when:
+        def stdout = runTasksSuccessfully('help').standardOutput
+
+        then:
+        stdout.contains('resolved java versions: [17]')
+        stdout.contains('resolved once: true')
+    }
+
+    def 'fails to configure jdks once they are resolved'() {
+        // language=Gradle
+        buildFile << '''
+            jdks {
+                jdkDistribution('azul-zulu') {
+                    baseUrl = 'https://cdn.azul.com/zulu/bin'
+                }
+                jdk(11) {
+                    distribution = 'azul-zulu'
+                    jdkVersion = '11.54.25-11.0.14.1'
+                }
+            }
+
+            jdks.javaVersionToJdkDistros(project, new JdkDistributions())
+            jdks {
+                jdk(17) {
+                    distribution = 'azul-zulu'
+                    jdkVersion = '17.34.19-ca-jdk17.0.3'
+                }
+            }
+        '''.stripIndent(true)
+
+        when:
+        def result = runTasksWithFailure('help')
+
+        then:
+        result.standardError.contains('The jdks cannot be configured anymore')
+    }
 }
@@ -211,6 +211,35 @@ class JdksPluginIntegrationSpec extends IntegrationSpec {
         gradleVersionNumber << GRADLE_VERSIONS
     }
 
+    def '#gradleVersionNumber: can prefetch the JDK archives of an OS and arch'() {
+        gradleVersion = gradleVersionNumber
+
+        // language=gradle
+        buildFile << '''
+            jdks {                
+                jdk(11) {
+                    distribution = 'azul-zulu'
+                    jdkVersion = '11.54.25-11.0.14.1'    
+                }
+            }
+        '''.stripIndent(true)
+
+        when:
+        runTasksSuccessfully('prefetchJdks', '--os', 'linux-glibc', '--arch', 'x86-64')
+
+        then:
+        def prefetched = new File(projectDir, 'build/prefetched-jdks')
+        def manifest = new groovy.json.JsonSlurper().parse(new File(prefetched, 'manifest.json'))
+        manifest.archives.size() == 1
+        manifest.archives[0].jdks == ['11/linux-glibc/x86-64']
+        def archive = new File(prefetched, manifest.archives[0].path)
+        archive.length() == manifest.archives[0].sizeBytes
+        archive.bytes.digest('SHA-256') == manifest.archives[0].sha256
+
+        where:
+        gradleVersionNumber << GRADLE_VERSIONS
+    }
+
     def '#gradleVersionNumber: throws exception if there is no JDK defined for a particular jdk major version'() {
         gradleVersion = gradleVersionNumber
 
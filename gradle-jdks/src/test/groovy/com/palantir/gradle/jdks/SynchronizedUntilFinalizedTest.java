@@ -0,0 +1,97 @@
+/*
+ * (c) Copyright 2024 Palantir Technologies Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.palantir.gradle.jdks;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.gradle.api.Project;
+import org.gradle.api.provider.MapProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SynchronizedUntilFinalizedTest {
+
+    @TempDir
+    File projectDir;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void can_be_configured_until_read_and_then_passed_to_other_properties() {
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir).build();
+        MapProperty<String, String> original = project.getObjects().mapProperty(String.class, String.class);
+        original.finalizeValueOnRead();
+        MapProperty<String, String> wrapped = SynchronizedUntilFinalized.wrap(MapProperty.class, original);
+
+        wrapped.put("first", "1");
+        MapProperty<String, String> other = project.getObjects().mapProperty(String.class, String.class);
+        other.putAll(wrapped);
+
+        assertThat(wrapped.get()).isEqualTo(Map.of("first", "1"));
+        assertThat(wrapped.isPresent()).isTrue();
+        assertThat(other.get()).isEqualTo(Map.of("first", "1"));
+        assertThat(wrapped.map(Map::size).get()).isEqualTo(1);
+        assertThatThrownBy(() -> wrapped.put("second", "2")).hasMessageContaining("final");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reads_the_finalized_value_concurrently() throws Exception {
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir).build();
+        Property<String> original = project.getObjects().property(String.class);
+        original.finalizeValueOnRead();
+        Property<String> wrapped = SynchronizedUntilFinalized.wrap(Property.class, original);
+        wrapped.set("value");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> reads = IntStream.range(0, 1000)
+                    .mapToObj(_i -> executor.submit(wrapped::get))
+                    .collect(Collectors.toList());
+            for (Future<String> read : reads) {
+                assertThat(read.get()).isEqualTo("value");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(wrapped.getOrElse("default")).isEqualTo("value");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void falls_back_to_the_property_when_it_has_no_value() {
+        Project project = ProjectBuilder.builder().withProjectDir(projectDir).build();
+        Property<String> original = project.getObjects().property(String.class);
+        original.finalizeValueOnRead();
+        Property<String> wrapped = SynchronizedUntilFinalized.wrap(Property.class, original);
+
+        assertThat(wrapped.isPresent()).isFalse();
+        assertThat(wrapped.getOrElse("default")).isEqualTo("default");
+        assertThat(wrapped.getOrNull()).isNull();
+        assertThatThrownBy(wrapped::get).hasMessageContaining("no value");
+    }
+}